@@ -1,37 +1,206 @@
 package com.aIgenie.config;
 
 import com.aIgenie.service.AIService;
+import com.aIgenie.service.CancelPolicy;
+import com.aIgenie.service.ContextAwareAIService;
+import com.aIgenie.service.cache.MappedResponseStore;
+import com.aIgenie.service.cache.ResponseCache;
+import com.aIgenie.service.impl.CachingAIService;
+import com.aIgenie.service.impl.CoalescingAIService;
 import com.aIgenie.service.impl.CustomAIServiceImpl;
+import com.aIgenie.service.metrics.AIMetrics;
+import com.aIgenie.service.ratelimit.RateLimits;
+import com.aIgenie.service.routing.ConnectionWarmer;
+import com.aIgenie.service.routing.Endpoint;
+import com.aIgenie.service.routing.EndpointRouter;
+import com.aIgenie.service.routing.HedgePolicy;
+import com.aIgenie.service.scheduling.AIExecutor;
+import com.aIgenie.service.transport.ChatTransport;
+import com.aIgenie.service.transport.ExchangeTimeouts;
+import com.aIgenie.service.transport.HttpClientChatTransport;
+import com.aIgenie.service.transport.RestTemplateChatTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
+@EnableConfigurationProperties(RoutingProperties.class)
 public class AIConfig {
 
     private static final Logger logger = LoggerFactory.getLogger(AIConfig.class);
 
+    /**
+     * 自定义客户端使用的 HTTP 传输层，通过 {@code aigenie.http.transport} 选择：
+     * {@code rest-template}（默认，保持原有行为）或 {@code http-client}（JDK HttpClient，HTTP/2 连接复用 + 超时 + 虚拟线程）。
+     */
+    @Bean
+    @ConditionalOnProperty(name = "aigenie.use-custom-client", havingValue = "true", matchIfMissing = true)
+    public ChatTransport chatTransport(
+            @Value("${aigenie.http.transport:rest-template}") String transport,
+            @Value("${aigenie.http.connect-timeout:10s}") Duration connectTimeout,
+            @Value("${aigenie.http.first-byte-timeout:60s}") Duration firstByteTimeout,
+            @Value("${aigenie.http.idle-timeout:60s}") Duration idleTimeout) {
+
+        if ("http-client".equalsIgnoreCase(transport)) {
+            return new HttpClientChatTransport(connectTimeout, firstByteTimeout, idleTimeout);
+        }
+        if (!"rest-template".equalsIgnoreCase(transport)) {
+            logger.warn("未知的 aigenie.http.transport={}，回退到 rest-template", transport);
+        }
+        // 流式读取按块阻塞，读超时同时充当首字节超时与空闲超时
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setReadTimeout(firstByteTimeout.compareTo(idleTimeout) >= 0 ? firstByteTimeout : idleTimeout);
+        return new RestTemplateChatTransport(new RestTemplate(requestFactory));
+    }
+
+    /**
+     * 调用级超时：首 token 超时（单次尝试，超时后换端点重试）与总耗时超时（含故障转移与续写）。
+     * 连接、首字节与空闲超时由传输层处理，见 {@code aigenie.http.*}。
+     */
+    @Bean
+    @ConditionalOnProperty(name = "aigenie.use-custom-client", havingValue = "true", matchIfMissing = true)
+    public ExchangeTimeouts exchangeTimeouts(
+            @Value("${aigenie.http.first-token-timeout:60s}") Duration firstTokenTimeout,
+            @Value("${aigenie.http.total-timeout:5m}") Duration totalTimeout) {
+        return new ExchangeTimeouts(firstTokenTimeout, totalTimeout);
+    }
+
+    /**
+     * 运行指标（对冲次数与胜出次数等），容器关闭时输出汇总日志。
+     */
+    @Bean
+    public AIMetrics aiMetrics() {
+        return new AIMetrics();
+    }
+
+    /**
+     * 所有 AI 调用共用的执行器：虚拟线程 + 并发上限 + 按优先级排队（带老化），
+     * 容器关闭时等待进行中的调用至多 {@code aigenie.executor.shutdown-timeout} 后中止。
+     */
+    @Bean
+    public AIExecutor aiExecutor(
+            @Value("${aigenie.executor.max-concurrent:4}") int maxConcurrent,
+            @Value("${aigenie.executor.interactive-reserved:1}") int interactiveReserved,
+            @Value("${aigenie.executor.aging:10s}") Duration aging,
+            @Value("${aigenie.executor.cancel-bulk-on-interactive:false}") boolean cancelBulkOnInteractive,
+            @Value("${aigenie.executor.shutdown-timeout:5s}") Duration shutdownTimeout,
+            AIMetrics aiMetrics) {
+        return new AIExecutor(maxConcurrent, interactiveReserved, aging, cancelBulkOnInteractive, shutdownTimeout,
+                aiMetrics);
+    }
+
+    /**
+     * 端点路由器。{@code aigenie.routing.endpoints} 为空时退化为 {@code spring.ai.openai.*} 的单端点；
+     * 配置多个端点时按首 token 延迟与错误率评分选择，失败自动转移，并定时探测熔断中的端点。
+     * 每个端点都有熔断器：连续失败 {@code failure-threshold} 次后熔断 {@code open-duration}，期间请求立即失败。
+     */
+    @Bean
+    @ConditionalOnProperty(name = "aigenie.use-custom-client", havingValue = "true", matchIfMissing = true)
+    public EndpointRouter endpointRouter(
+            @Value("${spring.ai.openai.base-url}") String baseUrl,
+            @Value("${spring.ai.openai.api-key}") String apiKey,
+            @Value("${spring.ai.openai.chat.options.model}") String model,
+            RoutingProperties routing,
+            ChatTransport chatTransport) {
+
+        if (routing.getEndpoints().isEmpty()) {
+            return new EndpointRouter(List.of(new Endpoint("default", baseUrl, apiKey, model)),
+                    routing.getFailureThreshold(), routing.getOpenDuration());
+        }
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (RoutingProperties.EndpointProperties config : routing.getEndpoints()) {
+            String name = config.getName() != null ? config.getName() : "endpoint-" + endpoints.size();
+            endpoints.add(new Endpoint(name,
+                    config.getBaseUrl() != null ? config.getBaseUrl() : baseUrl,
+                    config.getApiKey() != null ? config.getApiKey() : apiKey,
+                    config.getModel() != null ? config.getModel() : model));
+        }
+        EndpointRouter router = new EndpointRouter(endpoints, routing.getFailureThreshold(), routing.getOpenDuration());
+        router.startHealthProbe(chatTransport, routing.getProbeInterval());
+        return router;
+    }
+
     /**
      * 自定义 AI 服务 Bean。仅在 aigenie.use-custom-client=true 时注册（默认开启），
      * 与 {@link CustomAIServiceImpl} 上的相同条件保持一致，确保开关行为一致。
+     * 装饰顺序（由外到内）：{@link CachingAIService}（{@code aigenie.cache.enabled}）
+     * → {@link CoalescingAIService}（{@code aigenie.coalescing.enabled}，默认开启）→ {@link CustomAIServiceImpl}。
      */
     @Bean
     @Primary
     @ConditionalOnProperty(name = "aigenie.use-custom-client", havingValue = "true", matchIfMissing = true)
     public AIService customAIService(
-            @Value("${spring.ai.openai.base-url}") String baseUrl,
-            @Value("${spring.ai.openai.api-key}") String apiKey,
-            @Value("${spring.ai.openai.chat.options.model}") String model,
+            EndpointRouter endpointRouter,
             @Value("${spring.ai.openai.chat.options.temperature:0.7}") double temperature,
             @Value("${spring.ai.openai.chat.options.max-tokens:2000}") int maxTokens,
             @Value("${aigenie.system-prompt:你是一个有用的AI助手，名为'AIgenie'。请简洁明了地回答用户的问题。}") String systemPrompt,
-            @Value("${aigenie.chat-history-limit:10}") int historyLimit) {
+            @Value("${aigenie.context-token-budget:8000}") int contextTokenBudget,
+            ChatTransport chatTransport,
+            AIMetrics aiMetrics,
+            AIExecutor aiExecutor,
+            ExchangeTimeouts exchangeTimeouts,
+            @Value("${aigenie.hedging.enabled:false}") boolean hedgingEnabled,
+            @Value("${aigenie.hedging.percentile:0.95}") double hedgingPercentile,
+            @Value("${aigenie.hedging.min-samples:20}") int hedgingMinSamples,
+            @Value("${aigenie.hedging.min-delay:500ms}") Duration hedgingMinDelay,
+            @Value("${aigenie.cancel-policy:keep}") String cancelPolicy,
+            @Value("${aigenie.rate-limit.enabled:true}") boolean rateLimitEnabled,
+            @Value("${aigenie.rate-limit.requests-per-minute:0}") int rateLimitRpm,
+            @Value("${aigenie.rate-limit.tokens-per-minute:0}") int rateLimitTpm,
+            @Value("${aigenie.rate-limit.safety-factor:0.9}") double rateLimitSafetyFactor,
+            @Value("${aigenie.rate-limit.max-retries:3}") int rateLimitMaxRetries,
+            @Value("${aigenie.rate-limit.backoff-base:1s}") Duration rateLimitBackoffBase,
+            @Value("${aigenie.rate-limit.backoff-max:30s}") Duration rateLimitBackoffMax,
+            @Value("${aigenie.http.warm-up.enabled:true}") boolean warmUpEnabled,
+            @Value("${aigenie.http.warm-up.max-connections:2}") int warmUpMaxConnections,
+            @Value("${aigenie.http.warm-up.idle-expiry:0s}") Duration warmUpIdleExpiry,
+            @Value("${aigenie.resume.max-attempts:2}") int resumeMaxAttempts,
+            @Value("${aigenie.coalescing.enabled:true}") boolean coalescingEnabled,
+            @Value("${aigenie.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${aigenie.cache.max-entries:256}") int cacheMaxEntries,
+            @Value("${aigenie.cache.max-size:16MB}") DataSize cacheMaxSize,
+            @Value("${aigenie.cache.ttl:24h}") Duration cacheTtl,
+            @Value("${aigenie.cache.disk-path:}") String cacheDiskPath,
+            @Value("${aigenie.cache.disk-size:64MB}") DataSize cacheDiskSize) throws IOException {
 
         logger.info("创建自定义AI服务Bean (use-custom-client=true)");
-        return new CustomAIServiceImpl(baseUrl, apiKey, model, systemPrompt, historyLimit, temperature, maxTokens);
+        HedgePolicy hedgePolicy = hedgingEnabled
+                ? new HedgePolicy(hedgingPercentile, hedgingMinSamples, hedgingMinDelay) : null;
+        RateLimits rateLimits = rateLimitEnabled
+                ? new RateLimits(rateLimitRpm, rateLimitTpm, rateLimitSafetyFactor, rateLimitMaxRetries,
+                rateLimitBackoffBase, rateLimitBackoffMax) : null;
+        ConnectionWarmer warmer = warmUpEnabled
+                ? new ConnectionWarmer(chatTransport, warmUpMaxConnections, warmUpIdleExpiry, aiMetrics) : null;
+        ContextAwareAIService service = new CustomAIServiceImpl(endpointRouter, systemPrompt,
+                contextTokenBudget, temperature, maxTokens, chatTransport, hedgePolicy, aiMetrics,
+                CancelPolicy.from(cancelPolicy), aiExecutor, rateLimits, warmer,
+                resumeMaxAttempts, exchangeTimeouts);
+        if (coalescingEnabled) {
+            service = new CoalescingAIService(service);
+        }
+        if (!cacheEnabled) {
+            return service;
+        }
+
+        MappedResponseStore diskStore = cacheDiskPath.isBlank() ? null
+                : new MappedResponseStore(Path.of(cacheDiskPath), Math.toIntExact(cacheDiskSize.toBytes()), cacheTtl);
+        ResponseCache cache = new ResponseCache(cacheMaxEntries, cacheMaxSize.toBytes(), cacheTtl, diskStore);
+        return new CachingAIService(service, cache);
     }
 }
@@ -0,0 +1,98 @@
+package com.aIgenie.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多端点路由配置（{@code aigenie.routing.*}）。
+ * {@code endpoints} 为空时只使用 {@code spring.ai.openai.*} 配置的单个端点；
+ * 单个端点未填写的 api-key / model 沿用 {@code spring.ai.openai.*} 中的值。
+ */
+@ConfigurationProperties(prefix = "aigenie.routing")
+public class RoutingProperties {
+
+    private List<EndpointProperties> endpoints = new ArrayList<>();
+
+    /** 熔断中端点的健康探测间隔。 */
+    private Duration probeInterval = Duration.ofSeconds(30);
+
+    /** 连续失败多少次后熔断端点。 */
+    private int failureThreshold = 3;
+
+    /** 熔断持续时间，期满后放行一个试探请求。 */
+    private Duration openDuration = Duration.ofSeconds(30);
+
+    public List<EndpointProperties> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<EndpointProperties> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public Duration getProbeInterval() {
+        return probeInterval;
+    }
+
+    public void setProbeInterval(Duration probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public static class EndpointProperties {
+        private String name;
+        private String baseUrl;
+        private String apiKey;
+        private String model;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public void setBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+    }
+}
@@ -2,46 +2,89 @@ package com.aIgenie.controller;
 
 import com.aIgenie.model.ChatMessage;
 import com.aIgenie.service.AIService;
+import com.aIgenie.service.CancelPolicy;
+import com.aIgenie.service.ChatChunk;
+import com.aIgenie.service.ChatSession;
 import com.aIgenie.view.ChatWindow;
-import com.aIgenie.service.impl.CustomAIServiceImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Flow;
 import javax.swing.SwingUtilities;
 
 /**
  * 聊天控制器
  *
  * 并发模型：
- * 通过 {@link #requestInFlight} 闸门保证同一时间只有一条 AI 请求在执行，
- * 进行中会通过 {@link ChatWindow#setInputEnabled(boolean)} 禁用输入栏，
- * 避免多条流式响应交错、对话上下文错乱。
- * 所有 UI 状态（包括 {@link #currentStreamingMessage}）只在 EDT 上读写。
+ * 同一会话同一时间只有一条 AI 请求在执行，避免多条流式响应交错、对话上下文错乱。
+ * 请求进行中输入栏保持可用，新消息进入 {@link #outbox} 排队并显示为"排队中"，
+ * 上一条回复在 EDT 上结束的同一时刻发出下一条，中间不经过额外的事件排队；
+ * 排队中的消息可以通过 {@link #editPendingMessage} / {@link #dropPendingMessage} 修改或撤回。
+ * 所有 UI 状态（包括 {@link #currentStreamingMessage} 与排队）只在 EDT 上读写。
+ * 进行中的请求可通过 {@link #cancelCurrentRequest()} 取消，已显示的部分回复按 {@code aigenie.cancel-policy}
+ * 保留或撤回；取消只针对当前回复，排队中的消息随后继续依次发出。
+ *
+ * 回复通过 {@link AIService#streamMessage(String)} 订阅：先请求 {@link #STREAM_WINDOW} 个片段，
+ * 此后每个片段在 EDT 上渲染完才再请求一个，EDT 跟不上时上游随之暂停读取，而不是在事件队列里堆积。
+ * 片段经 {@link StreamCoalescer} 合并，每帧（{@code aigenie.ui.stream-fps}）最多刷新一次界面，
+ * 刷新时只把新增文本追加到流式消息，模型输出再快也不会占满 EDT。
+ * 每个控制器（即每个聊天窗口）对应一个独立的 {@link ChatSession}，多个窗口的对话互不影响、可以同时流式输出。
  */
 @Component
 public class ChatController {
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
+    /** 订阅回复时预先请求的片段数。 */
+    private static final int STREAM_WINDOW = 32;
+
+    /** 未通过配置指定时的流式刷新帧率。 */
+    private static final int DEFAULT_STREAM_FPS = 60;
+
     private ChatWindow chatWindow;
     private final List<ChatMessage> messageHistory;
     private AIService aiService;
 
+    /** 本窗口的会话，对话上下文由 AI 服务按会话保存。 */
+    private final ChatSession session = ChatSession.create();
+
     /** 仅在 EDT 上访问。 */
     private ChatMessage currentStreamingMessage = null;
 
-    /** 是否有 AI 请求在进行中，用于阻止并发发送。 */
-    private final AtomicBoolean requestInFlight = new AtomicBoolean(false);
+    /** 是否有 AI 请求在进行中。仅在 EDT 上访问。 */
+    private boolean requestInFlight;
+
+    /** 排队中（尚未发出）的用户消息，按发送顺序。仅在 EDT 上访问。 */
+    private final Deque<ChatMessage> outbox = new ArrayDeque<>();
+
+    /** 进行中请求的订阅方，用于取消。仅在 EDT 上读写。 */
+    private ReplySubscriber currentReply;
+
+    private CancelPolicy cancelPolicy = CancelPolicy.KEEP;
+
+    /** 流式回复每秒最多刷新界面的次数。 */
+    private int streamFps = DEFAULT_STREAM_FPS;
+
+    /** 启动时应用的界面主题（"浅色" / "深色"）。 */
+    private String theme;
 
     @Autowired
-    public ChatController(AIService aiService) {
+    public ChatController(AIService aiService,
+                          @Value("${aigenie.cancel-policy:keep}") String cancelPolicy,
+                          @Value("${aigenie.ui.stream-fps:60}") int streamFps,
+                          @Value("${aigenie.theme:浅色}") String theme) {
         this.messageHistory = new ArrayList<>();
         this.aiService = aiService;
+        this.cancelPolicy = CancelPolicy.from(cancelPolicy);
+        this.streamFps = streamFps;
+        this.theme = theme;
         logger.info("ChatController 初始化，AI服务: {}",
                 aiService != null ? aiService.getClass().getSimpleName() : "null");
     }
@@ -60,25 +103,8 @@ public class ChatController {
     public void initialize() {
         logger.info("初始化聊天窗口...");
         chatWindow = new ChatWindow(this);
-
-        // 如果是自定义服务，设置流式响应监听器
-        if (aiService instanceof CustomAIServiceImpl) {
-            CustomAIServiceImpl customService = (CustomAIServiceImpl) aiService;
-
-            customService.addStreamListener(chunk -> SwingUtilities.invokeLater(() -> {
-                // 没有进行中的请求时，忽略迟到的 chunk（防御保护）
-                if (!requestInFlight.get()) {
-                    return;
-                }
-                // 第一次接收到 chunk 时，创建消息并把当前 chunk 作为初始内容
-                if (currentStreamingMessage == null) {
-                    currentStreamingMessage = new ChatMessage("AIgenie", chunk == null ? "" : chunk);
-                    chatWindow.displayStreamingMessage(currentStreamingMessage, false);
-                } else {
-                    currentStreamingMessage.appendContent(chunk);
-                    chatWindow.updateStreamingMessage(currentStreamingMessage, false);
-                }
-            }));
+        if (theme != null) {
+            chatWindow.applyTheme(theme);
         }
 
         chatWindow.display();
@@ -90,27 +116,38 @@ public class ChatController {
             logger.debug("空消息，忽略");
             return;
         }
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> sendMessage(content));
+            return;
+        }
 
-        // 闸门：进行中的请求不允许并发，避免流式回复混乱
-        if (!requestInFlight.compareAndSet(false, true)) {
-            logger.debug("已有 AI 请求在进行中，忽略新发送");
+        ChatMessage userMessage = new ChatMessage("我", content);
+        if (requestInFlight) {
+            // 上一条回复仍在进行中：排队，待其结束后自动发出
+            logger.info("上一条回复进行中，消息排队（第 {} 条）: {}", outbox.size() + 1, content);
+            outbox.addLast(userMessage);
+            chatWindow.displayPendingMessages(List.copyOf(outbox));
             return;
         }
+        dispatch(userMessage);
+    }
 
+    /**
+     * 发出一条用户消息。必须在 EDT 上调用，且当前没有进行中的请求。
+     * 先订阅回复再刷新界面，请求不必等待本次重绘。
+     */
+    private void dispatch(ChatMessage userMessage) {
+        String content = userMessage.getContent();
         logger.info("处理用户消息: {}", content);
-
-        final ChatMessage userMessage = new ChatMessage("我", content);
+        requestInFlight = true;
         messageHistory.add(userMessage);
 
-        SwingUtilities.invokeLater(() -> {
-            chatWindow.displayMessage(userMessage);
-            chatWindow.setInputEnabled(false);
-        });
-
         if (aiService == null) {
             logger.warn("AI服务不可用，使用模拟回复");
             ChatMessage replyMessage = new ChatMessage("AIgenie", "收到你的消息: " + content);
             messageHistory.add(replyMessage);
+            chatWindow.displayMessage(userMessage);
+            chatWindow.setBusy(true);
             SwingUtilities.invokeLater(() -> {
                 chatWindow.displayMessage(replyMessage);
                 finishRequest();
@@ -118,15 +155,193 @@ public class ChatController {
             return;
         }
 
-        // 重置当前流式消息（仍在 EDT 之外，但接下来所有写入都在 EDT 上做）
-        SwingUtilities.invokeLater(() -> currentStreamingMessage = null);
-
         logger.debug("调用AI服务...");
-        CompletableFuture<String> future = aiService.sendMessageAsync(content);
+        currentStreamingMessage = null;
+        currentReply = new ReplySubscriber();
+        aiService.streamMessage(session, content).subscribe(currentReply);
+        chatWindow.displayMessage(userMessage);
+        chatWindow.setBusy(true);
+    }
+
+    /**
+     * 用户开始输入（输入框获得焦点或按键，已去抖）。提示 AI 服务提前建立连接，
+     * 使发送时省去 DNS、TCP 与 TLS 握手；不阻塞 EDT。
+     */
+    public void userComposing() {
+        if (aiService == null) {
+            return;
+        }
+        try {
+            aiService.warmUp();
+        } catch (Exception e) {
+            logger.debug("连接预热失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 修改一条排队中的消息，排队位置不变；内容为空时撤回。已经发出的消息不受影响。
+     */
+    public void editPendingMessage(ChatMessage message, String content) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> editPendingMessage(message, content));
+            return;
+        }
+        if (content == null || content.trim().isEmpty()) {
+            dropPendingMessage(message);
+            return;
+        }
+        if (!outbox.contains(message)) {
+            logger.debug("消息已发出，忽略编辑");
+            return;
+        }
+        message.setContent(content.trim());
+        chatWindow.displayPendingMessages(List.copyOf(outbox));
+    }
+
+    /**
+     * 撤回一条排队中的消息。已经发出的消息不受影响。
+     */
+    public void dropPendingMessage(ChatMessage message) {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(() -> dropPendingMessage(message));
+            return;
+        }
+        if (outbox.remove(message)) {
+            logger.info("撤回排队中的消息: {}", message.getContent());
+            chatWindow.displayPendingMessages(List.copyOf(outbox));
+        }
+    }
+
+    /**
+     * 取消进行中的请求。底层连接随之中止；取消后不会再收到终止信号，因此由这里结束本轮。
+     * 服务可能在取消返回之后才把部分回复写入会话历史，排队的下一条消息要等 {@link AIService#whenSettled}
+     * 完成才发出，否则它的上下文里可能没有屏幕上仍显示着的部分回复。
+     */
+    public void cancelCurrentRequest() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::cancelCurrentRequest);
+            return;
+        }
+        ReplySubscriber reply = currentReply;
+        if (reply == null) {
+            return;
+        }
+        logger.info("用户取消了进行中的请求，策略: {}", cancelPolicy);
+        currentReply = null;
+        reply.cancel();
+        handleCancelled();
+        aiService.whenSettled(session).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.warn("等待取消的请求写入会话历史时出错", error);
+            }
+            SwingUtilities.invokeLater(this::finishRequest);
+        });
+    }
+
+    /**
+     * 按取消策略处理已显示的部分回复。必须在 EDT 上调用。
+     */
+    private void handleCancelled() {
+        if (currentStreamingMessage == null) {
+            return;
+        }
+        if (cancelPolicy == CancelPolicy.ROLLBACK) {
+            chatWindow.discardStreamingMessage(currentStreamingMessage);
+            return;
+        }
+        currentStreamingMessage.appendContent("\n（已停止）");
+        chatWindow.finalizeStreamingMessage(currentStreamingMessage);
+        messageHistory.add(currentStreamingMessage);
+    }
+
+    /**
+     * 重置进行中的状态；有排队消息时立即发出下一条，否则恢复输入栏。必须在 EDT 上调用。
+     * 服务在结束信号之前、取消时在 {@link AIService#whenSettled} 完成之前把本轮写入会话历史，
+     * 因此下一条请求能带上刚结束的回复。
+     */
+    private void finishRequest() {
+        currentReply = null;
+        currentStreamingMessage = null;
+        requestInFlight = false;
+        ChatMessage next = outbox.pollFirst();
+        if (next != null) {
+            chatWindow.displayPendingMessages(List.copyOf(outbox));
+            dispatch(next);
+            return;
+        }
+        if (chatWindow != null) {
+            chatWindow.setBusy(false);
+        }
+    }
+
+    public ChatSession getSession() {
+        return session;
+    }
+
+    public List<ChatMessage> getMessageHistory() {
+        return messageHistory;
+    }
+
+    /**
+     * 排队中消息的快照。必须在 EDT 上调用。
+     */
+    public List<ChatMessage> getPendingMessages() {
+        return List.copyOf(outbox);
+    }
+
+    /**
+     * 一次回复的订阅方。信号可能来自任意线程，片段按帧合并后、结束信号直接转到 EDT 处理；
+     * 不再是 {@link #currentReply} 的订阅方（已取消）收到的迟到信号直接丢弃。
+     */
+    private final class ReplySubscriber implements Flow.Subscriber<ChatChunk> {
+        private volatile Flow.Subscription subscription;
+        private volatile boolean cancelled;
+        private final StreamCoalescer coalescer = new StreamCoalescer(streamFps, this::render);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
+            }
+            subscription.request(STREAM_WINDOW);
+        }
+
+        @Override
+        public void onNext(ChatChunk chunk) {
+            coalescer.append(chunk.getContent());
+        }
 
-        future.whenComplete((reply, error) -> SwingUtilities.invokeLater(() -> {
-            try {
-                if (error != null) {
+        /**
+         * 在 EDT 上渲染一帧内合并的片段，渲染完再向上游补充同样数量的请求。
+         */
+        private void render(String content, int chunks) {
+            if (currentReply != this) {
+                return;
+            }
+            if (currentStreamingMessage == null) {
+                currentStreamingMessage = new ChatMessage("AIgenie", content);
+                chatWindow.displayStreamingMessage(currentStreamingMessage, false);
+            } else if (!content.isEmpty()) {
+                currentStreamingMessage.appendContent(content);
+                chatWindow.updateStreamingMessage(currentStreamingMessage, false);
+            }
+            subscription.request(chunks);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            SwingUtilities.invokeLater(() -> {
+                if (currentReply != this) {
+                    return;
+                }
+                try {
+                    coalescer.flushNow();
+                    if (error instanceof CancellationException) {
+                        handleCancelled();
+                        return;
+                    }
                     logger.error("AI回复失败", error);
                     String errorText = "抱歉，我遇到了一个问题: " + error.getMessage();
                     if (currentStreamingMessage != null) {
@@ -138,38 +353,42 @@ public class ChatController {
                         messageHistory.add(errorMessage);
                         chatWindow.displayMessage(errorMessage);
                     }
-                    return;
+                } finally {
+                    finishRequest();
                 }
+            });
+        }
 
-                logger.info("AI回复完成，长度: {}", reply == null ? 0 : reply.length());
-
-                if (currentStreamingMessage != null) {
-                    currentStreamingMessage.setContent(reply);
-                    chatWindow.finalizeStreamingMessage(currentStreamingMessage);
-                    messageHistory.add(currentStreamingMessage);
-                } else {
-                    ChatMessage aiMessage = new ChatMessage("AIgenie", reply);
-                    messageHistory.add(aiMessage);
-                    chatWindow.displayMessage(aiMessage);
+        @Override
+        public void onComplete() {
+            SwingUtilities.invokeLater(() -> {
+                if (currentReply != this) {
+                    return;
                 }
-            } finally {
-                finishRequest();
-            }
-        }));
-    }
-
-    /**
-     * 重置进行中的状态并恢复输入。必须在 EDT 上调用。
-     */
-    private void finishRequest() {
-        currentStreamingMessage = null;
-        requestInFlight.set(false);
-        if (chatWindow != null) {
-            chatWindow.setInputEnabled(true);
+                try {
+                    coalescer.flushNow();
+                    ChatMessage reply = currentStreamingMessage != null
+                            ? currentStreamingMessage : new ChatMessage("AIgenie", "");
+                    logger.info("AI回复完成，长度: {}", reply.length());
+                    if (currentStreamingMessage != null) {
+                        chatWindow.finalizeStreamingMessage(reply);
+                    } else {
+                        chatWindow.displayMessage(reply);
+                    }
+                    messageHistory.add(reply);
+                } finally {
+                    finishRequest();
+                }
+            });
         }
-    }
 
-    public List<ChatMessage> getMessageHistory() {
-        return messageHistory;
+        void cancel() {
+            cancelled = true;
+            coalescer.close();
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
     }
 }
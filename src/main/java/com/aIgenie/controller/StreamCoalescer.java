@@ -0,0 +1,90 @@
+package com.aIgenie.controller;
+
+import javax.swing.Timer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把流式片段合并后按帧刷新到 EDT。
+ * 片段可以在任意线程到达，先追加到缓冲区；距上次刷新不足一帧时等到下一帧再刷新，
+ * 每次刷新把这段时间内到达的全部文本一次交给 {@link Sink}，EDT 上的处理次数与片段数量无关。
+ * 刷新时一并告知合并了多少个片段，调用方据此向上游补充请求，保持按 EDT 渲染速度的背压。
+ */
+final class StreamCoalescer {
+
+    interface Sink {
+        /**
+         * 在 EDT 上调用。
+         *
+         * @param text   自上次刷新以来到达的文本，可能为空串
+         * @param chunks 合并的片段数
+         */
+        void flush(String text, int chunks);
+    }
+
+    private final long frameNanos;
+    private final Sink sink;
+    private final Timer timer;
+
+    /** 以下字段受 this 锁保护。 */
+    private final StringBuilder buffer = new StringBuilder();
+    private int chunks;
+    private boolean scheduled;
+    private long lastFlushAt;
+
+    StreamCoalescer(int framesPerSecond, Sink sink) {
+        this.frameNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, framesPerSecond);
+        this.sink = sink;
+        this.timer = new Timer(0, e -> flushNow());
+        this.timer.setRepeats(false);
+        this.lastFlushAt = System.nanoTime() - frameNanos;
+    }
+
+    /**
+     * 追加一个片段，可在任意线程调用。
+     */
+    void append(String text) {
+        long delayNanos;
+        synchronized (this) {
+            buffer.append(text);
+            chunks++;
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+            delayNanos = lastFlushAt + frameNanos - System.nanoTime();
+        }
+        timer.setInitialDelay((int) Math.max(0, TimeUnit.NANOSECONDS.toMillis(delayNanos)));
+        timer.restart();
+    }
+
+    /**
+     * 立即把缓冲的片段交给 {@link Sink}，例如收到结束信号时。必须在 EDT 上调用。
+     */
+    void flushNow() {
+        String text;
+        int count;
+        synchronized (this) {
+            timer.stop();
+            scheduled = false;
+            lastFlushAt = System.nanoTime();
+            if (chunks == 0) {
+                return;
+            }
+            text = buffer.toString();
+            count = chunks;
+            buffer.setLength(0);
+            chunks = 0;
+        }
+        sink.flush(text, count);
+    }
+
+    /**
+     * 丢弃缓冲的片段并停止计时，例如回复被取消时。
+     */
+    synchronized void close() {
+        timer.stop();
+        buffer.setLength(0);
+        chunks = 0;
+        scheduled = true;
+    }
+}
@@ -4,46 +4,92 @@ import java.util.Date;
 
 /**
  * 聊天消息模型
+ * 内容保存在可增长的缓冲区中，流式追加只复制新到达的文本。
+ * {@link #getContent()} 返回不可变快照，内容不变时重复调用返回同一个实例。
+ * 每次修改都会推进 {@link #getVersion() 版本号}，渲染方记下已处理的版本，
+ * 之后通过 {@link #getContentSince(long)} 只取新追加的部分。
  */
 public class ChatMessage {
     private String sender;
-    private String content;
+    private final StringBuilder content = new StringBuilder();
+    /** 最近一次生成的快照，内容变化时作废。 */
+    private String snapshot;
+    /** 内容被整体替换的次数，与当前长度一起组成版本号。 */
+    private int generation;
     private Date timestamp;
-    
+
     public ChatMessage(String sender, String content) {
         this.sender = sender;
-        this.content = content == null ? "" : content;
+        if (content != null) {
+            this.content.append(content);
+        }
         this.timestamp = new Date();
     }
-    
+
     public String getSender() {
         return sender;
     }
-    
-    public String getContent() {
-        return content;
+
+    public synchronized String getContent() {
+        if (snapshot == null) {
+            snapshot = content.toString();
+        }
+        return snapshot;
     }
-    
+
+    /**
+     * 内容长度，不生成快照
+     */
+    public synchronized int length() {
+        return content.length();
+    }
+
     public Date getTimestamp() {
         return timestamp;
     }
-    
-    public void setContent(String content) {
-        this.content = content == null ? "" : content;
+
+    public synchronized void setContent(String content) {
+        this.content.setLength(0);
+        if (content != null) {
+            this.content.append(content);
+        }
+        this.generation++;
+        this.snapshot = null;
     }
 
     /**
      * 追加内容到消息
      */
-    public void appendContent(String chunk) {
+    public synchronized void appendContent(String chunk) {
         if (chunk == null || chunk.isEmpty()) {
             return;
         }
-        this.content += chunk;
+        this.content.append(chunk);
+        this.snapshot = null;
+    }
+
+    /**
+     * 当前版本号。追加时递增（低 32 位为长度），整体替换时高 32 位的代数递增
+     */
+    public synchronized long getVersion() {
+        return ((long) generation << 32) | content.length();
     }
-    
+
+    /**
+     * 版本 {@code version} 之后追加的文本。
+     *
+     * @return 新追加的文本，没有变化时为空串；其间内容被整体替换过时为 {@code null}，调用方应改用 {@link #getContent()}
+     */
+    public synchronized String getContentSince(long version) {
+        int offset = (int) version;
+        if ((int) (version >>> 32) != generation || offset > content.length()) {
+            return null;
+        }
+        return content.substring(offset);
+    }
+
     @Override
     public String toString() {
-        return sender + ": " + content;
+        return sender + ": " + getContent();
     }
-} 
\ No newline at end of file
+}
@@ -1,9 +1,16 @@
 package com.aIgenie.service;
 
+import com.aIgenie.service.stream.ChatPublishers;
+
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 /**
  * AI服务接口
+ *
+ * 不带 {@link ChatSession} 参数的方法作用于 {@link ChatSession#DEFAULT}。
+ * 支持多会话的实现为每个会话保存独立的上下文；其他实现忽略会话参数，所有会话共享同一段上下文。
  */
 public interface AIService {
     
@@ -20,4 +27,83 @@ public interface AIService {
      * @return 包含AI回复的CompletableFuture
      */
     CompletableFuture<String> sendMessageAsync(String message);
+
+    /**
+     * 异步发送消息并返回可取消的调用句柄。
+     * 默认实现包装 {@link #sendMessageAsync(String)}，取消只会释放调用方；
+     * 支持中止底层请求的实现应覆盖此方法。
+     * @param message 用户消息
+     * @return 调用句柄，{@link ChatCall#result()} 与 {@link #sendMessageAsync(String)} 的返回值一致
+     */
+    default ChatCall startMessage(String message) {
+        return ChatCall.of(sendMessageAsync(message));
+    }
+
+    /**
+     * 以 {@link Flow.Publisher} 形式流式发送消息。
+     * 发布者是冷的：每次订阅都是一次独立的调用，首次 {@code request} 时才真正发起；
+     * 实现需遵守订阅方的需求，需求耗尽时应暂停读取上游，而不是在内存中缓冲；取消订阅即取消调用。
+     * 默认实现基于 {@link #startMessage(String)}，只在完成时发出一个携带全文的结束片段。
+     * @param message 用户消息
+     * @return 本次调用的 {@link ChatChunk} 发布者
+     */
+    default Flow.Publisher<ChatChunk> streamMessage(String message) {
+        return ChatPublishers.fromCall(() -> startMessage(message));
+    }
+
+    /**
+     * 在指定会话中发送消息并获取回复
+     */
+    default String sendMessage(ChatSession session, String message) {
+        return sendMessage(message);
+    }
+
+    /**
+     * 在指定会话中异步发送消息，语义同 {@link #startMessage(String)}
+     */
+    default ChatCall startMessage(ChatSession session, String message) {
+        return startMessage(message);
+    }
+
+    /**
+     * 在指定会话中流式发送消息，语义同 {@link #streamMessage(String)}
+     */
+    default Flow.Publisher<ChatChunk> streamMessage(ChatSession session, String message) {
+        return streamMessage(message);
+    }
+
+    /**
+     * 会话中已发起的调用都已把本轮写入会话历史（取消的调用按取消策略写入或放弃）后完成。
+     * 取消订阅后不会再收到结束信号，调用方据此确定何时可以发起依赖这段历史的下一次调用。
+     * 默认实现立即完成，适用于在结束信号之前、或在取消调用返回之前就写完历史的实现。
+     */
+    default CompletableFuture<Void> whenSettled(ChatSession session) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 提示用户正在输入，下一次调用即将到来。实现可以借此提前建立到上游的连接；
+     * 必须立即返回（通常在 EDT 上调用）。默认什么也不做。
+     */
+    default void warmUp() {
+    }
+
+    /**
+     * 结束会话并释放其上下文。
+     */
+    default void closeSession(ChatSession session) {
+    }
+
+    /**
+     * 添加流式响应监听器，{@link #sendMessageAsync(String)} 进行中会收到增量文本。
+     * 不支持流式输出的实现可以忽略。
+     */
+    default void addStreamListener(Consumer<String> listener) {
+    }
+
+    /**
+     * 移除流式响应监听器
+     */
+    default void removeStreamListener(Consumer<String> listener) {
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.aIgenie.service;
+
+/**
+ * AI 调用失败（所有端点都失败、熔断或请求被中断）。
+ * 同步的 {@link AIService#sendMessage(ChatSession, String)} 不抛出本异常，而是返回 {@link #apologyFor} 的提示文本；
+ * 需要区分成功与失败的调用方使用 {@link ContextAwareAIService#sendMessageOrThrow}。
+ */
+public class AIServiceException extends RuntimeException {
+
+    public AIServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    /**
+     * 调用失败时展示给用户的回复文本
+     */
+    public static String apologyFor(Throwable error) {
+        return "抱歉，我遇到了一个问题: " + error.getMessage();
+    }
+}
@@ -0,0 +1,14 @@
+package com.aIgenie.service;
+
+/**
+ * AI 调用的优先级，决定调用在 {@link com.aIgenie.service.scheduling.AIExecutor} 中排队时的先后。
+ * 低优先级的调用会随排队时间"老化"：等待足够久之后排到新到的高优先级调用之前，不会被无限饿死。
+ */
+public enum CallPriority {
+    /** 用户正在等待的对话。 */
+    INTERACTIVE,
+    /** 后台任务，例如摘要、预取。 */
+    BACKGROUND,
+    /** 批量任务，可以随时被推迟或取消。 */
+    BULK
+}
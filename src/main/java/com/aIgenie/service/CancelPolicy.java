@@ -0,0 +1,18 @@
+package com.aIgenie.service;
+
+/**
+ * 取消进行中的回复时如何处理已经收到的部分内容（{@code aigenie.cancel-policy}）。
+ */
+public enum CancelPolicy {
+    /** 保留部分回复：界面上保留已显示的文本，并与用户消息一起写入对话上下文。 */
+    KEEP,
+    /** 回滚：丢弃部分回复，对话上下文保持请求前的状态。 */
+    ROLLBACK;
+
+    public static CancelPolicy from(String value) {
+        if (value != null && "rollback".equalsIgnoreCase(value.trim())) {
+            return ROLLBACK;
+        }
+        return KEEP;
+    }
+}
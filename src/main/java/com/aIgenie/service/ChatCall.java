@@ -0,0 +1,49 @@
+package com.aIgenie.service;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 一次进行中的 AI 调用的句柄。
+ * {@link #cancel()} 会立即让 {@link #result()} 以 {@link java.util.concurrent.CancellationException} 结束，
+ * 调用方可以马上恢复交互；随后由具体实现中止底层请求，不再继续读取（和计费）无人关心的 token。
+ */
+public class ChatCall {
+
+    private final CompletableFuture<String> result;
+    private final Runnable canceller;
+
+    /**
+     * @param canceller 取消成功后执行的中止动作，例如关闭底层连接
+     */
+    public ChatCall(CompletableFuture<String> result, Runnable canceller) {
+        this.result = result;
+        this.canceller = canceller;
+    }
+
+    /**
+     * 包装一个不支持中止底层请求的 future，取消只会释放调用方。
+     */
+    public static ChatCall of(CompletableFuture<String> result) {
+        return new ChatCall(result, () -> {
+        });
+    }
+
+    public CompletableFuture<String> result() {
+        return result;
+    }
+
+    /**
+     * 取消调用。已经完成的调用无法取消，返回 false。
+     */
+    public boolean cancel() {
+        if (!result.cancel(false)) {
+            return false;
+        }
+        canceller.run();
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+}
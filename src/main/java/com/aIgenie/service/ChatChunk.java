@@ -0,0 +1,69 @@
+package com.aIgenie.service;
+
+import java.util.UUID;
+
+/**
+ * {@link AIService#streamMessage(String)} 发布的增量片段。
+ * 同一次请求的片段共享 {@link #getRequestId()}，{@link #getSequence()} 从 0 开始连续递增；
+ * 最后一个片段携带 {@link #getFinishReason()}（以及上游提供时的 {@link #getUsage()}），其后紧跟 onComplete。
+ */
+public final class ChatChunk {
+
+    private final String requestId;
+    private final long sequence;
+    private final String content;
+    private final String finishReason;
+    private final ChatUsage usage;
+
+    public ChatChunk(String requestId, long sequence, String content, String finishReason, ChatUsage usage) {
+        this.requestId = requestId;
+        this.sequence = sequence;
+        this.content = content == null ? "" : content;
+        this.finishReason = finishReason;
+        this.usage = usage;
+    }
+
+    public static String newRequestId() {
+        return UUID.randomUUID().toString();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * 本片段的增量文本，不为 null；结束片段通常为空串。
+     */
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * 结束原因（如 {@code stop}、{@code length}），非结束片段为 null。
+     */
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    /**
+     * token 用量，仅结束片段可能携带，上游未提供时为 null。
+     */
+    public ChatUsage getUsage() {
+        return usage;
+    }
+
+    public boolean isFinal() {
+        return finishReason != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatChunk{" + requestId + "#" + sequence + ", " + content.length() + " chars"
+                + (finishReason != null ? ", finish=" + finishReason : "")
+                + (usage != null ? ", " + usage : "") + "}";
+    }
+}
@@ -0,0 +1,75 @@
+package com.aIgenie.service;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 会话句柄。每个会话拥有独立的对话上下文，不同会话的调用可以并发进行、互不阻塞。
+ * 不带会话参数的 {@link AIService} 方法作用于 {@link #DEFAULT}。
+ * 会话还携带调用优先级（默认 {@link CallPriority#INTERACTIVE}），该会话上的所有调用按此优先级排队。
+ * 相等性只看 ID。实例不可变。
+ */
+public final class ChatSession {
+
+    /** 不指定会话时使用的默认会话。 */
+    public static final ChatSession DEFAULT = new ChatSession("default", CallPriority.INTERACTIVE);
+
+    private final String id;
+    private final CallPriority priority;
+
+    private ChatSession(String id, CallPriority priority) {
+        this.id = id;
+        this.priority = priority;
+    }
+
+    /**
+     * 创建一个新的交互会话。
+     */
+    public static ChatSession create() {
+        return create(CallPriority.INTERACTIVE);
+    }
+
+    /**
+     * 创建一个指定优先级的新会话，例如后台摘要使用 {@link CallPriority#BACKGROUND}。
+     */
+    public static ChatSession create(CallPriority priority) {
+        return new ChatSession(UUID.randomUUID().toString(), Objects.requireNonNull(priority, "priority"));
+    }
+
+    /**
+     * 按 ID 引用交互会话，例如恢复此前保存的会话。
+     */
+    public static ChatSession of(String id) {
+        return new ChatSession(Objects.requireNonNull(id, "id"), CallPriority.INTERACTIVE);
+    }
+
+    /**
+     * 同一会话以另一优先级发起的调用。
+     */
+    public ChatSession withPriority(CallPriority priority) {
+        return new ChatSession(id, Objects.requireNonNull(priority, "priority"));
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public CallPriority getPriority() {
+        return priority;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ChatSession other && id.equals(other.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ChatSession{" + id + ", " + priority + "}";
+    }
+}
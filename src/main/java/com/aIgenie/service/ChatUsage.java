@@ -0,0 +1,46 @@
+package com.aIgenie.service;
+
+/**
+ * 一次回复的 token 用量，取自上游响应的 {@code usage} 字段。
+ * {@code cachedPromptTokens} 是提示词中命中上游前缀缓存的部分，上游未返回时为 0。
+ */
+public final class ChatUsage {
+
+    private final int promptTokens;
+    private final int completionTokens;
+    private final int totalTokens;
+    private final int cachedPromptTokens;
+
+    public ChatUsage(int promptTokens, int completionTokens, int totalTokens) {
+        this(promptTokens, completionTokens, totalTokens, 0);
+    }
+
+    public ChatUsage(int promptTokens, int completionTokens, int totalTokens, int cachedPromptTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.totalTokens = totalTokens;
+        this.cachedPromptTokens = cachedPromptTokens;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public int getTotalTokens() {
+        return totalTokens;
+    }
+
+    public int getCachedPromptTokens() {
+        return cachedPromptTokens;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatUsage{prompt=" + promptTokens + ", cached=" + cachedPromptTokens
+                + ", completion=" + completionTokens + ", total=" + totalTokens + "}";
+    }
+}
@@ -0,0 +1,46 @@
+package com.aIgenie.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 能够描述自身请求上下文的 AI 服务，供响应缓存等装饰器使用。
+ */
+public interface ContextAwareAIService extends AIService {
+
+    /**
+     * 把"发送 message 时的完整请求上下文"写入摘要：
+     * 模型、采样参数、系统提示词、会话当前的对话历史以及 message 本身。
+     * 相同摘要意味着上游会收到逐字节相同的请求；会话本身不参与摘要，历史相同的不同会话得到相同摘要。
+     */
+    void digestRequest(ChatSession session, String message, MessageDigest digest);
+
+    /**
+     * 与 {@link #sendMessage(ChatSession, String)} 相同，但失败时抛出异常而不是返回提示文本，
+     * 供请求合并等需要区分成功与失败的装饰器使用。
+     *
+     * @throws AIServiceException 调用失败
+     * @throws java.util.concurrent.CancellationException 排队中的请求被取消
+     */
+    String sendMessageOrThrow(ChatSession session, String message);
+
+    /**
+     * 把一次没有经过上游的问答（例如缓存命中）直接写入会话的对话历史，保持后续上下文一致。
+     */
+    void recordExchange(ChatSession session, String message, String reply);
+
+    /**
+     * 请求指纹：{@link #digestRequest} 结果的 SHA-256 十六进制串，用作缓存键与请求合并键。
+     */
+    default String requestFingerprint(ChatSession session, String message) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digestRequest(session, message, digest);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            // 所有 JRE 都必须提供 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
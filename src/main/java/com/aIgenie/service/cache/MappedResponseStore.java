@@ -0,0 +1,190 @@
+package com.aIgenie.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于内存映射文件的回复缓存磁盘层，进程重启后可继续命中。
+ *
+ * 文件布局：
+ * <pre>
+ * header: magic(int) | version(int) | writePos(int) | reserved(int)
+ * record: length(int) | key(32 字节 SHA-256) | createdAt(long) | valueLength(int) | value(UTF-8)
+ * </pre>
+ * 记录只追加；同一 key 以最后写入的为准。空间写满时做一次压缩：
+ * 丢弃过期与被覆盖的记录，只保留最新的一半容量。非线程安全，由 {@link ResponseCache} 负责同步。
+ */
+public class MappedResponseStore implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MappedResponseStore.class);
+
+    private static final int MAGIC = 0x41494743;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int WRITE_POS_OFFSET = 8;
+    private static final int KEY_SIZE = 32;
+    /** length + key + createdAt + valueLength */
+    private static final int RECORD_OVERHEAD = Integer.BYTES + KEY_SIZE + Long.BYTES + Integer.BYTES;
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long ttlMillis;
+    /** key(hex) -> 记录起始偏移 */
+    private final Map<String, Integer> index = new HashMap<>();
+    private int writePos;
+
+    public record Record(String value, long createdAt) {
+    }
+
+    public MappedResponseStore(Path path, int capacity, Duration ttl) throws IOException {
+        this.capacity = capacity;
+        this.ttlMillis = ttl.toMillis();
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean existed = Files.exists(path) && Files.size(path) == capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (existed && buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION) {
+            writePos = buffer.getInt(WRITE_POS_OFFSET);
+            rebuildIndex();
+            logger.info("加载磁盘回复缓存 {}，{} 条记录，已用 {}/{} 字节", path, index.size(), writePos, capacity);
+        } else {
+            reset();
+            logger.info("创建磁盘回复缓存 {}，容量 {} 字节", path, capacity);
+        }
+    }
+
+    public Record get(String key) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        long createdAt = buffer.getLong(offset + Integer.BYTES + KEY_SIZE);
+        int valueLength = buffer.getInt(offset + Integer.BYTES + KEY_SIZE + Long.BYTES);
+        byte[] value = new byte[valueLength];
+        buffer.get(offset + RECORD_OVERHEAD, value);
+        return new Record(new String(value, StandardCharsets.UTF_8), createdAt);
+    }
+
+    public void put(String key, String value, long createdAt) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_OVERHEAD + bytes.length;
+        if (length > capacity - HEADER_SIZE) {
+            logger.debug("回复过大（{} 字节），不写入磁盘缓存", bytes.length);
+            return;
+        }
+        if (writePos + length > capacity) {
+            compact(capacity / 2 - length);
+            if (writePos + length > capacity) {
+                return;
+            }
+        }
+        writeRecord(writePos, HEX.parseHex(key), createdAt, bytes);
+        index.put(key, writePos);
+        writePos += length;
+        buffer.putInt(WRITE_POS_OFFSET, writePos);
+    }
+
+    @Override
+    public void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("关闭磁盘回复缓存时出错: {}", e.getMessage());
+        }
+    }
+
+    private void reset() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        writePos = HEADER_SIZE;
+        buffer.putInt(WRITE_POS_OFFSET, writePos);
+        index.clear();
+    }
+
+    private void rebuildIndex() {
+        int pos = HEADER_SIZE;
+        byte[] key = new byte[KEY_SIZE];
+        while (pos < writePos) {
+            int length = buffer.getInt(pos);
+            if (length < RECORD_OVERHEAD || pos + length > writePos) {
+                // 记录损坏（例如写入时进程被杀），截断到最后一条完整记录
+                logger.warn("磁盘回复缓存在偏移 {} 处损坏，截断", pos);
+                writePos = pos;
+                buffer.putInt(WRITE_POS_OFFSET, writePos);
+                break;
+            }
+            buffer.get(pos + Integer.BYTES, key);
+            index.put(HEX.formatHex(key), pos);
+            pos += length;
+        }
+    }
+
+    /**
+     * 压缩：保留未过期的最新记录，直到占用不超过 {@code targetBytes}。
+     */
+    private void compact(int targetBytes) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Integer>> live = new ArrayList<>(index.entrySet());
+        live.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()));
+
+        List<String> keys = new ArrayList<>();
+        List<Record> records = new ArrayList<>();
+        int kept = 0;
+        for (Map.Entry<String, Integer> entry : live) {
+            Record record = get(entry.getKey());
+            if (now - record.createdAt() > ttlMillis) {
+                continue;
+            }
+            int length = RECORD_OVERHEAD + record.value().getBytes(StandardCharsets.UTF_8).length;
+            if (kept + length > targetBytes) {
+                break;
+            }
+            kept += length;
+            keys.add(entry.getKey());
+            records.add(record);
+        }
+
+        reset();
+        // 按写入先后重新排列，保持"越靠后越新"的顺序
+        for (int i = records.size() - 1; i >= 0; i--) {
+            byte[] bytes = records.get(i).value().getBytes(StandardCharsets.UTF_8);
+            writeRecord(writePos, HEX.parseHex(keys.get(i)), records.get(i).createdAt(), bytes);
+            index.put(keys.get(i), writePos);
+            writePos += RECORD_OVERHEAD + bytes.length;
+        }
+        buffer.putInt(WRITE_POS_OFFSET, writePos);
+        logger.debug("磁盘回复缓存压缩完成，保留 {} 条记录，{} 字节", records.size(), writePos);
+    }
+
+    private void writeRecord(int offset, byte[] key, long createdAt, byte[] value) {
+        buffer.putInt(offset, RECORD_OVERHEAD + value.length);
+        buffer.put(offset + Integer.BYTES, key);
+        buffer.putLong(offset + Integer.BYTES + KEY_SIZE, createdAt);
+        buffer.putInt(offset + Integer.BYTES + KEY_SIZE + Long.BYTES, value.length);
+        buffer.put(offset + RECORD_OVERHEAD, value);
+    }
+}
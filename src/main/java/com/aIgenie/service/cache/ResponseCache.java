@@ -0,0 +1,113 @@
+package com.aIgenie.service.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 精确匹配的回复缓存。
+ * 内存层为按访问顺序淘汰的 LRU，同时受条目数、总大小与 TTL 约束；
+ * 可选的磁盘层（{@link MappedResponseStore}）在重启后依然可用，内存未命中时回落到磁盘并提升回内存。
+ * 所有方法线程安全。
+ */
+public class ResponseCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private final MappedResponseStore diskStore;
+
+    /** accessOrder=true：get 会把条目移动到尾部，头部即最久未使用。 */
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+
+    /**
+     * @param diskStore 可为 {@code null}，表示只使用内存层
+     */
+    public ResponseCache(int maxEntries, long maxBytes, Duration ttl, MappedResponseStore diskStore) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttl.toMillis();
+        this.diskStore = diskStore;
+        logger.info("回复缓存已启用: max-entries={}, max-size={}B, ttl={}, 磁盘层={}",
+                maxEntries, maxBytes, ttl, diskStore != null ? "开启" : "关闭");
+    }
+
+    /**
+     * @return 未命中或已过期时返回 {@code null}
+     */
+    public synchronized String get(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            if (now - entry.createdAt <= ttlMillis) {
+                return entry.value;
+            }
+            evict(key);
+        }
+
+        if (diskStore != null) {
+            MappedResponseStore.Record record = diskStore.get(key);
+            if (record != null && now - record.createdAt() <= ttlMillis) {
+                putInMemory(key, new Entry(record.value(), record.createdAt()));
+                return record.value();
+            }
+        }
+        return null;
+    }
+
+    public synchronized void put(String key, String value) {
+        long now = System.currentTimeMillis();
+        putInMemory(key, new Entry(value, now));
+        if (diskStore != null) {
+            diskStore.put(key, value, now);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        memory.clear();
+        memoryBytes = 0;
+        if (diskStore != null) {
+            diskStore.close();
+        }
+    }
+
+    private void putInMemory(String key, Entry entry) {
+        if (entry.weight() > maxBytes) {
+            return;
+        }
+        Entry previous = memory.put(key, entry);
+        if (previous != null) {
+            memoryBytes -= previous.weight();
+        }
+        memoryBytes += entry.weight();
+
+        Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+        while ((memory.size() > maxEntries || memoryBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            memoryBytes -= eldest.getValue().weight();
+            it.remove();
+        }
+    }
+
+    private void evict(String key) {
+        Entry removed = memory.remove(key);
+        if (removed != null) {
+            memoryBytes -= removed.weight();
+        }
+    }
+
+    private record Entry(String value, long createdAt) {
+        /** 近似占用：UTF-16 字符 2 字节。 */
+        long weight() {
+            return (long) value.length() * 2;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.aIgenie.service.context;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 按 token 预算裁剪的对话历史。
+ * <ul>
+ *   <li>系统提示词单独持有，始终保留并计入预算；</li>
+ *   <li>超出预算时从最早的一轮开始整轮移除（user 及其后的 assistant 回复），不会拆散问答配对；</li>
+ *   <li>最新一轮永远保留，即使它本身已超出预算；</li>
+ *   <li>一旦超出预算，一次裁剪到预算的 {@link #LOW_WATER_PERCENT}%，此后若干轮无需再裁剪，
+ *       请求开头的系统提示词与历史保持逐字节不变，上游的提示词前缀缓存得以命中。
+ *       若每轮只移除恰好放不下的最早一轮，前缀每轮都会变化，缓存永远无法命中。</li>
+ * </ul>
+ * 每条消息的 token 数在 {@link ConversationMessage} 创建时计算并缓存，这里只维护累加值。
+ * 非线程安全，由调用方负责同步。
+ */
+public class ConversationHistory {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationHistory.class);
+
+    /** 超出预算时裁剪到的水位（预算的百分比）。 */
+    static final int LOW_WATER_PERCENT = 75;
+
+    private final ConversationMessage systemMessage;
+    private final int tokenBudget;
+    private final Deque<ConversationMessage> messages = new ArrayDeque<>();
+    private int historyTokens;
+    private int userTurns;
+
+    public ConversationHistory(ConversationMessage systemMessage, int tokenBudget) {
+        this.systemMessage = systemMessage;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * 追加消息并按预算裁剪。
+     */
+    public void append(ConversationMessage message) {
+        messages.addLast(message);
+        historyTokens += message.getTokenCount();
+        if (isUser(message)) {
+            userTurns++;
+        }
+        trimToBudget();
+    }
+
+    /**
+     * 预览追加 {@code pending} 之后发送给上游的上下文：系统提示词 + 预算内最近的若干整轮 + pending。
+     * 历史放得下时原样保留；放不下时同样只保留到低水位，与随后 {@link #append} 的裁剪保持一致。
+     * 不修改历史本身，因此请求进行中历史保持不变，可用于计算稳定的请求指纹。
+     */
+    public List<ConversationMessage> snapshotWith(ConversationMessage pending) {
+        int available = tokenBudget - systemMessage.getTokenCount() - pending.getTokenCount();
+        if (historyTokens > available) {
+            available = lowWater() - systemMessage.getTokenCount() - pending.getTokenCount();
+        }
+        int used = 0;
+        int kept = 0;
+        int turnTokens = 0;
+        int turnSize = 0;
+        // 从最新往最早按整轮累加，遇到放不下的一轮即停止
+        Iterator<ConversationMessage> it = messages.descendingIterator();
+        while (it.hasNext()) {
+            ConversationMessage message = it.next();
+            turnTokens += message.getTokenCount();
+            turnSize++;
+            if (isUser(message)) {
+                if (used + turnTokens > available) {
+                    break;
+                }
+                used += turnTokens;
+                kept += turnSize;
+                turnTokens = 0;
+                turnSize = 0;
+            }
+        }
+
+        List<ConversationMessage> snapshot = new ArrayList<>(kept + 2);
+        snapshot.add(systemMessage);
+        int skip = messages.size() - kept;
+        for (ConversationMessage message : messages) {
+            if (skip-- > 0) {
+                continue;
+            }
+            snapshot.add(message);
+        }
+        snapshot.add(pending);
+        return snapshot;
+    }
+
+    /**
+     * 系统提示词 + 当前历史的引用快照。
+     */
+    public List<ConversationMessage> snapshot() {
+        List<ConversationMessage> snapshot = new ArrayList<>(messages.size() + 1);
+        snapshot.add(systemMessage);
+        snapshot.addAll(messages);
+        return snapshot;
+    }
+
+    /**
+     * 当前上下文（含系统提示词）的估算 token 数。
+     */
+    public int getTokenCount() {
+        return systemMessage.getTokenCount() + historyTokens;
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public int size() {
+        return messages.size();
+    }
+
+    private int lowWater() {
+        return (int) ((long) tokenBudget * LOW_WATER_PERCENT / 100);
+    }
+
+    private void trimToBudget() {
+        if (getTokenCount() <= tokenBudget) {
+            return;
+        }
+        int removed = 0;
+        int target = lowWater();
+        while (getTokenCount() > target && userTurns > 1) {
+            // 移除最早一轮：开头的消息以及其后直到下一条 user 之前的所有回复
+            do {
+                removeFirst();
+                removed++;
+            } while (!messages.isEmpty() && !isUser(messages.peekFirst()));
+        }
+        if (removed > 0) {
+            logger.debug("上下文超出 token 预算 {}，移除 {} 条早期消息，当前约 {} tokens",
+                    tokenBudget, removed, getTokenCount());
+        }
+        if (getTokenCount() > tokenBudget) {
+            logger.warn("最新一轮消息约 {} tokens，已超过上下文预算 {}", getTokenCount(), tokenBudget);
+        }
+    }
+
+    private void removeFirst() {
+        ConversationMessage first = messages.pollFirst();
+        historyTokens -= first.getTokenCount();
+        if (isUser(first)) {
+            userTurns--;
+        }
+    }
+
+    private static boolean isUser(ConversationMessage message) {
+        return "user".equals(message.getRole());
+    }
+}
@@ -0,0 +1,83 @@
+package com.aIgenie.service.context;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+
+/**
+ * 对话上下文中的一条消息。
+ * 创建时即编码为 {@code {"role":...,"content":...}} 的 UTF-8 JSON 片段并缓存，
+ * 之后每轮请求直接写出这段字节，不再重复序列化历史消息；token 估算值同样只计算一次。实例不可变。
+ */
+public final class ConversationMessage {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String role;
+    private final String content;
+    private final byte[] json;
+    private final int tokenCount;
+
+    private ConversationMessage(String role, String content, byte[] json) {
+        this.role = role;
+        this.content = content;
+        this.json = json;
+        this.tokenCount = TokenEstimator.estimate(content) + TokenEstimator.MESSAGE_OVERHEAD;
+    }
+
+    public static ConversationMessage of(String role, String content) {
+        String text = content == null ? "" : content;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() + 32);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("role", role);
+            generator.writeStringField("content", text);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // 写入内存缓冲区不会真正产生 IO 异常
+            throw new UncheckedIOException(e);
+        }
+        return new ConversationMessage(role, text, out.toByteArray());
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    /**
+     * 估算的 token 数（含每条消息的固定开销），创建时计算一次。
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * 编码后的 JSON 片段长度（字节）。
+     */
+    public int getEncodedLength() {
+        return json.length;
+    }
+
+    /**
+     * 把缓存的 JSON 片段写入摘要，用于计算请求指纹。
+     */
+    public void updateDigest(MessageDigest digest) {
+        digest.update(json);
+    }
+
+    /**
+     * 把缓存的 JSON 片段原样写出。
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(json);
+    }
+}
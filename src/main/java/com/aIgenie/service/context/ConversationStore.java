@@ -0,0 +1,111 @@
+package com.aIgenie.service.context;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按会话 ID 保存的对话上下文。
+ * 每个会话的 {@link ConversationHistory} 由该会话自己的 {@link Conversation} 监视器保护，
+ * 不同会话之间没有共享锁，多个会话可以同时构造请求、提交问答。
+ * 系统提示词与 token 预算对所有会话相同，系统提示词只编码一次并在会话间共享。
+ */
+public class ConversationStore {
+
+    private final ConversationMessage systemMessage;
+    private final int tokenBudget;
+    private final ConcurrentMap<String, Conversation> conversations = new ConcurrentHashMap<>();
+
+    public ConversationStore(ConversationMessage systemMessage, int tokenBudget) {
+        this.systemMessage = systemMessage;
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * 取得会话的上下文，不存在时创建。
+     */
+    public Conversation get(String sessionId) {
+        return conversations.computeIfAbsent(sessionId,
+                id -> new Conversation(new ConversationHistory(systemMessage, tokenBudget)));
+    }
+
+    /**
+     * 丢弃会话的上下文。之后再使用同一 ID 会得到一段新的空上下文。
+     */
+    public void remove(String sessionId) {
+        conversations.remove(sessionId);
+    }
+
+    public int size() {
+        return conversations.size();
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * 单个会话的上下文，所有方法在本实例的监视器上同步。
+     */
+    public static final class Conversation {
+        private final ConversationHistory history;
+        /** 已发起、尚未把本轮写入（或放弃写入）历史的调用数。 */
+        private int pendingTurns;
+        /** 在 pendingTurns 回到 0 时完成。 */
+        private CompletableFuture<Void> settled = CompletableFuture.completedFuture(null);
+
+        private Conversation(ConversationHistory history) {
+            this.history = history;
+        }
+
+        /**
+         * @see ConversationHistory#snapshotWith(ConversationMessage)
+         */
+        public synchronized List<ConversationMessage> snapshotWith(ConversationMessage pending) {
+            return history.snapshotWith(pending);
+        }
+
+        /**
+         * 把一轮问答成对写入历史。
+         */
+        public synchronized void commit(ConversationMessage userMessage, ConversationMessage assistantMessage) {
+            history.append(userMessage);
+            history.append(assistantMessage);
+        }
+
+        /**
+         * 登记一次进行中的调用，调用结束后必须以 {@link #endTurn()} 配对。
+         */
+        public synchronized void beginTurn() {
+            if (pendingTurns++ == 0) {
+                settled = new CompletableFuture<>();
+            }
+        }
+
+        /**
+         * 一次调用已经写入（或按策略放弃写入）本轮问答。
+         */
+        public void endTurn() {
+            CompletableFuture<Void> done;
+            synchronized (this) {
+                if (--pendingTurns > 0) {
+                    return;
+                }
+                done = settled;
+            }
+            done.complete(null);
+        }
+
+        /**
+         * 会话中没有进行中的调用时完成，此后的 {@link #snapshotWith} 能看到它们写入的全部历史。
+         */
+        public synchronized CompletableFuture<Void> whenSettled() {
+            return settled.copy();
+        }
+
+        public synchronized int getTokenCount() {
+            return history.getTokenCount();
+        }
+    }
+}
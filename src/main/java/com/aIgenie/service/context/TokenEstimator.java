@@ -0,0 +1,97 @@
+package com.aIgenie.service.context;
+
+/**
+ * 本地 token 数估算器，近似 BPE 分词器（cl100k / DeepSeek 一类）的切分结果，不依赖词表：
+ * <ul>
+ *   <li>CJK 汉字、假名、谚文按每字 1 个 token 计；</li>
+ *   <li>连续字母按常见子词长度切分，约每 4 个字符 1 个 token，前导空格并入单词；</li>
+ *   <li>连续数字约每 3 位 1 个 token；</li>
+ *   <li>标点、符号各计 1 个，连续换行合并为 1 个，其他字符（如 emoji）按 2 个计。</li>
+ * </ul>
+ * 估算整体偏保守（宁多勿少），用于上下文裁剪时不会超出模型窗口。
+ */
+public final class TokenEstimator {
+
+    /** 每条消息的角色标记、分隔符等固定开销。 */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private static final int LETTERS_PER_TOKEN = 4;
+    private static final int DIGITS_PER_TOKEN = 3;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int tokens = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = Character.codePointAt(text, i);
+
+            if (isLetter(cp)) {
+                int run = 0;
+                while (i < length && isLetter(cp = Character.codePointAt(text, i))) {
+                    run++;
+                    i += Character.charCount(cp);
+                }
+                tokens += (run + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN;
+                continue;
+            }
+            if (cp >= '0' && cp <= '9') {
+                int run = 0;
+                while (i < length && (cp = text.charAt(i)) >= '0' && cp <= '9') {
+                    run++;
+                    i++;
+                }
+                tokens += (run + DIGITS_PER_TOKEN - 1) / DIGITS_PER_TOKEN;
+                continue;
+            }
+            if (cp == '\n' || cp == '\r') {
+                while (i < length && ((cp = text.charAt(i)) == '\n' || cp == '\r')) {
+                    i++;
+                }
+                tokens++;
+                continue;
+            }
+
+            i += Character.charCount(cp);
+            if (cp == ' ' || cp == '\t') {
+                // 空格通常与后面的单词合并为一个 token
+                continue;
+            }
+            if (isCjk(cp) || cp < 0x80 || Character.isLetterOrDigit(cp) || isPunctuation(cp)) {
+                tokens++;
+            } else {
+                tokens += 2;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isLetter(int cp) {
+        return (cp >= 'a' && cp <= 'z') || (cp >= 'A' && cp <= 'Z')
+                || (cp >= 0xC0 && cp <= 0x24F && Character.isLetter(cp));
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isPunctuation(int cp) {
+        int type = Character.getType(cp);
+        return type == Character.OTHER_PUNCTUATION
+                || type == Character.START_PUNCTUATION
+                || type == Character.END_PUNCTUATION
+                || type == Character.DASH_PUNCTUATION
+                || type == Character.CONNECTOR_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION
+                || type == Character.FINAL_QUOTE_PUNCTUATION;
+    }
+}
@@ -1,6 +1,13 @@
 package com.aIgenie.service.impl;
 
 import com.aIgenie.service.AIService;
+import com.aIgenie.service.CancelPolicy;
+import com.aIgenie.service.ChatCall;
+import com.aIgenie.service.ChatChunk;
+import com.aIgenie.service.ChatSession;
+import com.aIgenie.service.ChatUsage;
+import com.aIgenie.service.scheduling.AIExecutor;
+import com.aIgenie.service.stream.ChatPublishers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
@@ -8,21 +15,34 @@ import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
 
 /**
  * 基于 Spring AI 1.0 {@link ChatClient} 的标准 AI 服务实现。
  * 仅在 {@code aigenie.use-custom-client=false} 时启用，
  * 与 {@link CustomAIServiceImpl} 互斥，避免重复注册。
+ * 流式输出基于 {@code ChatClient.stream()}，请求期间不持有锁，多个调用可以并发进行。
+ * 每个会话的历史是一个独立的列表，由列表自身的监视器保护，不同会话之间没有共享锁。
+ * 每次调用在整个生命周期内占用 {@link AIExecutor} 的一个名额。
  */
 @Service
 @ConditionalOnProperty(name = "aigenie.use-custom-client", havingValue = "false")
@@ -34,39 +54,51 @@ public class AIServiceImpl implements AIService {
             "你是一个有用的AI助手，名为'AIgenie'。请简洁明了地回答用户的问题。";
 
     private final ChatClient chatClient;
-    private final List<Message> messageHistory;
+    private final AIExecutor executor;
+    private final CancelPolicy cancelPolicy;
+    /** 会话 ID → 该会话的历史，每个列表受自身监视器保护。 */
+    private final ConcurrentMap<String, List<Message>> sessions = new ConcurrentHashMap<>();
 
     @Autowired
-    public AIServiceImpl(ChatClient.Builder chatClientBuilder) {
+    public AIServiceImpl(ChatClient.Builder chatClientBuilder, AIExecutor executor,
+                         @Value("${aigenie.cancel-policy:keep}") String cancelPolicy) {
         this.chatClient = chatClientBuilder.build();
-        this.messageHistory = Collections.synchronizedList(new ArrayList<>());
-        this.messageHistory.add(new SystemMessage(DEFAULT_SYSTEM_PROMPT));
+        this.executor = executor;
+        this.cancelPolicy = CancelPolicy.from(cancelPolicy);
         logger.info("标准AI服务初始化完成 (Spring AI 1.0 ChatClient)");
     }
 
     @Override
-    public synchronized String sendMessage(String message) {
-        logger.debug("开始标准AI调用，消息: {}", message);
-
-        UserMessage userMessage = new UserMessage(message);
-        messageHistory.add(userMessage);
+    public String sendMessage(String message) {
+        return sendMessage(ChatSession.DEFAULT, message);
+    }
 
-        Prompt prompt;
-        synchronized (messageHistory) {
-            prompt = new Prompt(new ArrayList<>(messageHistory));
+    @Override
+    public String sendMessage(ChatSession session, String message) {
+        AIExecutor.Slot slot;
+        try {
+            slot = executor.acquire(session.getPriority());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("AI 调用在排队时被中断", e);
+        }
+        try (slot) {
+            return call(session, message);
         }
+    }
 
+    private String call(ChatSession session, String message) {
+        logger.debug("开始标准AI调用，消息: {}", message);
+        List<Message> history = history(session);
+        UserMessage userMessage = new UserMessage(message);
         try {
-            ChatResponse response = chatClient.prompt(prompt).call().chatResponse();
+            ChatResponse response = chatClient.prompt(promptWith(history, userMessage)).call().chatResponse();
             AssistantMessage assistantMessage = response.getResult().getOutput();
             String aiResponse = assistantMessage.getText();
             logger.debug("收到回复，长度: {}", aiResponse == null ? 0 : aiResponse.length());
-
-            messageHistory.add(assistantMessage);
+            commit(history, userMessage, assistantMessage);
             return aiResponse;
         } catch (Exception e) {
-            // 调用失败时回滚刚刚添加的用户消息，避免历史污染
-            messageHistory.remove(userMessage);
             logger.error("标准AI调用失败", e);
             throw e;
         }
@@ -74,6 +106,196 @@ public class AIServiceImpl implements AIService {
 
     @Override
     public CompletableFuture<String> sendMessageAsync(String message) {
-        return CompletableFuture.supplyAsync(() -> sendMessage(message));
+        return startMessage(message).result();
+    }
+
+    @Override
+    public ChatCall startMessage(String message) {
+        return startMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public ChatCall startMessage(ChatSession session, String message) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        StringBuilder reply = new StringBuilder();
+        Disposable subscription = chunks(session, message).subscribe(
+                chunk -> reply.append(chunk.getContent()),
+                result::completeExceptionally,
+                () -> result.complete(reply.toString()));
+        return new ChatCall(result, subscription::dispose);
+    }
+
+    /**
+     * 通过 {@code ChatClient.stream()} 流式输出，需求与取消直接传递给 Reactor。
+     */
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(String message) {
+        return streamMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(ChatSession session, String message) {
+        return JdkFlowAdapter.publisherToFlowPublisher(chunks(session, message));
+    }
+
+    @Override
+    public void closeSession(ChatSession session) {
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * 每次订阅发起一次流式调用。增量文本逐个发出，结束原因与用量在流结束后合并到最后一个空片段中。
+     * 正常结束时把这一轮写入历史；取消时按 {@link CancelPolicy} 保留已发出的部分回复，
+     * 写入在取消信号传到这里时同步完成，先于取消调用返回；失败时历史保持请求前状态。
+     * 订阅在执行器的虚拟线程上排队占用名额，流结束、失败或取消时归还。
+     */
+    private Flux<ChatChunk> chunks(ChatSession session, String message) {
+        return Flux.defer(() -> {
+            AIExecutor.Slot slot;
+            try {
+                slot = executor.acquire(session.getPriority());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Flux.<ChatChunk>error(e);
+            } catch (CancellationException e) {
+                return Flux.<ChatChunk>error(e);
+            }
+            logger.debug("开始标准AI流式调用，消息: {}", message);
+            List<Message> history = history(session);
+            UserMessage userMessage = new UserMessage(message);
+            StreamState state = new StreamState();
+            return chatClient.prompt(promptWith(history, userMessage)).stream().chatResponse()
+                    .doOnNext(state::absorb)
+                    .map(AIServiceImpl::textOf)
+                    .filter(text -> !text.isEmpty())
+                    .map(state::chunk)
+                    .concatWith(Flux.defer(() -> {
+                        String reply = state.settle();
+                        if (reply != null) {
+                            logger.debug("流式回复完成，长度: {}", reply.length());
+                            commit(history, userMessage, new AssistantMessage(reply));
+                        }
+                        return Flux.just(state.finish());
+                    }))
+                    .doOnCancel(() -> onCancelled(history, userMessage, state))
+                    .doOnError(e -> logger.error("标准AI流式调用失败", e))
+                    .doFinally(signal -> slot.close());
+        }).subscribeOn(Schedulers.fromExecutor(executor.forkExecutor()));
+    }
+
+    /**
+     * 调用被取消后按策略处理已发出的部分回复。
+     */
+    private void onCancelled(List<Message> history, UserMessage userMessage, StreamState state) {
+        String partial = state.settle();
+        if (partial == null) {
+            // 已经正常结束并写入历史
+            return;
+        }
+        logger.info("请求已取消，已收到 {} 字符，策略: {}", partial.length(), cancelPolicy);
+        if (cancelPolicy == CancelPolicy.KEEP && !partial.isEmpty()) {
+            commit(history, userMessage, new AssistantMessage(partial));
+        }
+    }
+
+    private List<Message> history(ChatSession session) {
+        return sessions.computeIfAbsent(session.getId(), id -> {
+            List<Message> history = new ArrayList<>();
+            history.add(new SystemMessage(DEFAULT_SYSTEM_PROMPT));
+            return history;
+        });
+    }
+
+    /**
+     * 以历史快照加上本轮用户消息构造提示词。请求期间不持有任何锁，互不相关的调用可以并发进行。
+     */
+    private static Prompt promptWith(List<Message> history, UserMessage userMessage) {
+        List<Message> messages;
+        synchronized (history) {
+            messages = new ArrayList<>(history);
+        }
+        messages.add(userMessage);
+        return new Prompt(messages);
+    }
+
+    /**
+     * 成功后把一轮问答成对写入历史，避免并发调用的消息交错。
+     */
+    private static void commit(List<Message> history, UserMessage userMessage, AssistantMessage assistantMessage) {
+        synchronized (history) {
+            history.add(userMessage);
+            history.add(assistantMessage);
+        }
+    }
+
+    private static String textOf(ChatResponse response) {
+        if (response.getResult() == null || response.getResult().getOutput() == null) {
+            return "";
+        }
+        String text = response.getResult().getOutput().getText();
+        return text == null ? "" : text;
+    }
+
+    private static ChatUsage toUsage(Usage usage) {
+        if (usage == null) {
+            return null;
+        }
+        int prompt = usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+        int completion = usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+        int total = usage.getTotalTokens() == null ? prompt + completion : usage.getTotalTokens();
+        return new ChatUsage(prompt, completion, total);
+    }
+
+    /**
+     * 单次流式调用的状态。除 {@link #reply} 外只在 Reactor 串行发出信号的线程上访问；
+     * 取消信号可能来自订阅方的线程，因此回复文本及其是否已写入历史受本实例的监视器保护。
+     */
+    private static final class StreamState {
+        final String requestId = ChatChunk.newRequestId();
+        private final StringBuilder reply = new StringBuilder();
+        private boolean settled;
+        long sequence;
+        String finishReason;
+        ChatUsage usage;
+
+        void absorb(ChatResponse response) {
+            if (response.getResult() != null && response.getResult().getMetadata() != null) {
+                String reason = response.getResult().getMetadata().getFinishReason();
+                if (reason != null && !reason.isEmpty()) {
+                    finishReason = reason.toLowerCase(Locale.ROOT);
+                }
+            }
+            if (response.getMetadata() != null) {
+                ChatUsage reported = toUsage(response.getMetadata().getUsage());
+                if (reported != null && reported.getTotalTokens() > 0) {
+                    usage = reported;
+                }
+            }
+        }
+
+        ChatChunk chunk(String text) {
+            synchronized (this) {
+                reply.append(text);
+            }
+            return new ChatChunk(requestId, sequence++, text, null, null);
+        }
+
+        /**
+         * 取出回复全文以写入历史，至多成功一次：正常结束与取消同时发生时只有先到的一方写入。
+         *
+         * @return 已被另一方取走时为 null
+         */
+        synchronized String settle() {
+            if (settled) {
+                return null;
+            }
+            settled = true;
+            return reply.toString();
+        }
+
+        ChatChunk finish() {
+            return new ChatChunk(requestId, sequence++, "",
+                    finishReason == null ? ChatPublishers.FINISH_STOP : finishReason, usage);
+        }
     }
 }
@@ -0,0 +1,211 @@
+package com.aIgenie.service.impl;
+
+import com.aIgenie.service.AIService;
+import com.aIgenie.service.AIServiceException;
+import com.aIgenie.service.ChatCall;
+import com.aIgenie.service.ChatChunk;
+import com.aIgenie.service.ChatSession;
+import com.aIgenie.service.ContextAwareAIService;
+import com.aIgenie.service.cache.ResponseCache;
+import com.aIgenie.service.stream.ChatPublishers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * 带精确匹配缓存的 AI 服务装饰器。
+ * 缓存键为 (模型, 采样参数, 系统提示词, 对话历史, 消息) 的 SHA-256，由被装饰服务通过
+ * {@link ContextAwareAIService#digestRequest} 计算。命中时把回复切成小段依次推送给流式监听器，
+ * 再完成 future，{@link com.aIgenie.controller.ChatController} 看到的调用路径与真实请求完全一致。
+ * 缓存键不含会话：历史相同的不同会话共享缓存，命中的问答写入发起调用的会话。
+ */
+public class CachingAIService implements AIService, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CachingAIService.class);
+
+    /** 命中回放时每段的字符数。 */
+    private static final int REPLAY_CHUNK_CHARS = 16;
+
+    private final ContextAwareAIService delegate;
+    private final ResponseCache cache;
+    private final List<Consumer<String>> streamListeners = new CopyOnWriteArrayList<>();
+
+    public CachingAIService(ContextAwareAIService delegate, ResponseCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+        // 上游的流式分片原样转发给本装饰器的监听器
+        delegate.addStreamListener(this::notifyStreamListeners);
+    }
+
+    @Override
+    public String sendMessage(String message) {
+        return sendMessage(ChatSession.DEFAULT, message);
+    }
+
+    /**
+     * 同步调用：未命中时经 {@link ContextAwareAIService#sendMessageOrThrow} 调用，与异步调用一样只缓存成功的回复；
+     * 失败时返回提示文本。
+     */
+    @Override
+    public String sendMessage(ChatSession session, String message) {
+        String key = delegate.requestFingerprint(session, message);
+        String cached = cache.get(key);
+        if (cached != null) {
+            logger.debug("缓存命中(同步): {}", key);
+            delegate.recordExchange(session, message, cached);
+            return cached;
+        }
+        try {
+            String reply = delegate.sendMessageOrThrow(session, message);
+            if (reply != null && !reply.isEmpty()) {
+                cache.put(key, reply);
+            }
+            return reply;
+        } catch (AIServiceException | CancellationException e) {
+            return AIServiceException.apologyFor(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> sendMessageAsync(String message) {
+        return startMessage(message).result();
+    }
+
+    @Override
+    public ChatCall startMessage(String message) {
+        return startMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public ChatCall startMessage(ChatSession session, String message) {
+        String key = delegate.requestFingerprint(session, message);
+        String cached = cache.get(key);
+        if (cached == null) {
+            ChatCall call = delegate.startMessage(session, message);
+            return new ChatCall(call.result().whenComplete((reply, error) -> {
+                if (error == null && reply != null && !reply.isEmpty()) {
+                    cache.put(key, reply);
+                }
+            }), call::cancel);
+        }
+
+        logger.debug("缓存命中: {}，回放 {} 字符", key, cached.length());
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Thread.startVirtualThread(() -> {
+            try {
+                replay(cached, future);
+                // 回放途中被取消时视为未发生，不写入对话上下文
+                if (!future.isDone()) {
+                    delegate.recordExchange(session, message, cached);
+                    future.complete(cached);
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return ChatCall.of(future);
+    }
+
+    /**
+     * 命中时按订阅方需求回放缓存的回复；未命中时透传被装饰服务的发布者，正常结束后把拼接的全文写入缓存。
+     */
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(String message) {
+        return streamMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(ChatSession session, String message) {
+        return subscriber -> {
+            String key = delegate.requestFingerprint(session, message);
+            String cached = cache.get(key);
+            if (cached != null) {
+                logger.debug("缓存命中(流式): {}，回放 {} 字符", key, cached.length());
+                ChatPublishers.replay(cached, REPLAY_CHUNK_CHARS,
+                        () -> delegate.recordExchange(session, message, cached)).subscribe(subscriber);
+                return;
+            }
+
+            StringBuilder reply = new StringBuilder();
+            ChatPublishers.tap(delegate.streamMessage(session, message),
+                    chunk -> reply.append(chunk.getContent()),
+                    () -> {
+                        if (reply.length() > 0) {
+                            cache.put(key, reply.toString());
+                        }
+                    },
+                    error -> {
+                    }).subscribe(subscriber);
+        };
+    }
+
+    @Override
+    public CompletableFuture<Void> whenSettled(ChatSession session) {
+        return delegate.whenSettled(session);
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public void closeSession(ChatSession session) {
+        delegate.closeSession(session);
+    }
+
+    @Override
+    public void addStreamListener(Consumer<String> listener) {
+        streamListeners.add(listener);
+    }
+
+    @Override
+    public void removeStreamListener(Consumer<String> listener) {
+        streamListeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        cache.close();
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("关闭被装饰的 AI 服务失败", e);
+            }
+        }
+    }
+
+    private void replay(String reply, CompletableFuture<String> future) {
+        int i = 0;
+        while (i < reply.length() && !future.isDone()) {
+            int end = Math.min(reply.length(), i + REPLAY_CHUNK_CHARS);
+            // 不把代理对拆到两段里
+            if (end < reply.length() && Character.isHighSurrogate(reply.charAt(end - 1))) {
+                end++;
+            }
+            notifyStreamListeners(reply.substring(i, end));
+            i = end;
+        }
+    }
+
+    private void notifyStreamListeners(String chunk) {
+        for (Consumer<String> listener : streamListeners) {
+            try {
+                listener.accept(chunk);
+            } catch (Exception e) {
+                logger.warn("通知流式监听器时出错", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.aIgenie.service.impl;
+
+import com.aIgenie.service.AIServiceException;
+import com.aIgenie.service.ChatCall;
+import com.aIgenie.service.ChatChunk;
+import com.aIgenie.service.ChatSession;
+import com.aIgenie.service.ContextAwareAIService;
+import com.aIgenie.service.stream.ChatPublishers;
+import com.aIgenie.service.stream.ChunkMulticaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+
+/**
+ * 合并进行中的相同请求（single-flight）。
+ * 请求指纹与 {@link CachingAIService} 相同：上下文与消息完全一致时，后到的调用不再发起新的上游请求，
+ * 而是挂到已在进行的那一次上，共享同一份流式分片与最终结果。
+ * 每个调用方拿到的是共享结果的独立副本，单个调用方取消不会影响其他调用方；
+ * 所有调用方都取消后才会中止上游请求。
+ * 流式订阅通过 {@link ChunkMulticaster} 共享片段：后加入的订阅方先收到已到达的片段，
+ * 每个订阅方按各自的需求消费，上游读取速度由最快的订阅方决定。
+ * 请求指纹不含会话，历史相同的不同会话也会被合并：上游调用只把问答写入发起方的会话，
+ * 其他会话的调用方在正常完成后通过 {@link ContextAwareAIService#recordExchange} 写入各自的会话。
+ */
+public class CoalescingAIService implements ContextAwareAIService, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CoalescingAIService.class);
+
+    private final ContextAwareAIService delegate;
+    private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public CoalescingAIService(ContextAwareAIService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String sendMessage(String message) {
+        return sendMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public String sendMessage(ChatSession session, String message) {
+        try {
+            return sendMessageOrThrow(session, message);
+        } catch (AIServiceException | CancellationException e) {
+            return AIServiceException.apologyFor(e);
+        }
+    }
+
+    /**
+     * 同步调用的合并：上游失败时以异常结束 {@code flight.result}，
+     * 合并进来的其他会话只在上游成功时才写入各自的会话历史。
+     */
+    @Override
+    public String sendMessageOrThrow(ChatSession session, String message) {
+        String key = delegate.requestFingerprint(session, message);
+        Flight created = new Flight(session, null);
+        Flight flight = join(key, created);
+        if (flight != created) {
+            logger.debug("合并相同的进行中请求(同步): {}", key);
+            String reply;
+            try {
+                reply = flight.result.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+            if (!session.equals(flight.session)) {
+                delegate.recordExchange(session, message, reply);
+            }
+            return reply;
+        }
+
+        try {
+            String reply = delegate.sendMessageOrThrow(session, message);
+            flight.result.complete(reply);
+            return reply;
+        } catch (RuntimeException e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    @Override
+    public CompletableFuture<String> sendMessageAsync(String message) {
+        return startMessage(message).result();
+    }
+
+    @Override
+    public ChatCall startMessage(String message) {
+        return startMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public ChatCall startMessage(ChatSession session, String message) {
+        String key = delegate.requestFingerprint(session, message);
+        Flight created = new Flight(session, null);
+        Flight flight = join(key, created);
+        if (flight != created) {
+            logger.debug("合并相同的进行中请求: {}", key);
+            return joinCall(session, message, key, flight);
+        }
+
+        ChatCall subscription = flight.subscribe(key);
+        try {
+            ChatCall upstream = delegate.startMessage(session, message);
+            upstream.result().whenComplete((reply, error) -> {
+                inFlight.remove(key, flight);
+                if (error != null) {
+                    flight.result.completeExceptionally(error);
+                } else {
+                    flight.result.complete(reply);
+                }
+            });
+            flight.attach(upstream::cancel);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(e);
+        }
+        return subscription;
+    }
+
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(String message) {
+        return streamMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(ChatSession session, String message) {
+        return subscriber -> {
+            String key = delegate.requestFingerprint(session, message);
+            Flight created = new Flight(session, new ChunkMulticaster<>());
+            Flight flight = join(key, created);
+            if (flight != created) {
+                logger.debug("合并相同的进行中请求(流式): {}", key);
+                if (flight.hub == null) {
+                    // 已有的是非流式调用，只能在完成时拿到全文
+                    ChatCall call = joinCall(session, message, key, flight);
+                    ChatPublishers.fromCall(() -> call).subscribe(subscriber);
+                    return;
+                }
+                Flow.Publisher<ChatChunk> shared = s -> flight.hub.subscribe(s, () -> flight.leave(key));
+                if (session.equals(flight.session)) {
+                    shared.subscribe(subscriber);
+                    return;
+                }
+                StringBuilder reply = new StringBuilder();
+                ChatPublishers.tap(shared,
+                        chunk -> reply.append(chunk.getContent()),
+                        () -> delegate.recordExchange(session, message, reply.toString()),
+                        error -> {
+                        }).subscribe(subscriber);
+                return;
+            }
+
+            StringBuilder reply = new StringBuilder();
+            Flow.Publisher<ChatChunk> source = ChatPublishers.tap(delegate.streamMessage(session, message),
+                    chunk -> reply.append(chunk.getContent()),
+                    () -> {
+                        inFlight.remove(key, flight);
+                        flight.result.complete(reply.toString());
+                    },
+                    error -> {
+                        inFlight.remove(key, flight);
+                        flight.result.completeExceptionally(error);
+                    });
+            flight.attach(flight.hub::cancelUpstream);
+            flight.hub.subscribe(subscriber, () -> flight.leave(key));
+            flight.hub.connect(source);
+        };
+    }
+
+    /**
+     * 以调用句柄的形式加入 {@code flight}。调用方属于其他会话时，在结果交给调用方之前把问答写入调用方的会话。
+     */
+    private ChatCall joinCall(ChatSession session, String message, String key, Flight flight) {
+        ChatCall call = flight.subscribe(key);
+        if (session.equals(flight.session)) {
+            return call;
+        }
+        return new ChatCall(call.result().thenApply(reply -> {
+            delegate.recordExchange(session, message, reply);
+            return reply;
+        }), call::cancel);
+    }
+
+    /**
+     * 加入已有的进行中请求，没有时登记 {@code created} 并返回它。已被所有调用方放弃的请求不再接受加入。
+     */
+    private Flight join(String key, Flight created) {
+        while (true) {
+            Flight existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                return created;
+            }
+            if (existing.tryJoin()) {
+                return existing;
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    @Override
+    public void digestRequest(ChatSession session, String message, MessageDigest digest) {
+        delegate.digestRequest(session, message, digest);
+    }
+
+    @Override
+    public void recordExchange(ChatSession session, String message, String reply) {
+        delegate.recordExchange(session, message, reply);
+    }
+
+    @Override
+    public CompletableFuture<Void> whenSettled(ChatSession session) {
+        return delegate.whenSettled(session);
+    }
+
+    @Override
+    public void warmUp() {
+        delegate.warmUp();
+    }
+
+    @Override
+    public void closeSession(ChatSession session) {
+        delegate.closeSession(session);
+    }
+
+    @Override
+    public void addStreamListener(Consumer<String> listener) {
+        delegate.addStreamListener(listener);
+    }
+
+    @Override
+    public void removeStreamListener(Consumer<String> listener) {
+        delegate.removeStreamListener(listener);
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("关闭被装饰的 AI 服务失败", e);
+            }
+        }
+    }
+
+    /**
+     * 一次进行中的上游请求及其调用方计数。
+     */
+    private final class Flight {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        /** 发起上游请求的会话，上游调用只把问答写入该会话。 */
+        final ChatSession session;
+        /** 流式调用的片段分发器，非流式调用为 null。 */
+        final ChunkMulticaster<ChatChunk> hub;
+
+        /** 以下字段受 this 锁保护。 */
+        private Runnable upstream;
+        private int subscribers = 1;
+        private boolean abandoned;
+
+        Flight(ChatSession session, ChunkMulticaster<ChatChunk> hub) {
+            this.session = session;
+            this.hub = hub;
+        }
+
+        synchronized boolean tryJoin() {
+            if (abandoned) {
+                return false;
+            }
+            subscribers++;
+            return true;
+        }
+
+        ChatCall subscribe(String key) {
+            return new ChatCall(result.copy(), () -> leave(key));
+        }
+
+        /**
+         * 登记中止上游请求的动作；所有调用方已经放弃时立即执行。
+         */
+        void attach(Runnable canceller) {
+            boolean cancelNow;
+            synchronized (this) {
+                upstream = canceller;
+                cancelNow = abandoned;
+            }
+            if (cancelNow) {
+                canceller.run();
+            }
+        }
+
+        void leave(String key) {
+            Runnable toCancel;
+            synchronized (this) {
+                if (--subscribers > 0 || result.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                toCancel = upstream;
+            }
+            inFlight.remove(key, this);
+            logger.debug("相同请求的调用方均已取消，中止上游请求: {}", key);
+            if (toCancel != null) {
+                toCancel.run();
+            }
+            result.completeExceptionally(new CancellationException("所有调用方均已取消"));
+        }
+    }
+}
@@ -1,55 +1,104 @@
 package com.aIgenie.service.impl;
 
-import com.aIgenie.service.AIService;
+import com.aIgenie.service.AIServiceException;
+import com.aIgenie.service.CancelPolicy;
+import com.aIgenie.service.ChatCall;
+import com.aIgenie.service.ChatChunk;
+import com.aIgenie.service.ChatSession;
+import com.aIgenie.service.ChatUsage;
+import com.aIgenie.service.ContextAwareAIService;
 import com.aIgenie.service.RequestResponseListener;
+import com.aIgenie.service.context.ConversationMessage;
+import com.aIgenie.service.context.ConversationStore;
+import com.aIgenie.service.metrics.AIMetrics;
+import com.aIgenie.service.metrics.TokenUsage;
+import com.aIgenie.service.ratelimit.AdaptiveRateLimiter;
+import com.aIgenie.service.ratelimit.RateLimits;
+import com.aIgenie.service.routing.ConnectionWarmer;
+import com.aIgenie.service.routing.Endpoint;
+import com.aIgenie.service.routing.EndpointRouter;
+import com.aIgenie.service.routing.HedgePolicy;
+import com.aIgenie.service.routing.HedgedCall;
+import com.aIgenie.service.scheduling.AIExecutor;
+import com.aIgenie.service.stream.BlockingSubscription;
+import com.aIgenie.service.stream.ChatDelta;
+import com.aIgenie.service.stream.ChatDeltaParser;
+import com.aIgenie.service.stream.ChatPublishers;
+import com.aIgenie.service.stream.ResumeStitcher;
+import com.aIgenie.service.stream.SseEventDecoder;
+import com.aIgenie.service.transport.ChatRequestWriter;
+import com.aIgenie.service.transport.ChatTransport;
+import com.aIgenie.service.transport.ChatTransportException;
+import com.aIgenie.service.transport.ExchangeControl;
+import com.aIgenie.service.transport.ExchangeTimeouts;
+import com.aIgenie.service.transport.RestTemplateChatTransport;
+import com.aIgenie.service.transport.TransportRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.MediaType;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.ResponseExtractor;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
 import java.util.function.Consumer;
 
 /**
- * 基于 RestTemplate 的自定义 OpenAI 兼容 AI 服务实现。
+ * 自定义 OpenAI 兼容 AI 服务实现。
+ * HTTP 传输通过 {@link ChatTransport} 注入（RestTemplate 或 JDK HttpClient），
+ * 所有调用经由 {@link AIExecutor} 在受并发上限约束的虚拟线程上执行；
+ * 启用 {@link RateLimits} 时每次 HTTP 请求先经过端点的客户端限流器，429 按退避时间排队重试。
+ * 对话上下文按会话保存在 {@link ConversationStore} 中，只在构造请求与提交问答时短暂持有该会话自己的锁，
+ * 不同会话的请求可以并发流式输出。
  * 该类不再通过 {@code @Service} 自动扫描创建，而是由 {@link com.aIgenie.config.AIConfig}
  * 根据 {@code aigenie.use-custom-client} 开关有条件地注册为 Spring Bean，
  * 避免与 {@link AIServiceImpl} 同时存在导致的 Bean 冲突。
  */
-public class CustomAIServiceImpl implements AIService {
+public class CustomAIServiceImpl implements ContextAwareAIService, AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(CustomAIServiceImpl.class);
 
-    private static final String SSE_DATA_PREFIX = "data: ";
-    private static final String SSE_DONE = "[DONE]";
+    /** 续写开头与已输出内容比对重叠的窗口（字符数）。 */
+    private static final int RESUME_OVERLAP_WINDOW = 64;
 
-    private final String apiUrl;
-    private final String apiKey;
-    private final String model;
+    private final EndpointRouter router;
     private final double temperature;
     private final int maxTokens;
-    private final RestTemplate restTemplate;
+    private final ChatTransport transport;
     private final ObjectMapper objectMapper;
-
-    /** 持有对话上下文，所有访问需要在 {@code historyLock} 同步块中进行。 */
-    private final List<ObjectNode> messageHistory = new ArrayList<>();
-    private final Object historyLock = new Object();
-
-    private final String systemPrompt;
-    private final int maxHistoryGroups;
+    private final ChatDeltaParser deltaParser;
+    private final ChatRequestWriter requestWriter;
+    /** 为 null 时不启用对冲请求。 */
+    private final HedgePolicy hedgePolicy;
+    private final AIMetrics metrics;
+    private final CancelPolicy cancelPolicy;
+    /** 为 null 时不做客户端限流，429 直接按失败处理。 */
+    private final RateLimits rateLimits;
+    /** 为 null 时不预热连接。 */
+    private final ConnectionWarmer warmer;
+    /** 流式回复中途断开后的最大续写次数，0 表示不续写。 */
+    private final int maxResumeAttempts;
+    /** 首 token 与总耗时超时。 */
+    private final ExchangeTimeouts timeouts;
+    private final boolean ownsTimeouts;
+
+    private final AIExecutor executor;
+    /** 执行器由本实例创建时，关闭本实例时一并关闭。 */
+    private final boolean ownsExecutor;
+
+    /** 各会话的对话上下文（按 token 预算裁剪）。 */
+    private final ConversationStore conversations;
 
     /** 监听器集合使用 CopyOnWriteArrayList 保证多线程下迭代时的安全性。 */
     private final List<RequestResponseListener> listeners = new CopyOnWriteArrayList<>();
@@ -59,62 +108,339 @@ public class CustomAIServiceImpl implements AIService {
                                String apiKey,
                                String model,
                                String systemPrompt,
-                               int historyLimit,
+                               int contextTokenBudget,
                                double temperature,
                                int maxTokens) {
-        this.apiUrl = baseUrl + "/chat/completions";
-        this.apiKey = apiKey;
-        this.model = model;
-        this.systemPrompt = systemPrompt;
-        this.maxHistoryGroups = historyLimit;
+        this(baseUrl, apiKey, model, systemPrompt, contextTokenBudget, temperature, maxTokens,
+                new RestTemplateChatTransport(new RestTemplate()));
+    }
+
+    public CustomAIServiceImpl(String baseUrl,
+                               String apiKey,
+                               String model,
+                               String systemPrompt,
+                               int contextTokenBudget,
+                               double temperature,
+                               int maxTokens,
+                               ChatTransport transport) {
+        this(EndpointRouter.single(baseUrl, apiKey, model), systemPrompt, contextTokenBudget, temperature, maxTokens,
+                transport);
+    }
+
+    public CustomAIServiceImpl(EndpointRouter router,
+                               String systemPrompt,
+                               int contextTokenBudget,
+                               double temperature,
+                               int maxTokens,
+                               ChatTransport transport) {
+        this(router, systemPrompt, contextTokenBudget, temperature, maxTokens, transport, null, new AIMetrics(),
+                CancelPolicy.KEEP, null, null, null, 0, null);
+    }
+
+    public CustomAIServiceImpl(EndpointRouter router,
+                               String systemPrompt,
+                               int contextTokenBudget,
+                               double temperature,
+                               int maxTokens,
+                               ChatTransport transport,
+                               HedgePolicy hedgePolicy,
+                               AIMetrics metrics,
+                               CancelPolicy cancelPolicy,
+                               AIExecutor executor,
+                               RateLimits rateLimits,
+                               ConnectionWarmer warmer,
+                               int maxResumeAttempts,
+                               ExchangeTimeouts timeouts) {
+        this.router = router;
         this.temperature = temperature;
         this.maxTokens = maxTokens;
-        this.restTemplate = new RestTemplate();
+        // 系统提示词只在构造时编码一次
+        this.conversations = new ConversationStore(ConversationMessage.of("system", systemPrompt),
+                contextTokenBudget);
+        this.transport = transport;
         this.objectMapper = new ObjectMapper();
-
-        logger.info("初始化自定义AI客户端，使用模型: {}, temperature={}, max_tokens={}",
-                model, temperature, maxTokens);
-        logger.info("API URL: {}", this.apiUrl);
+        this.deltaParser = new ChatDeltaParser(objectMapper.getFactory());
+        this.requestWriter = new ChatRequestWriter(objectMapper.getFactory(), temperature, maxTokens);
+        this.hedgePolicy = hedgePolicy;
+        this.metrics = metrics;
+        this.cancelPolicy = cancelPolicy;
+        this.rateLimits = rateLimits;
+        this.warmer = warmer;
+        this.maxResumeAttempts = Math.max(0, maxResumeAttempts);
+        this.ownsTimeouts = timeouts == null;
+        this.timeouts = timeouts != null ? timeouts : ExchangeTimeouts.none();
+        // 未注入执行器时（手动构造）使用不限并发的私有执行器
+        this.ownsExecutor = executor == null;
+        this.executor = executor != null ? executor : AIExecutor.unbounded(metrics);
+
+        logger.info("初始化自定义AI客户端，端点数: {}, temperature={}, max_tokens={}, 上下文预算={} tokens, 传输: {}, 对冲: {}, 限流: {}, 预热: {}, 续写: {} 次",
+                router.getEndpoints().size(), temperature, maxTokens, contextTokenBudget, transport.name(),
+                hedgePolicy != null, rateLimits != null, warmer != null, this.maxResumeAttempts);
     }
 
     @Override
     public String sendMessage(String message) {
-        ObjectNode userMessage = createMessageNode("user", message);
-        appendToHistory(userMessage);
+        return sendMessage(ChatSession.DEFAULT, message);
+    }
 
+    @Override
+    public String sendMessage(ChatSession session, String message) {
         try {
-            String requestJson = buildRequestJson(false);
-            HttpEntity<String> request = new HttpEntity<>(requestJson, buildHeaders());
+            return sendMessageOrThrow(session, message);
+        } catch (AIServiceException | CancellationException e) {
+            return AIServiceException.apologyFor(e);
+        }
+    }
 
-            logger.debug("发送非流式请求到 {}", apiUrl);
-            String responseBody = restTemplate.postForObject(apiUrl, request, String.class);
-            logger.debug("收到响应，长度: {}", responseBody == null ? 0 : responseBody.length());
+    @Override
+    public String sendMessageOrThrow(ChatSession session, String message) {
+        AIExecutor.Slot slot;
+        try {
+            slot = executor.acquire(session.getPriority());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceException("请求被中断", e);
+        }
+        try (slot) {
+            return exchange(session, message);
+        }
+    }
 
-            JsonNode responseJson = objectMapper.readTree(responseBody);
-            String content = responseJson.path("choices").path(0).path("message").path("content").asText();
+    /**
+     * 非流式调用，在调用方线程上执行，调用方已占用执行器名额。
+     *
+     * @throws AIServiceException 所有候选端点都失败或没有可用端点
+     */
+    private String exchange(ChatSession session, String message) {
+        ConversationStore.Conversation conversation = conversations.get(session.getId());
+        ConversationMessage userMessage = ConversationMessage.of("user", message);
+        List<ConversationMessage> context = conversation.snapshotWith(userMessage);
+
+        ExchangeControl call = new ExchangeControl();
+        Exception lastError = null;
+        try (ExchangeTimeouts.Deadline deadline = timeouts.start(call)) {
+            Iterator<Endpoint> candidates = router.candidates().iterator();
+            for (Endpoint endpoint = router.nextAvailable(candidates); endpoint != null;
+                 endpoint = router.nextAvailable(candidates)) {
+                try {
+                    TransportRequest.BodyWriter body = requestWriter.body(endpoint.getModel(), false, context);
+
+                    logger.debug("发送非流式请求到 {}", endpoint.getName());
+                    int estimatedTokens = estimateTokens(context);
+                    String responseBody = executeLimited(endpoint, estimatedTokens, call.child(),
+                            TransportRequest.jsonPost(endpoint.chatCompletionsUrl(), endpoint.getApiKey(), body),
+                            response -> new String(response.body().readAllBytes(), StandardCharsets.UTF_8));
+                    logger.debug("收到响应，长度: {}", responseBody == null ? 0 : responseBody.length());
+
+                    JsonNode responseJson = objectMapper.readTree(responseBody);
+                    String content = responseJson.path("choices").path(0).path("message").path("content").asText();
+                    router.recordSuccess(endpoint);
+                    ChatUsage usage = readUsage(responseJson.path("usage"));
+                    if (usage != null) {
+                        recordUsage(session, endpoint, usage);
+                        if (rateLimits != null) {
+                            rateLimits.forEndpoint(endpoint).settle(estimatedTokens, usage.getTotalTokens());
+                        }
+                    }
+
+                    conversation.commit(userMessage, ConversationMessage.of("assistant", content));
+                    if (!listeners.isEmpty()) {
+                        notifyListeners(renderRequest(body), responseBody);
+                    }
+                    return content;
+                } catch (Exception e) {
+                    Exception error = deadline.isExpired() ? deadline.timeoutException() : e;
+                    router.recordFailure(endpoint, error);
+                    lastError = error;
+                    if (deadline.isExpired() || !EndpointRouter.isFailoverable(error)) {
+                        break;
+                    }
+                    logger.warn("端点 {} 调用失败，尝试下一个端点: {}", endpoint.getName(), error.getMessage());
+                }
+            }
+        }
 
-            appendToHistory(createMessageNode("assistant", content));
-            notifyListeners(requestJson, responseBody);
-            return content;
-        } catch (Exception e) {
-            // 调用失败时回滚用户消息，保持对话上下文一致
-            removeFromHistory(userMessage);
-            logger.error("AI调用出错", e);
-            return "抱歉，我遇到了一个问题: " + e.getMessage();
+        // 只有成功的问答才会写入历史，失败时无需回滚
+        if (lastError == null) {
+            lastError = router.circuitOpenException();
+            logger.warn("AI调用未发出: {}", lastError.getMessage());
+        } else {
+            logger.error("AI调用出错", lastError);
         }
+        throw new AIServiceException(lastError.getMessage(), lastError);
     }
 
     @Override
     public CompletableFuture<String> sendMessageAsync(String message) {
+        return startMessage(message).result();
+    }
+
+    /**
+     * 取消时中止当前的 HTTP 交换（包括对冲请求），已收到的部分回复按 {@link CancelPolicy} 处理。
+     */
+    @Override
+    public ChatCall startMessage(String message) {
+        return startMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public ChatCall startMessage(ChatSession session, String message) {
         CompletableFuture<String> future = new CompletableFuture<>();
+        ExchangeControl control = new ExchangeControl();
         logger.debug("异步请求开始: {}", message);
 
-        CompletableFuture.runAsync(() -> sendMessageStreaming(message,
-                this::notifyStreamListeners,
-                future::complete,
-                future::completeExceptionally));
+        StreamSink sink = new StreamSink() {
+            @Override
+            public void onContent(String content) {
+                // 取消后不再向监听器推送迟到的分片
+                if (!control.isAborted()) {
+                    notifyStreamListeners(content);
+                }
+            }
+
+            @Override
+            public void onComplete(String reply, String finishReason, ChatUsage usage) {
+                future.complete(reply);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        };
+        submitStreaming(session, message, control, sink);
+
+        return new ChatCall(future, control::abort);
+    }
+
+    /**
+     * 每次订阅发起一次独立的流式调用。订阅方需求耗尽时读取线程在 {@link BlockingSubscription#emit} 上阻塞，
+     * 不再从 socket 读取，由 TCP 流控把背压传回上游；取消订阅会中止 HTTP 交换并按 {@link CancelPolicy} 处理部分回复。
+     * 本方法发出的片段不会推送给 {@link #addStreamListener} 注册的监听器。
+     */
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(String message) {
+        return streamMessage(ChatSession.DEFAULT, message);
+    }
+
+    @Override
+    public Flow.Publisher<ChatChunk> streamMessage(ChatSession session, String message) {
+        return subscriber -> {
+            String requestId = ChatChunk.newRequestId();
+            ExchangeControl control = new ExchangeControl();
+            subscriber.onSubscribe(new BlockingSubscription<ChatChunk>(subscriber,
+                    subscription -> submitStreaming(session, message, control,
+                            new PublishingSink(requestId, subscription)),
+                    control::abort));
+        };
+    }
+
+    /**
+     * 排队执行一次流式调用。调用结束（或在排队中被撤出）之前会话的 {@link #whenSettled} 保持未完成：
+     * 取消后部分回复要等读取线程发现中止才按 {@link CancelPolicy} 写入历史，晚于取消调用的返回。
+     */
+    private void submitStreaming(ChatSession session, String message, ExchangeControl control, StreamSink sink) {
+        ConversationStore.Conversation conversation = conversations.get(session.getId());
+        conversation.beginTurn();
+        try {
+            // 排队中被取消时撤出队列，不再占用后续名额
+            AIExecutor.Ticket ticket = executor.execute(session.getPriority(), () -> {
+                try {
+                    sendMessageStreaming(session, message, control, sink);
+                } finally {
+                    conversation.endTurn();
+                }
+            }, dropped -> {
+                conversation.endTurn();
+                sink.onError(dropped);
+            });
+            control.onAbort(ticket::cancel);
+        } catch (RuntimeException e) {
+            conversation.endTurn();
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> whenSettled(ChatSession session) {
+        return conversations.get(session.getId()).whenSettled();
+    }
+
+    @Override
+    public void digestRequest(ChatSession session, String message, MessageDigest digest) {
+        // 使用全部端点的模型而非本次选中的端点，避免路由切换导致指纹变化
+        for (Endpoint endpoint : router.getEndpoints()) {
+            digest.update(endpoint.getModel().getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update(ByteBuffer.allocate(Double.BYTES + Integer.BYTES).putDouble(temperature).putInt(maxTokens).flip());
+        List<ConversationMessage> context = conversations.get(session.getId())
+                .snapshotWith(ConversationMessage.of("user", message));
+        for (ConversationMessage contextMessage : context) {
+            contextMessage.updateDigest(digest);
+        }
+    }
+
+    @Override
+    public void recordExchange(ChatSession session, String message, String reply) {
+        conversations.get(session.getId())
+                .commit(ConversationMessage.of("user", message), ConversationMessage.of("assistant", reply));
+    }
+
+    /**
+     * 预热下一次请求将会使用的端点（路由器当前的首选端点）。
+     */
+    @Override
+    public void warmUp() {
+        if (warmer == null) {
+            return;
+        }
+        List<Endpoint> candidates = router.candidates();
+        if (!candidates.isEmpty()) {
+            warmer.warmUp(candidates.get(0));
+        }
+    }
+
+    @Override
+    public void closeSession(ChatSession session) {
+        conversations.remove(session.getId());
+        TokenUsage usage = metrics.removeSessionUsage(session.getId());
+        logger.debug("会话已结束: {}，剩余 {} 个会话，用量: {}", session.getId(), conversations.size(), usage);
+    }
+
+    private void recordUsage(ChatSession session, Endpoint endpoint, ChatUsage usage) {
+        metrics.recordUsage(session.getId(), endpoint.getName(), usage);
+        if (usage.getPromptTokens() > 0) {
+            logger.debug("端点 {} 本次提示词 {} tokens，命中前缀缓存 {} tokens",
+                    endpoint.getName(), usage.getPromptTokens(), usage.getCachedPromptTokens());
+        }
+    }
+
+    /**
+     * 解析非流式响应的 {@code usage}，字段含义同 {@link ChatDeltaParser}。
+     *
+     * @return 没有 usage 时为 {@code null}
+     */
+    private static ChatUsage readUsage(JsonNode usage) {
+        if (!usage.isObject()) {
+            return null;
+        }
+        int cached = Math.max(usage.path("prompt_tokens_details").path("cached_tokens").asInt(),
+                usage.path("prompt_cache_hit_tokens").asInt());
+        return new ChatUsage(usage.path("prompt_tokens").asInt(), usage.path("completion_tokens").asInt(),
+                usage.path("total_tokens").asInt(), cached);
+    }
 
-        return future;
+    /**
+     * 关闭私有执行器与超时计时器；注入的由 Spring 容器负责关闭。由 Spring 在容器关闭时通过推断的销毁方法调用。
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.close();
+        }
+        if (ownsTimeouts) {
+            timeouts.close();
+        }
     }
 
     public void addRequestResponseListener(RequestResponseListener listener) {
@@ -135,16 +461,12 @@ public class CustomAIServiceImpl implements AIService {
         }
     }
 
-    /**
-     * 添加流式响应监听器
-     */
+    @Override
     public void addStreamListener(Consumer<String> listener) {
         streamListeners.add(listener);
     }
 
-    /**
-     * 移除流式响应监听器
-     */
+    @Override
     public void removeStreamListener(Consumer<String> listener) {
         streamListeners.remove(listener);
     }
@@ -161,125 +483,356 @@ public class CustomAIServiceImpl implements AIService {
 
     /**
      * 发送支持流式响应的消息。
-     * 错误处理保证 onComplete / onError 二者只会被调用一次，避免重复回调污染 future。
+     * 错误处理保证 sink 的 onComplete / onError 二者只会被调用一次，避免重复回调污染 future。
+     * 用户消息与回复在成功后才成对写入历史。尚未输出任何内容前失败时，按路由评分依次切换端点；
+     * 已经输出内容后连接中断时，以已收到的部分回复作为 assistant 前缀向当前首选端点续写，
+     * 续写内容经 {@link ResumeStitcher} 去掉与前缀重叠的开头后接在原有输出之后，至多续写 {@link #maxResumeAttempts} 次。
      */
-    private void sendMessageStreaming(String message,
-                                      Consumer<String> onChunk,
-                                      Consumer<String> onComplete,
-                                      Consumer<Throwable> onError) {
-        ObjectNode userMessage = createMessageNode("user", message);
-        appendToHistory(userMessage);
-
-        try {
-            String requestJson = buildRequestJson(true);
-            HttpHeaders headers = buildHeaders();
-            byte[] requestBytes = requestJson.getBytes(StandardCharsets.UTF_8);
-
-            logger.debug("启动流式请求到 {}", apiUrl);
-
-            final StringBuilder fullResponse = new StringBuilder();
-
-            restTemplate.execute(apiUrl, HttpMethod.POST,
-                    req -> {
-                        req.getHeaders().putAll(headers);
-                        req.getBody().write(requestBytes);
-                    },
-                    (ResponseExtractor<Void>) response -> {
-                        try (BufferedReader reader = new BufferedReader(
-                                new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                if (line.isEmpty()) continue;
-                                if (!line.startsWith(SSE_DATA_PREFIX)) continue;
-
-                                String data = line.substring(SSE_DATA_PREFIX.length());
-                                if (SSE_DONE.equals(data)) {
-                                    logger.debug("流式传输完成");
-                                    continue;
-                                }
-
-                                try {
-                                    JsonNode chunk = objectMapper.readTree(data);
-                                    JsonNode choices = chunk.path("choices");
-                                    if (choices.isArray() && choices.size() > 0) {
-                                        JsonNode delta = choices.get(0).path("delta");
-                                        JsonNode contentNode = delta.path("content");
-                                        if (!contentNode.isMissingNode()) {
-                                            String content = contentNode.asText();
-                                            fullResponse.append(content);
-                                            onChunk.accept(content);
-                                        }
-                                    }
-                                } catch (Exception parseEx) {
-                                    // 单条 SSE 解析失败时，仅记录日志，不中断整个流式响应
-                                    logger.warn("解析流式数据出错: {}", parseEx.getMessage());
-                                }
+    private void sendMessageStreaming(ChatSession session, String message, ExchangeControl control, StreamSink sink) {
+        ConversationStore.Conversation conversation = conversations.get(session.getId());
+        ConversationMessage userMessage = ConversationMessage.of("user", message);
+        List<ConversationMessage> context = conversation.snapshotWith(userMessage);
+        StringBuilder fullResponse = new StringBuilder();
+
+        // 总耗时期限中止的是 call，用户取消中止的是 control，两者据此区分
+        ExchangeControl call = control.child();
+        Throwable lastError = null;
+        try (ExchangeTimeouts.Deadline deadline = timeouts.start(call)) {
+            Iterator<Endpoint> candidates = router.candidates().iterator();
+            Endpoint endpoint = router.nextAvailable(candidates);
+            List<ConversationMessage> requestContext = context;
+            ResumeStitcher stitcher = null;
+            int resumes = 0;
+            while (endpoint != null) {
+                Attempt attempt = new Attempt(stitcher);
+                ExchangeControl attemptControl = call.child();
+                ExchangeTimeouts.FirstTokenWatch watch = deadline.watchFirstToken(attemptControl);
+                try {
+                    logger.debug("启动流式请求到 {}{}", endpoint.getName(),
+                            resumes > 0 ? "（续写第 " + resumes + " 次）" : "");
+                    streamWithHedging(endpoint, requestContext, attemptControl, delta -> {
+                        if (delta.getContent() != null) {
+                            if (attempt.firstTokenAt == 0) {
+                                attempt.firstTokenAt = System.nanoTime();
+                                watch.onToken();
                             }
+                            emit(attempt.stitch(delta.getContent()), fullResponse, sink);
+                        }
+                        if (delta.getFinishReason() != null) {
+                            attempt.finishReason = delta.getFinishReason();
+                        }
+                        if (delta.getUsage() != null) {
+                            attempt.usage = delta.getUsage();
                         }
-                        return null;
                     });
+                    if (attempt.stitcher != null) {
+                        emit(attempt.stitcher.flush(), fullResponse, sink);
+                    }
+                    long ttft = attempt.ttftNanos();
+                    router.recordSuccess(endpoint, ttft);
+                    if (hedgePolicy != null) {
+                        hedgePolicy.record(ttft);
+                    }
+
+                    String finalResponse = fullResponse.toString();
+                    logger.debug("流式响应完成，总长度: {}, finish_reason={}, usage={}",
+                            finalResponse.length(), attempt.finishReason, attempt.usage);
+                    if (attempt.usage != null) {
+                        recordUsage(session, endpoint, attempt.usage);
+                    }
+                    if (control.isAborted()) {
+                        // 完成的同时被取消：调用方已经按取消处理
+                        onCancelled(conversation, userMessage, finalResponse);
+                        return;
+                    }
+
+                    conversation.commit(userMessage, ConversationMessage.of("assistant", finalResponse));
+                    sink.onComplete(finalResponse,
+                            attempt.finishReason != null ? attempt.finishReason : ChatPublishers.FINISH_STOP,
+                            attempt.usage);
+                    return;
+                } catch (Throwable t) {
+                    if (control.isAborted()) {
+                        onCancelled(conversation, userMessage, fullResponse.toString());
+                        sink.onError(new CancellationException("请求已取消"));
+                        return;
+                    }
+                    // 超时表现为连接被中止，改判为超时异常，计入端点失败
+                    Throwable error = deadline.isExpired() ? deadline.timeoutException()
+                            : watch.isExpired() ? watch.timeoutException() : t;
+                    router.recordFailure(endpoint, error);
+                    lastError = error;
+                    if (deadline.isExpired()) {
+                        break;
+                    }
+                    if (fullResponse.length() == 0) {
+                        if (!EndpointRouter.isFailoverable(error)) {
+                            break;
+                        }
+                        endpoint = router.nextAvailable(candidates);
+                        if (endpoint != null) {
+                            logger.warn("流式调用失败，尝试下一个端点 {}: {}", endpoint.getName(), error.getMessage());
+                        }
+                        continue;
+                    }
+                    // 已经向调用方输出过内容：不能换端点重来，只能接着已有内容续写
+                    if (resumes >= maxResumeAttempts || !isResumable(error)) {
+                        break;
+                    }
+                    endpoint = router.nextAvailable(router.candidates().iterator());
+                    if (endpoint == null) {
+                        break;
+                    }
+                    resumes++;
+                    metrics.recordResume();
+                    String partial = fullResponse.toString();
+                    requestContext = new ArrayList<>(context);
+                    requestContext.add(ConversationMessage.of("assistant", partial));
+                    stitcher = new ResumeStitcher(partial, RESUME_OVERLAP_WINDOW);
+                    logger.warn("流式回复在 {} 字符处中断，第 {} 次续写，端点 {}: {}",
+                            partial.length(), resumes, endpoint.getName(), error.getMessage());
+                } finally {
+                    watch.close();
+                }
+            }
+        }
 
-            String finalResponse = fullResponse.toString();
-            logger.debug("流式响应完成，总长度: {}", finalResponse.length());
+        // 失败的问答不会写入历史，对话上下文保持请求前的状态
+        if (lastError == null) {
+            // 没有任何端点放行：熔断中，立即失败
+            lastError = router.circuitOpenException();
+            logger.warn("流式AI调用未发出: {}", lastError.getMessage());
+        } else {
+            logger.error("流式AI调用出错", lastError);
+        }
+        sink.onError(lastError);
+    }
 
-            appendToHistory(createMessageNode("assistant", finalResponse));
-            onComplete.accept(finalResponse);
-        } catch (Throwable t) {
-            // 失败时回滚用户消息，避免对话上下文污染
-            removeFromHistory(userMessage);
-            logger.error("流式AI调用出错", t);
-            onError.accept(t);
+    private static void emit(String content, StringBuilder fullResponse, StreamSink sink) {
+        if (content.isEmpty()) {
+            return;
         }
+        fullResponse.append(content);
+        sink.onContent(content);
     }
 
-    private ObjectNode createMessageNode(String role, String content) {
-        ObjectNode node = objectMapper.createObjectNode();
-        node.put("role", role);
-        node.put("content", content == null ? "" : content);
-        return node;
+    /**
+     * 中途断开是否值得续写：连接层面的 I/O 错误（重置、空闲超时等）以及可以换端点重试的错误响应。
+     * 解析错误等非 I/O 异常说明响应本身有问题，续写也无济于事。
+     */
+    private static boolean isResumable(Throwable error) {
+        return error instanceof IOException && EndpointRouter.isFailoverable(error);
     }
 
-    private void appendToHistory(ObjectNode message) {
-        synchronized (historyLock) {
-            messageHistory.add(message);
-            while (messageHistory.size() > maxHistoryGroups * 2) {
-                messageHistory.remove(0);
+    /**
+     * 调用被取消后按策略处理已收到的部分回复。
+     */
+    private void onCancelled(ConversationStore.Conversation conversation, ConversationMessage userMessage,
+                             String partial) {
+        logger.info("请求已取消，已收到 {} 字符，策略: {}", partial.length(), cancelPolicy);
+        if (cancelPolicy == CancelPolicy.KEEP && !partial.isEmpty()) {
+            conversation.commit(userMessage, ConversationMessage.of("assistant", partial));
+        }
+    }
+
+    /**
+     * 向指定端点发起流式请求。启用对冲且已有足够的延迟样本时，
+     * 首个 chunk 超过近期首 token 延迟分位数仍未到达，会再发出一个相同请求，先到者胜出。
+     */
+    private void streamWithHedging(Endpoint endpoint,
+                                   List<ConversationMessage> context,
+                                   ExchangeControl control,
+                                   Consumer<ChatDelta> onDelta) throws IOException {
+        long hedgeDelay = hedgePolicy == null ? -1 : hedgePolicy.hedgeDelayNanos();
+        if (hedgeDelay < 0) {
+            streamFrom(endpoint, context, control.child(), onDelta);
+            return;
+        }
+        new HedgedCall<ChatDelta>(control,
+                (legControl, legDelta) -> streamFrom(endpoint, context, legControl, legDelta),
+                hedgeDelay, executor.forkExecutor(), metrics).run(onDelta);
+    }
+
+    /**
+     * 向指定端点发起一次流式请求，逐条把非空的解析结果交给 {@code onDelta}。
+     */
+    private void streamFrom(Endpoint endpoint,
+                            List<ConversationMessage> context,
+                            ExchangeControl control,
+                            Consumer<ChatDelta> onDelta) throws IOException {
+        TransportRequest.BodyWriter body = requestWriter.body(endpoint.getModel(), true, context);
+        int estimatedTokens = estimateTokens(context);
+        ChatUsage[] usage = new ChatUsage[1];
+        executeLimited(endpoint, estimatedTokens, control,
+                TransportRequest.jsonPost(endpoint.chatCompletionsUrl(), endpoint.getApiKey(), body),
+                response -> {
+                    try (InputStream in = response.body()) {
+                        new SseEventDecoder().decode(in, (event, id, data, offset, length) -> {
+                            if (SseEventDecoder.isDone(data, offset, length)) {
+                                logger.debug("流式传输完成");
+                                return;
+                            }
+                            try {
+                                ChatDelta delta = deltaParser.parse(data, offset, length);
+                                if (!delta.isEmpty()) {
+                                    if (delta.getUsage() != null) {
+                                        usage[0] = delta.getUsage();
+                                    }
+                                    onDelta.accept(delta);
+                                }
+                            } catch (JsonProcessingException parseEx) {
+                                // 单条 SSE 解析失败时，仅记录日志，不中断整个流式响应
+                                logger.warn("解析流式数据出错: {}", parseEx.getOriginalMessage());
+                            }
+                        });
+                    }
+                    return null;
+                });
+        if (rateLimits != null && usage[0] != null) {
+            rateLimits.forEndpoint(endpoint).settle(estimatedTokens, usage[0].getTotalTokens());
+        }
+    }
+
+    /**
+     * 发送到端点的真实请求都经过这里，请求前后通知 {@link ConnectionWarmer} 连接的使用情况。
+     */
+    private <T> T executeLimited(Endpoint endpoint,
+                                 int estimatedTokens,
+                                 ExchangeControl control,
+                                 TransportRequest request,
+                                 ChatTransport.ResponseHandler<T> handler) throws IOException {
+        if (warmer == null) {
+            return executeThrottled(endpoint, estimatedTokens, control, request, handler);
+        }
+        warmer.onRequest(endpoint);
+        try {
+            return executeThrottled(endpoint, estimatedTokens, control, request, handler);
+        } finally {
+            warmer.onRelease(endpoint);
+        }
+    }
+
+    /**
+     * 经过端点限流器发送请求：先预约额度（不足时排队），再用响应头校准限流器。
+     * 收到 429 时暂停该端点并在退避后重试，至多 {@link RateLimits#getMaxRetries()} 次；
+     * 429 总是在输出任何内容之前返回，因此重试对调用方不可见。
+     */
+    private <T> T executeThrottled(Endpoint endpoint,
+                                   int estimatedTokens,
+                                   ExchangeControl control,
+                                   TransportRequest request,
+                                   ChatTransport.ResponseHandler<T> handler) throws IOException {
+        if (rateLimits == null) {
+            return transport.execute(request, control, handler);
+        }
+        AdaptiveRateLimiter limiter = rateLimits.forEndpoint(endpoint);
+        for (int retry = 0; ; retry++) {
+            limiter.acquire(estimatedTokens, control);
+            try {
+                return transport.execute(request, control, response -> {
+                    limiter.onResponse(response::header);
+                    return handler.handle(response);
+                });
+            } catch (ChatTransportException e) {
+                if (!RateLimits.isThrottled(e)) {
+                    throw e;
+                }
+                // 被拒绝的请求不计入用量，重试会重新预约；只有最终受理的那次由 settle 按实际用量修正
+                limiter.refund(estimatedTokens);
+                limiter.onThrottled(e::getHeader);
+                if (retry >= rateLimits.getMaxRetries()) {
+                    throw e;
+                }
+                logger.warn("端点 {} 返回 429，第 {} 次重试", endpoint.getName(), retry + 1);
             }
         }
     }
 
-    private void removeFromHistory(ObjectNode message) {
-        synchronized (historyLock) {
-            messageHistory.remove(message);
+    /**
+     * 预估一次请求计入 TPM 的 token 数：上下文的估算值加上 max_tokens（服务端按此预扣）。
+     */
+    private int estimateTokens(List<ConversationMessage> context) {
+        int tokens = maxTokens;
+        for (ConversationMessage message : context) {
+            tokens += message.getTokenCount();
         }
+        return tokens;
     }
 
-    private HttpHeaders buildHeaders() {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.setBearerAuth(apiKey);
-        return headers;
+    /**
+     * 仅在存在请求/响应监听器时，把请求体渲染为字符串用于调试展示。
+     */
+    private static String renderRequest(TransportRequest.BodyWriter body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.writeTo(out);
+        return out.toString(StandardCharsets.UTF_8);
     }
 
     /**
-     * 构造带历史上下文的请求 JSON 字符串。
+     * 流式调用的输出端：{@link #startMessage} 推送给监听器并完成 future，{@link #streamMessage} 按需发布片段。
      */
-    private String buildRequestJson(boolean stream) throws Exception {
-        ObjectNode requestBody = objectMapper.createObjectNode();
-        requestBody.put("model", model);
-        requestBody.put("temperature", temperature);
-        requestBody.put("max_tokens", maxTokens);
-        requestBody.put("stream", stream);
-
-        ArrayNode messagesNode = requestBody.putArray("messages");
-        messagesNode.add(createMessageNode("system", systemPrompt));
-
-        synchronized (historyLock) {
-            for (ObjectNode msg : messageHistory) {
-                messagesNode.add(msg);
+    private interface StreamSink {
+        /**
+         * 收到增量文本。可能阻塞（订阅方需求耗尽时），以此向上游施加背压。
+         */
+        void onContent(String content);
+
+        void onComplete(String reply, String finishReason, ChatUsage usage);
+
+        void onError(Throwable error);
+    }
+
+    private static final class PublishingSink implements StreamSink {
+        private final String requestId;
+        private final BlockingSubscription<ChatChunk> subscription;
+        private long sequence;
+
+        PublishingSink(String requestId, BlockingSubscription<ChatChunk> subscription) {
+            this.requestId = requestId;
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onContent(String content) {
+            // 订阅已取消时 emit 立即返回 false，取消回调已中止交换，读取随即结束
+            subscription.emit(new ChatChunk(requestId, sequence++, content, null, null));
+        }
+
+        @Override
+        public void onComplete(String reply, String finishReason, ChatUsage usage) {
+            if (subscription.emit(new ChatChunk(requestId, sequence++, "", finishReason, usage))) {
+                subscription.complete();
             }
         }
 
-        return objectMapper.writeValueAsString(requestBody);
+        @Override
+        public void onError(Throwable error) {
+            subscription.fail(error);
+        }
+    }
+
+    /**
+     * 单次端点尝试的状态。对冲时由胜出的读取线程写入，{@link HedgedCall#run} 返回后在调用线程读取。
+     */
+    private static final class Attempt {
+        final long start = System.nanoTime();
+        /** 续写时去掉与已输出内容重叠的开头；首次请求为 null。 */
+        final ResumeStitcher stitcher;
+        long firstTokenAt;
+        String finishReason;
+        ChatUsage usage;
+
+        Attempt(ResumeStitcher stitcher) {
+            this.stitcher = stitcher;
+        }
+
+        String stitch(String content) {
+            return stitcher == null ? content : stitcher.accept(content);
+        }
+
+        /** 首 token 延迟；没有任何内容时按完成时间计。 */
+        long ttftNanos() {
+            return (firstTokenAt == 0 ? System.nanoTime() : firstTokenAt) - start;
+        }
     }
 }
@@ -0,0 +1,198 @@
+package com.aIgenie.service.metrics;
+
+import com.aIgenie.service.CallPriority;
+import com.aIgenie.service.ChatUsage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端运行指标。计数器基于 {@link LongAdder}，在流式读取线程上累加几乎没有竞争开销。
+ * 通过 {@link #snapshot()} 读取当前值，容器关闭时输出一次汇总日志。
+ */
+public class AIMetrics implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AIMetrics.class);
+
+    /** 发出的对冲请求数。 */
+    private final LongAdder hedgesIssued = new LongAdder();
+    /** 对冲请求先于原请求返回首个 chunk 的次数。 */
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /** 流式回复中途断开后发起的续写次数。 */
+    private final LongAdder streamResumes = new LongAdder();
+
+    /** 完成的连接预热次数。 */
+    private final LongAdder warmUps = new LongAdder();
+    /** 复用了预热连接的真实请求数。 */
+    private final LongAdder warmUpHits = new LongAdder();
+    /** 预热为这些请求省下的建连时间之和。 */
+    private final LongAdder warmUpSavedNanos = new LongAdder();
+
+    /** 全部调用的 token 用量。 */
+    private final TokenUsage usage = new TokenUsage();
+    /** 按端点名称统计的 token 用量。 */
+    private final Map<String, TokenUsage> endpointUsage = new ConcurrentHashMap<>();
+    /** 按会话 ID 统计的 token 用量，会话结束时移除。 */
+    private final Map<String, TokenUsage> sessionUsage = new ConcurrentHashMap<>();
+
+    /** 按优先级统计的 {@link com.aIgenie.service.scheduling.AIExecutor} 排队情况。 */
+    private final Map<CallPriority, QueueStats> queueStats = new EnumMap<>(CallPriority.class);
+
+    public AIMetrics() {
+        for (CallPriority priority : CallPriority.values()) {
+            queueStats.put(priority, new QueueStats());
+        }
+    }
+
+    public void hedgeIssued() {
+        hedgesIssued.increment();
+    }
+
+    public void hedgeWon() {
+        hedgeWins.increment();
+    }
+
+    public void recordResume() {
+        streamResumes.increment();
+    }
+
+    public void recordWarmUp() {
+        warmUps.increment();
+    }
+
+    public void recordWarmUpHit(long savedNanos) {
+        warmUpHits.increment();
+        warmUpSavedNanos.add(savedNanos);
+    }
+
+    /**
+     * 记录一次请求的上游用量，同时计入总量、端点与会话。
+     */
+    public void recordUsage(String sessionId, String endpoint, ChatUsage chatUsage) {
+        usage.record(chatUsage);
+        endpointUsage.computeIfAbsent(endpoint, k -> new TokenUsage()).record(chatUsage);
+        sessionUsage.computeIfAbsent(sessionId, k -> new TokenUsage()).record(chatUsage);
+    }
+
+    /**
+     * 会话结束时移除其用量统计。
+     *
+     * @return 该会话的累计用量，没有记录时为 {@code null}
+     */
+    public TokenUsage removeSessionUsage(String sessionId) {
+        return sessionUsage.remove(sessionId);
+    }
+
+    public void recordQueueWait(CallPriority priority, long nanos) {
+        QueueStats stats = queueStats.get(priority);
+        stats.calls.increment();
+        stats.waitNanos.add(nanos);
+        stats.maxWaitNanos.accumulate(nanos);
+    }
+
+    public long getHedgesIssued() {
+        return hedgesIssued.sum();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getStreamResumes() {
+        return streamResumes.sum();
+    }
+
+    public long getWarmUps() {
+        return warmUps.sum();
+    }
+
+    public long getWarmUpHits() {
+        return warmUpHits.sum();
+    }
+
+    public long getWarmUpSavedNanos() {
+        return warmUpSavedNanos.sum();
+    }
+
+    public TokenUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * @return 端点的累计用量，没有记录时为 {@code null}
+     */
+    public TokenUsage getEndpointUsage(String endpoint) {
+        return endpointUsage.get(endpoint);
+    }
+
+    /**
+     * @return 会话的累计用量，没有记录时为 {@code null}
+     */
+    public TokenUsage getSessionUsage(String sessionId) {
+        return sessionUsage.get(sessionId);
+    }
+
+    public long getScheduledCalls(CallPriority priority) {
+        return queueStats.get(priority).calls.sum();
+    }
+
+    public long getQueueWaitNanos(CallPriority priority) {
+        return queueStats.get(priority).waitNanos.sum();
+    }
+
+    public long getMaxQueueWaitNanos(CallPriority priority) {
+        return queueStats.get(priority).maxWaitNanos.get();
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("hedge.issued", getHedgesIssued());
+        values.put("hedge.wins", getHedgeWins());
+        values.put("stream.resumes", getStreamResumes());
+        long warmUpHitCount = getWarmUpHits();
+        values.put("warmup.count", getWarmUps());
+        values.put("warmup.hits", warmUpHitCount);
+        values.put("warmup.saved-ms.total", TimeUnit.NANOSECONDS.toMillis(getWarmUpSavedNanos()));
+        values.put("warmup.saved-ms.avg",
+                warmUpHitCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(getWarmUpSavedNanos() / warmUpHitCount));
+        putUsage(values, "usage", usage);
+        endpointUsage.forEach((endpoint, endpointTotals) ->
+                putUsage(values, "usage.endpoint." + endpoint, endpointTotals));
+        for (CallPriority priority : CallPriority.values()) {
+            String prefix = "executor." + priority.name().toLowerCase(Locale.ROOT);
+            long calls = getScheduledCalls(priority);
+            values.put(prefix + ".calls", calls);
+            values.put(prefix + ".queue-wait-ms.avg",
+                    calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(getQueueWaitNanos(priority) / calls));
+            values.put(prefix + ".queue-wait-ms.max", TimeUnit.NANOSECONDS.toMillis(getMaxQueueWaitNanos(priority)));
+        }
+        return values;
+    }
+
+    private static void putUsage(Map<String, Long> values, String prefix, TokenUsage totals) {
+        values.put(prefix + ".requests", totals.getRequests());
+        values.put(prefix + ".prompt-tokens", totals.getPromptTokens());
+        values.put(prefix + ".cached-prompt-tokens", totals.getCachedPromptTokens());
+        values.put(prefix + ".completion-tokens", totals.getCompletionTokens());
+        values.put(prefix + ".cache-hit-pct", totals.getCacheHitPercent());
+    }
+
+    private static final class QueueStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    @Override
+    public void close() {
+        logger.info("运行指标汇总: {}", snapshot());
+    }
+}
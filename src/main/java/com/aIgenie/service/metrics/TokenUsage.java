@@ -0,0 +1,55 @@
+package com.aIgenie.service.metrics;
+
+import com.aIgenie.service.ChatUsage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 累计的 token 用量：请求数、提示词 / 命中前缀缓存的提示词 / 回复 token 数。
+ * 由 {@link AIMetrics} 按会话、按端点各维护一份。
+ */
+public final class TokenUsage {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder cachedPromptTokens = new LongAdder();
+    private final LongAdder completionTokens = new LongAdder();
+
+    void record(ChatUsage usage) {
+        requests.increment();
+        promptTokens.add(usage.getPromptTokens());
+        cachedPromptTokens.add(usage.getCachedPromptTokens());
+        completionTokens.add(usage.getCompletionTokens());
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getPromptTokens() {
+        return promptTokens.sum();
+    }
+
+    public long getCachedPromptTokens() {
+        return cachedPromptTokens.sum();
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens.sum();
+    }
+
+    /**
+     * 提示词 token 中命中前缀缓存的百分比（0-100）。
+     */
+    public long getCacheHitPercent() {
+        long prompt = getPromptTokens();
+        return prompt == 0 ? 0 : getCachedPromptTokens() * 100 / prompt;
+    }
+
+    @Override
+    public String toString() {
+        return "TokenUsage{requests=" + getRequests() + ", prompt=" + getPromptTokens()
+                + ", cached=" + getCachedPromptTokens() + " (" + getCacheHitPercent() + "%)"
+                + ", completion=" + getCompletionTokens() + "}";
+    }
+}
@@ -0,0 +1,276 @@
+package com.aIgenie.service.ratelimit;
+
+import com.aIgenie.service.transport.ExchangeControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 单个端点的客户端限流器：每分钟请求数（RPM）与每分钟 token 数（TPM）两个令牌桶。
+ * <ul>
+ *   <li>调用方通过 {@link #acquire} 预约 1 个请求与预估的 token 数，额度不足时按预约顺序排队等待，而不是直接失败；</li>
+ *   <li>每个响应的 {@code x-ratelimit-limit-*} / {@code x-ratelimit-remaining-*} 响应头用于校准桶的速率与余量，
+ *       速率按 {@code safetyFactor} 打折，使持续吞吐停在服务端上限之下；</li>
+ *   <li>收到 429 时按 {@code Retry-After}（没有时按指数退避）暂停整个端点；暂停结束后每个排队的调用各自再等待一段
+ *       随机抖动，避免同时重试；</li>
+ *   <li>调用结束后用实际用量 {@link #settle} 修正预估值。</li>
+ * </ul>
+ * 速率为 0 的桶表示上限未知，不做限制，直到从响应头中学到上限。
+ */
+public class AdaptiveRateLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    /** {@code x-ratelimit-reset-*} 的格式，如 {@code 1s}、{@code 6m0s}、{@code 20ms}、{@code 1h2m3.5s}。 */
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final String name;
+    private final double safetyFactor;
+    private final long backoffBaseNanos;
+    private final long backoffMaxNanos;
+
+    /** 以下字段受 this 锁保护。 */
+    private final Bucket requests = new Bucket();
+    private final Bucket tokens = new Bucket();
+    private long pausedUntil;
+    /** 等待 {@link #pausedUntil} 的调用各自叠加的随机抖动上限。 */
+    private long pauseJitterNanos;
+    private int consecutiveThrottles;
+
+    public AdaptiveRateLimiter(String name, int requestsPerMinute, int tokensPerMinute, double safetyFactor,
+                               Duration backoffBase, Duration backoffMax) {
+        this.name = name;
+        this.safetyFactor = safetyFactor;
+        this.backoffBaseNanos = backoffBase.toNanos();
+        this.backoffMaxNanos = backoffMax.toNanos();
+        long now = System.nanoTime();
+        requests.setLimit(requestsPerMinute * safetyFactor, now);
+        tokens.setLimit(tokensPerMinute * safetyFactor, now);
+    }
+
+    /**
+     * 预约一次请求，必要时阻塞到额度可用。等待期间 {@code control} 被中止时退还预约并抛出异常。
+     */
+    public void acquire(int estimatedTokens, ExchangeControl control) throws InterruptedIOException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            waitNanos = Math.max(requests.reserve(1, now), tokens.reserve(estimatedTokens, now));
+            long pause = pausedUntil - now;
+            if (pause > 0 && pause >= waitNanos) {
+                // 暂停期间排队的调用都在 pausedUntil 醒来，各自加上抖动才能错开重试
+                waitNanos = pause + (pauseJitterNanos > 0 ? ThreadLocalRandom.current().nextLong(pauseJitterNanos) : 0);
+            }
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+
+        logger.debug("端点 {} 限流排队 {} ms（预估 {} tokens）", name,
+                TimeUnit.NANOSECONDS.toMillis(waitNanos), estimatedTokens);
+        Thread waiter = Thread.currentThread();
+        control.attach(waiter::interrupt);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            refund(estimatedTokens);
+            if (control.isAborted()) {
+                throw control.abortedException();
+            }
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("限流等待被中断");
+        } finally {
+            control.detach();
+        }
+    }
+
+    /**
+     * 用响应头校准速率与余量。成功响应会重置连续限流计数。
+     */
+    public synchronized void onResponse(Function<String, String> header) {
+        adapt(header);
+        consecutiveThrottles = 0;
+    }
+
+    /**
+     * 退还一次没有被上游受理的预约（等待被中断，或请求返回 429）。
+     */
+    public synchronized void refund(int estimatedTokens) {
+        requests.refund(1);
+        tokens.refund(estimatedTokens);
+    }
+
+    /**
+     * 收到 429：校准后暂停整个端点，直到 {@code Retry-After}（或指数退避时间的一半）之后；
+     * 随机抖动由每个等待的调用在 {@link #acquire} 中各自叠加。
+     */
+    public synchronized void onThrottled(Function<String, String> header) {
+        adapt(header);
+        long now = System.nanoTime();
+        long retryAfter = retryAfterNanos(header);
+        long backoff = Math.min(backoffMaxNanos, backoffBaseNanos << Math.min(consecutiveThrottles, 20));
+        consecutiveThrottles++;
+        // 有 Retry-After 时以其为准，抖动不超过一个退避基数；否则取退避时间的后一半随机值（equal jitter）
+        long pause = retryAfter >= 0 ? retryAfter : backoff / 2;
+        if (now + pause >= pausedUntil) {
+            pausedUntil = now + pause;
+            pauseJitterNanos = retryAfter >= 0 ? backoffBaseNanos : backoff / 2 + 1;
+        }
+        requests.drain(now);
+        tokens.drain(now);
+        logger.warn("端点 {} 被限流，暂停 {} ms（Retry-After: {}）", name,
+                TimeUnit.NANOSECONDS.toMillis(pause), retryAfter >= 0 ? TimeUnit.NANOSECONDS.toMillis(retryAfter) + "ms" : "无");
+    }
+
+    /**
+     * 用实际 token 用量修正预约时的预估值：多退少补。
+     */
+    public synchronized void settle(int estimatedTokens, int actualTokens) {
+        int delta = estimatedTokens - actualTokens;
+        if (delta > 0) {
+            tokens.refund(delta);
+        } else if (delta < 0) {
+            tokens.reserve(-delta, System.nanoTime());
+        }
+    }
+
+    private void adapt(Function<String, String> header) {
+        long now = System.nanoTime();
+        adaptBucket(requests, header.apply("x-ratelimit-limit-requests"),
+                header.apply("x-ratelimit-remaining-requests"), now);
+        adaptBucket(tokens, header.apply("x-ratelimit-limit-tokens"),
+                header.apply("x-ratelimit-remaining-tokens"), now);
+    }
+
+    private void adaptBucket(Bucket bucket, String limitHeader, String remainingHeader, long now) {
+        double limit = parseNumber(limitHeader);
+        if (limit > 0 && Math.abs(limit * safetyFactor - bucket.capacity) > 0.5) {
+            logger.info("端点 {} 限流上限更新: {}/min（按 {} 折算为 {}）", name, (long) limit, safetyFactor,
+                    (long) (limit * safetyFactor));
+            bucket.setLimit(limit * safetyFactor, now);
+        }
+        double remaining = parseNumber(remainingHeader);
+        if (remaining >= 0 && bucket.capacity > 0) {
+            // 服务端的余量为准，同样按比例打折
+            bucket.clamp(remaining * safetyFactor, now);
+        }
+    }
+
+    private static double parseNumber(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 依次尝试 {@code retry-after-ms}、{@code Retry-After}（秒数或 HTTP 日期）与 {@code x-ratelimit-reset-*}，都没有时返回 -1。
+     */
+    static long retryAfterNanos(Function<String, String> header) {
+        double millis = parseNumber(header.apply("retry-after-ms"));
+        if (millis >= 0) {
+            return (long) (millis * 1_000_000);
+        }
+        String retryAfter = header.apply("Retry-After");
+        if (retryAfter != null && !retryAfter.isBlank()) {
+            double seconds = parseNumber(retryAfter);
+            if (seconds >= 0) {
+                return (long) (seconds * 1_000_000_000L);
+            }
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(ZonedDateTime.now(at.getZone()), at).toNanos());
+            } catch (DateTimeParseException e) {
+                logger.debug("无法解析 Retry-After: {}", retryAfter);
+            }
+        }
+        return Math.max(parseReset(header.apply("x-ratelimit-reset-requests")),
+                parseReset(header.apply("x-ratelimit-reset-tokens")));
+    }
+
+    private static long parseReset(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = RESET_PART.matcher(value.trim());
+        double nanos = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            nanos += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000_000_000L;
+                case "m" -> amount * 60_000_000_000L;
+                case "s" -> amount * 1_000_000_000L;
+                default -> amount * 1_000_000L;
+            };
+        }
+        return matched ? (long) nanos : -1;
+    }
+
+    /**
+     * 令牌桶。余量可以为负，表示已被预约到未来；预约方按余量恢复到 0 所需的时间等待。
+     */
+    private static final class Bucket {
+        double capacity;
+        double ratePerNano;
+        double level;
+        long updatedAt;
+
+        void setLimit(double perMinute, long now) {
+            refill(now);
+            boolean wasUnlimited = capacity <= 0;
+            capacity = Math.max(0, perMinute);
+            ratePerNano = capacity / MINUTE_NANOS;
+            level = wasUnlimited ? capacity : Math.min(level, capacity);
+        }
+
+        long reserve(double amount, long now) {
+            if (capacity <= 0) {
+                return 0;
+            }
+            refill(now);
+            level -= Math.min(amount, capacity);
+            return level >= 0 ? 0 : (long) Math.ceil(-level / ratePerNano);
+        }
+
+        void refund(double amount) {
+            if (capacity > 0) {
+                level = Math.min(capacity, level + amount);
+            }
+        }
+
+        void clamp(double remaining, long now) {
+            refill(now);
+            level = Math.min(level, remaining);
+        }
+
+        void drain(long now) {
+            if (capacity > 0) {
+                refill(now);
+                level = Math.min(level, 0);
+            }
+        }
+
+        private void refill(long now) {
+            if (capacity > 0) {
+                level = Math.min(capacity, level + (now - updatedAt) * ratePerNano);
+            }
+            updatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.aIgenie.service.ratelimit;
+
+import com.aIgenie.service.routing.Endpoint;
+import com.aIgenie.service.transport.ChatTransportException;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 各端点的 {@link AdaptiveRateLimiter}，按端点名称懒创建，所有端点共用同一组初始配置。
+ */
+public class RateLimits {
+
+    private final int requestsPerMinute;
+    private final int tokensPerMinute;
+    private final double safetyFactor;
+    private final int maxRetries;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+    private final ConcurrentMap<String, AdaptiveRateLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param requestsPerMinute 初始 RPM 上限，0 表示未知（从响应头学习）
+     * @param tokensPerMinute   初始 TPM 上限，0 表示未知（从响应头学习）
+     * @param safetyFactor      实际使用的速率占上限的比例
+     * @param maxRetries        单次请求遇到 429 时的最大重试次数
+     */
+    public RateLimits(int requestsPerMinute, int tokensPerMinute, double safetyFactor, int maxRetries,
+                      Duration backoffBase, Duration backoffMax) {
+        if (safetyFactor <= 0 || safetyFactor > 1) {
+            throw new IllegalArgumentException("safetyFactor 必须在 (0, 1] 之间: " + safetyFactor);
+        }
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.safetyFactor = safetyFactor;
+        this.maxRetries = maxRetries;
+        this.backoffBase = backoffBase;
+        this.backoffMax = backoffMax;
+    }
+
+    public AdaptiveRateLimiter forEndpoint(Endpoint endpoint) {
+        return limiters.computeIfAbsent(endpoint.getName(), name -> new AdaptiveRateLimiter(name,
+                requestsPerMinute, tokensPerMinute, safetyFactor, backoffBase, backoffMax));
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 是否为上游限流（HTTP 429）。
+     */
+    public static boolean isThrottled(Throwable error) {
+        return error instanceof ChatTransportException e && e.getStatusCode() == 429;
+    }
+}
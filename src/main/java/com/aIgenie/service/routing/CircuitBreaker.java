@@ -0,0 +1,105 @@
+package com.aIgenie.service.routing;
+
+import java.time.Duration;
+
+/**
+ * 单个端点的熔断器。
+ * <ul>
+ *   <li>关闭：正常放行，记录连续失败次数；</li>
+ *   <li>打开：连续失败达到阈值后进入，冷却 {@code openDuration} 内的请求直接拒绝（快速失败），不再等待已经失效的连接；</li>
+ *   <li>半开：冷却结束（或健康探测成功）后只放行一个试探请求，成功则关闭，失败则重新打开。</li>
+ * </ul>
+ * 试探请求被取消、既没有成功也没有失败时，超过 {@code openDuration} 后允许下一个试探，不会一直卡在半开状态。
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    /** 以下字段受 this 锁保护。 */
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long trialStartedAt;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * 请求发出前调用。
+     *
+     * @return false 表示熔断中，本次请求不应发往该端点
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                break;
+            case HALF_OPEN:
+                if (trialInFlight && now - trialStartedAt < openNanos) {
+                    return false;
+                }
+                break;
+        }
+        trialInFlight = true;
+        trialStartedAt = now;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * @return 本次失败是否使熔断器打开
+     */
+    public synchronized boolean onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trialInFlight = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 健康探测成功：不必等冷却结束，直接允许一个试探请求。
+     */
+    public synchronized void probeSucceeded() {
+        if (state == State.OPEN) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 距离允许下一个试探请求的剩余时间，未打开时为 0。
+     */
+    public synchronized long remainingOpenNanos() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openNanos - (System.nanoTime() - openedAt));
+    }
+}
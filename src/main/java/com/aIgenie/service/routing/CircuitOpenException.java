@@ -0,0 +1,23 @@
+package com.aIgenie.service.routing;
+
+import java.io.IOException;
+
+/**
+ * 所有候选端点都处于熔断状态，请求没有发出即失败。
+ */
+public class CircuitOpenException extends IOException {
+
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(long retryAfterMillis) {
+        super("上游服务暂时不可用（已熔断），约 " + Math.max(1, (retryAfterMillis + 999) / 1000) + " 秒后重试");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * 距离最早一个端点允许试探请求的毫秒数。
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,184 @@
+package com.aIgenie.service.routing;
+
+import com.aIgenie.service.metrics.AIMetrics;
+import com.aIgenie.service.transport.ChatTransport;
+import com.aIgenie.service.transport.ChatTransportException;
+import com.aIgenie.service.transport.TransportRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接预热：用户开始输入时，向即将使用的端点发一个轻量请求，提前完成 DNS、TCP 与 TLS 握手，
+ * 真正的请求到达时直接复用传输层连接池中的连接。
+ * <ul>
+ *   <li>预热请求与健康探测相同（GET {@code /models}），响应体直接丢弃；非 2xx 响应同样说明连接已建立；</li>
+ *   <li>每次预热连续发两次探测：第一次在冷连接上，第二次在刚建立的连接上，两者之差即建连耗时，
+ *       预热后的首个真实请求把它计为节省的时间写入 {@link AIMetrics}；</li>
+ *   <li>同时保持预热的源站（scheme + host + port）不超过 {@code maxWarm} 个，超出时淘汰最久未用的；</li>
+ *   <li>连接空闲超过 {@code idleExpiry} 视为已被连接池回收，不再计入节省；用户持续输入时每过半个有效期重新预热一次。</li>
+ * </ul>
+ * 真实请求同样会刷新连接的活跃时间，刚结束一轮对话时不会重复预热。
+ */
+public class ConnectionWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionWarmer.class);
+
+    private final ChatTransport transport;
+    private final int maxWarm;
+    private final long idleExpiryNanos;
+    private final AIMetrics metrics;
+
+    /** 源站 → 连接状态，按访问顺序排列。受 this 锁保护。 */
+    private final Map<String, WarmConnection> connections = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param idleExpiry 预热的有效期，应不超过传输层连接池的空闲保持时间；为 0 时取 {@link ChatTransport#idleKeepAlive()}
+     */
+    public ConnectionWarmer(ChatTransport transport, int maxWarm, Duration idleExpiry, AIMetrics metrics) {
+        this.transport = transport;
+        this.maxWarm = Math.max(1, maxWarm);
+        Duration expiry = idleExpiry.isZero() ? transport.idleKeepAlive() : idleExpiry;
+        this.idleExpiryNanos = expiry.toNanos();
+        this.metrics = metrics;
+        logger.info("连接预热已启用，上限 {} 个源站，有效期 {}", this.maxWarm, expiry);
+    }
+
+    /**
+     * 异步预热到该端点的连接。连接仍然新鲜或正在预热时直接返回，不会阻塞调用方（通常是 EDT）。
+     */
+    public void warmUp(Endpoint endpoint) {
+        String origin = originOf(endpoint);
+        long now = System.nanoTime();
+        WarmConnection connection;
+        synchronized (this) {
+            connection = connections.get(origin);
+            if (connection != null && (connection.probing || now - connection.lastActivity < idleExpiryNanos / 2)) {
+                return;
+            }
+            if (connection == null) {
+                evictIfFull();
+                connection = new WarmConnection();
+                connections.put(origin, connection);
+            }
+            connection.probing = true;
+        }
+        WarmConnection target = connection;
+        Thread.ofVirtual().name("aigenie-warm-up").start(() -> probe(endpoint, origin, target));
+    }
+
+    /**
+     * 真实请求发出前调用：连接处于预热有效期内且本次预热尚未被使用时，把建连耗时记为节省的时间。
+     */
+    public void onRequest(Endpoint endpoint) {
+        String origin = originOf(endpoint);
+        long now = System.nanoTime();
+        long saved = -1;
+        synchronized (this) {
+            WarmConnection connection = connections.get(origin);
+            if (connection == null) {
+                evictIfFull();
+                connection = new WarmConnection();
+                connections.put(origin, connection);
+            } else if (!connection.credited && connection.savedNanos >= 0
+                    && now - connection.lastActivity < idleExpiryNanos) {
+                saved = connection.savedNanos;
+            }
+            connection.credited = true;
+            connection.lastActivity = now;
+        }
+        if (saved >= 0) {
+            metrics.recordWarmUpHit(saved);
+            logger.debug("请求复用了预热连接 {}，节省约 {}ms", origin, saved / 1_000_000);
+        }
+    }
+
+    /**
+     * 真实请求结束后调用：连接从此刻开始在连接池中空闲。
+     */
+    public void onRelease(Endpoint endpoint) {
+        String origin = originOf(endpoint);
+        synchronized (this) {
+            WarmConnection connection = connections.get(origin);
+            if (connection != null) {
+                connection.lastActivity = System.nanoTime();
+            }
+        }
+    }
+
+    private void probe(Endpoint endpoint, String origin, WarmConnection connection) {
+        TransportRequest request = TransportRequest.get(endpoint.modelsUrl(), endpoint.getApiKey());
+        try {
+            long cold = timeProbe(request);
+            long warm = timeProbe(request);
+            long saved = Math.max(0, cold - warm);
+            metrics.recordWarmUp();
+            synchronized (this) {
+                connection.savedNanos = saved;
+                connection.credited = false;
+                connection.lastActivity = System.nanoTime();
+                connection.probing = false;
+            }
+            logger.debug("已预热 {}：冷连接 {}ms，复用连接 {}ms", origin, cold / 1_000_000, warm / 1_000_000);
+        } catch (Exception e) {
+            synchronized (this) {
+                connections.remove(origin, connection);
+            }
+            logger.debug("预热 {} 失败: {}", origin, e.getMessage());
+        }
+    }
+
+    /**
+     * 发出一次探测并返回耗时。非 2xx 响应也说明连接可用，同样计时。
+     */
+    private long timeProbe(TransportRequest request) throws Exception {
+        long start = System.nanoTime();
+        try {
+            transport.execute(request, response -> {
+                try (InputStream body = response.body()) {
+                    body.transferTo(OutputStream.nullOutputStream());
+                }
+                return null;
+            });
+        } catch (ChatTransportException e) {
+            logger.trace("预热探测返回 {}", e.getStatusCode());
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 调用方持有 this 锁。
+     */
+    private void evictIfFull() {
+        Iterator<Map.Entry<String, WarmConnection>> it = connections.entrySet().iterator();
+        while (connections.size() >= maxWarm && it.hasNext()) {
+            Map.Entry<String, WarmConnection> eldest = it.next();
+            if (!eldest.getValue().probing) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String originOf(Endpoint endpoint) {
+        URI uri = URI.create(endpoint.getBaseUrl());
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /**
+     * 一个源站的连接状态，字段受外部 ConnectionWarmer.this 锁保护。
+     */
+    private static final class WarmConnection {
+        boolean probing;
+        long lastActivity = System.nanoTime();
+        /** 最近一次预热测得的建连耗时，尚未预热过为 -1。 */
+        long savedNanos = -1;
+        /** 最近一次预热是否已被真实请求使用（已计入节省）。 */
+        boolean credited;
+    }
+}
@@ -0,0 +1,90 @@
+package com.aIgenie.service.routing;
+
+/**
+ * 一个 OpenAI 兼容的上游端点及其运行时统计。
+ * 首 token 延迟与错误率均为 EWMA（指数加权移动平均），新样本权重为 {@link #ALPHA}。
+ * 是否放行请求由 {@link EndpointRouter} 为每个端点维护的 {@link CircuitBreaker} 决定。
+ */
+public class Endpoint {
+
+    private static final double ALPHA = 0.2;
+    /** 错误率对评分的放大系数：错误率 50% 时评分约为原延迟的 3 倍。 */
+    private static final double ERROR_PENALTY = 4.0;
+
+    private final String name;
+    private final String baseUrl;
+    private final String apiKey;
+    private final String model;
+
+    /** 以下统计字段受 this 锁保护。 */
+    private double ttftMillis = Double.NaN;
+    private double errorRate;
+
+    public Endpoint(String name, String baseUrl, String apiKey, String model) {
+        this.name = name;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String chatCompletionsUrl() {
+        return baseUrl + "/chat/completions";
+    }
+
+    public String modelsUrl() {
+        return baseUrl + "/models";
+    }
+
+    synchronized void recordSuccess(long ttftNanos) {
+        double sample = ttftNanos / 1_000_000.0;
+        ttftMillis = Double.isNaN(ttftMillis) ? sample : ttftMillis + ALPHA * (sample - ttftMillis);
+        recordSuccess();
+    }
+
+    /**
+     * 没有首 token 延迟样本的成功，只降低错误率。
+     */
+    synchronized void recordSuccess() {
+        errorRate = errorRate * (1 - ALPHA);
+    }
+
+    synchronized void recordFailure() {
+        errorRate = errorRate + ALPHA * (1 - errorRate);
+    }
+
+    /**
+     * 探测恢复后重新接纳：保留延迟统计，错误率减半，给端点重新证明自己的机会。
+     */
+    synchronized void readmit() {
+        errorRate = errorRate / 2;
+    }
+
+    /**
+     * 路由评分，越小越好。尚无延迟样本的端点评分为 0，会被优先尝试以获得样本。
+     */
+    synchronized double score() {
+        double latency = Double.isNaN(ttftMillis) ? 0 : ttftMillis;
+        return latency * (1 + ERROR_PENALTY * errorRate);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s[%s, ttft=%.0fms, err=%.2f]", name, model, ttftMillis, errorRate);
+    }
+}
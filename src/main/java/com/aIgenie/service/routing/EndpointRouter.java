@@ -0,0 +1,207 @@
+package com.aIgenie.service.routing;
+
+import com.aIgenie.service.transport.ChatTransport;
+import com.aIgenie.service.transport.ChatTransportException;
+import com.aIgenie.service.transport.TransportRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多端点路由器。
+ * 按首 token 延迟与错误率的 EWMA 为端点评分，每次请求按评分从优到劣给出候选列表，
+ * 调用方依次尝试直到成功（故障转移）。每个端点有一个 {@link CircuitBreaker}：
+ * 连续失败达到阈值后熔断，冷却期内调用方通过 {@link #tryAcquire(Endpoint)} 直接跳过该端点；
+ * 所有端点都熔断时立即以 {@link CircuitOpenException} 失败，而不是等待已经失效的连接。
+ * 多端点时健康探测定时请求熔断端点的 {@code /models}，成功后提前进入半开状态。
+ */
+public class EndpointRouter implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(EndpointRouter.class);
+
+    /** 未指定时的熔断冷却时间。 */
+    private static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final List<Endpoint> endpoints;
+    private final Map<Endpoint, CircuitBreaker> breakers = new IdentityHashMap<>();
+    private ScheduledExecutorService prober;
+
+    public EndpointRouter(List<Endpoint> endpoints, int failureThreshold) {
+        this(endpoints, failureThreshold, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * @param failureThreshold 连续失败多少次后熔断
+     * @param openDuration     熔断后多久允许一个试探请求
+     */
+    public EndpointRouter(List<Endpoint> endpoints, int failureThreshold, Duration openDuration) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个端点");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        for (Endpoint endpoint : this.endpoints) {
+            breakers.put(endpoint, new CircuitBreaker(failureThreshold, openDuration));
+        }
+        logger.info("端点路由初始化: {}，熔断阈值 {} 次，冷却 {}", this.endpoints, failureThreshold, openDuration);
+    }
+
+    /**
+     * 只有一个端点、不熔断的路由器（手动构造时使用）。
+     */
+    public static EndpointRouter single(String baseUrl, String apiKey, String model) {
+        return new EndpointRouter(List.of(new Endpoint("default", baseUrl, apiKey, model)), Integer.MAX_VALUE);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 本次请求的候选端点：未熔断的端点按评分升序在前，熔断中的端点排在后面；
+     * 发往每个端点之前还需通过 {@link #tryAcquire(Endpoint)}。
+     */
+    public List<Endpoint> candidates() {
+        if (endpoints.size() == 1) {
+            return endpoints;
+        }
+        List<Endpoint> ordered = new ArrayList<>(endpoints);
+        ordered.sort(Comparator.comparing((Endpoint e) -> breakers.get(e).getState() != CircuitBreaker.State.CLOSED)
+                .thenComparingDouble(Endpoint::score));
+        return ordered;
+    }
+
+    /**
+     * 请求发往该端点之前调用，熔断中返回 false，调用方应跳过该端点。
+     */
+    public boolean tryAcquire(Endpoint endpoint) {
+        return breakers.get(endpoint).tryAcquire();
+    }
+
+    /**
+     * 从候选列表中取出下一个放行的端点；都在熔断中时返回 null。
+     */
+    public Endpoint nextAvailable(Iterator<Endpoint> candidates) {
+        while (candidates.hasNext()) {
+            Endpoint endpoint = candidates.next();
+            if (tryAcquire(endpoint)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 所有端点都熔断时抛给调用方的异常，附带最早可以重试的时间。
+     */
+    public CircuitOpenException circuitOpenException() {
+        long retryAfter = Long.MAX_VALUE;
+        for (CircuitBreaker breaker : breakers.values()) {
+            retryAfter = Math.min(retryAfter, breaker.remainingOpenNanos());
+        }
+        return new CircuitOpenException(TimeUnit.NANOSECONDS.toMillis(retryAfter));
+    }
+
+    public CircuitBreaker.State getState(Endpoint endpoint) {
+        return breakers.get(endpoint).getState();
+    }
+
+    public void recordSuccess(Endpoint endpoint, long ttftNanos) {
+        endpoint.recordSuccess(ttftNanos);
+        breakers.get(endpoint).onSuccess();
+    }
+
+    /**
+     * 记录一次没有首 token 延迟样本的成功（非流式调用），只更新错误率与熔断器。
+     * 非流式调用的往返时间包含限流排队与完整生成，不能与流式调用的首 token 延迟放在同一个评分里比较。
+     */
+    public void recordSuccess(Endpoint endpoint) {
+        endpoint.recordSuccess();
+        breakers.get(endpoint).onSuccess();
+    }
+
+    /**
+     * 记录失败。请求本身有问题（见 {@link #isFailoverable}）说明端点仍在正常应答，不计入熔断。
+     */
+    public void recordFailure(Endpoint endpoint, Throwable error) {
+        endpoint.recordFailure();
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (!isFailoverable(error)) {
+            breaker.onSuccess();
+            return;
+        }
+        if (breaker.onFailure()) {
+            logger.warn("端点 {} 熔断，冷却期内的请求将直接失败: {}", endpoint.getName(), error.getMessage());
+        }
+    }
+
+    /**
+     * 请求失败后是否值得换一个端点重试。
+     * 400 / 413 / 422 说明请求本身有问题，换端点也无济于事。
+     */
+    public static boolean isFailoverable(Throwable error) {
+        if (error instanceof ChatTransportException e) {
+            int status = e.getStatusCode();
+            return status != 400 && status != 413 && status != 422;
+        }
+        return true;
+    }
+
+    /**
+     * 启动健康探测，定期探测熔断中的端点。
+     */
+    public synchronized void startHealthProbe(ChatTransport transport, Duration interval) {
+        if (prober != null || endpoints.size() == 1) {
+            return;
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aigenie-endpoint-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = interval.toMillis();
+        prober.scheduleWithFixedDelay(() -> probeOpen(transport), period, period, TimeUnit.MILLISECONDS);
+        logger.info("端点健康探测已启动，间隔 {}", interval);
+    }
+
+    private void probeOpen(ChatTransport transport) {
+        for (Endpoint endpoint : endpoints) {
+            CircuitBreaker breaker = breakers.get(endpoint);
+            if (breaker.getState() != CircuitBreaker.State.OPEN) {
+                continue;
+            }
+            try {
+                transport.execute(TransportRequest.get(endpoint.modelsUrl(), endpoint.getApiKey()), response -> {
+                    try (InputStream body = response.body()) {
+                        body.transferTo(OutputStream.nullOutputStream());
+                    }
+                    return null;
+                });
+                endpoint.readmit();
+                breaker.probeSucceeded();
+                logger.info("端点 {} 探测成功，进入半开状态", endpoint.getName());
+            } catch (Exception e) {
+                logger.debug("端点 {} 探测失败: {}", endpoint.getName(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+}
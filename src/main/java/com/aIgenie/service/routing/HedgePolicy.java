@@ -0,0 +1,61 @@
+package com.aIgenie.service.routing;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 对冲请求的触发阈值。
+ * 记录最近若干次请求的首 token 延迟，取其指定分位数作为等待时间：
+ * 超过该时间仍未收到首个 chunk 时，再发出一个相同的请求，先到者胜出。
+ */
+public class HedgePolicy {
+
+    private static final int WINDOW = 256;
+
+    private final double percentile;
+    private final int minSamples;
+    private final long minDelayNanos;
+
+    /** 环形缓冲区，受 this 锁保护。 */
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+
+    /**
+     * @param percentile 触发对冲的延迟分位数，例如 0.95
+     * @param minSamples 样本数不足时不对冲，避免冷启动阶段阈值失真
+     * @param minDelay   阈值下限，防止延迟普遍很低时频繁对冲
+     */
+    public HedgePolicy(double percentile, int minSamples, Duration minDelay) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("percentile 需要在 (0, 1) 之间: " + percentile);
+        }
+        this.percentile = percentile;
+        this.minSamples = Math.max(1, Math.min(minSamples, WINDOW));
+        this.minDelayNanos = minDelay.toNanos();
+    }
+
+    public synchronized void record(long ttftNanos) {
+        samples[next] = ttftNanos;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
+        }
+    }
+
+    /**
+     * 当前的对冲等待时间（纳秒）；样本不足时返回 -1，表示本次不对冲。
+     */
+    public long hedgeDelayNanos() {
+        long[] sorted;
+        synchronized (this) {
+            if (count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+    }
+}
@@ -0,0 +1,197 @@
+package com.aIgenie.service.routing;
+
+import com.aIgenie.service.metrics.AIMetrics;
+import com.aIgenie.service.transport.ExchangeControl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 一次带对冲的流式调用。
+ * 原请求在 {@code hedgeDelayNanos} 内没有产出首个 chunk 时，发出一个相同的对冲请求；
+ * 先产出元素（或无元素地成功结束）的一方胜出，另一方的连接立即通过 {@link ExchangeControl#abort()} 关闭，
+ * 不再继续消耗 token。只有胜出方的内容会交给调用方。
+ */
+public class HedgedCall<T> {
+
+    private static final int PRIMARY = 0;
+    private static final int HEDGE = 1;
+
+    /**
+     * 单路请求：通过 {@code control} 发起可中止的交换，把解析出的每个元素交给 {@code onItem}。
+     */
+    @FunctionalInterface
+    public interface Leg<T> {
+        void run(ExchangeControl control, Consumer<T> onItem) throws IOException;
+    }
+
+    private final Leg<T> leg;
+    private final long hedgeDelayNanos;
+    private final Executor executor;
+    private final AIMetrics metrics;
+
+    private final ExchangeControl[] controls;
+    private final Throwable[] errors = new Throwable[2];
+    private final boolean[] finished = new boolean[2];
+    private int started;
+    private volatile int winner = -1;
+
+    /**
+     * @param parent 调用方的中止句柄，两路请求都派生自它，调用方取消时一并中止
+     */
+    public HedgedCall(ExchangeControl parent, Leg<T> leg, long hedgeDelayNanos, Executor executor, AIMetrics metrics) {
+        this.controls = new ExchangeControl[]{parent.child(), parent.child()};
+        this.leg = leg;
+        this.hedgeDelayNanos = hedgeDelayNanos;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 执行调用并阻塞到胜出方结束。所有请求都失败时抛出原请求的异常。
+     */
+    public void run(Consumer<T> onItem) throws IOException {
+        try {
+            start(PRIMARY, onItem);
+            if (awaitFirstResult()) {
+                metrics.hedgeIssued();
+                start(HEDGE, onItem);
+            }
+            awaitOutcome();
+        } catch (InterruptedException e) {
+            abortAll();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("请求被中断");
+        }
+
+        Throwable error;
+        synchronized (this) {
+            error = winner >= 0 ? errors[winner] : errors[PRIMARY];
+            if (winner < 0 && errors[HEDGE] != null && errors[HEDGE] != error) {
+                error.addSuppressed(errors[HEDGE]);
+            }
+        }
+        if (error instanceof IOException io) {
+            throw io;
+        }
+        if (error instanceof RuntimeException re) {
+            throw re;
+        }
+        if (error != null) {
+            throw new IOException(error);
+        }
+    }
+
+    private void start(int index, Consumer<T> onItem) {
+        synchronized (this) {
+            started++;
+        }
+        executor.execute(() -> {
+            Throwable error = null;
+            try {
+                leg.run(controls[index], item -> {
+                    if (winner < 0) {
+                        claim(index);
+                    }
+                    if (winner != index) {
+                        // 已经输掉比赛：停止解析，连接已由胜出方关闭
+                        controls[index].abort();
+                        throw new LostRaceException();
+                    }
+                    onItem.accept(item);
+                });
+            } catch (Throwable t) {
+                error = t;
+            }
+            finish(index, error);
+        });
+    }
+
+    /**
+     * 等待原请求的首个元素或结束。
+     *
+     * @return 超时仍无结果、需要发出对冲请求时返回 true
+     */
+    private synchronized boolean awaitFirstResult() throws InterruptedException {
+        long deadline = System.nanoTime() + hedgeDelayNanos;
+        while (winner < 0 && !finished[PRIMARY]) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return true;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return false;
+    }
+
+    private synchronized void awaitOutcome() throws InterruptedException {
+        while (true) {
+            int w = winner;
+            if (w >= 0 ? finished[w] : allStartedFinished()) {
+                return;
+            }
+            wait();
+        }
+    }
+
+    private boolean allStartedFinished() {
+        for (int i = 0; i < started; i++) {
+            if (!finished[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void claim(int index) {
+        synchronized (this) {
+            if (winner >= 0) {
+                return;
+            }
+            winner = index;
+            notifyAll();
+        }
+        if (index == HEDGE) {
+            metrics.hedgeWon();
+        }
+        controls[1 - index].abort();
+    }
+
+    private void finish(int index, Throwable error) {
+        boolean claimed = false;
+        synchronized (this) {
+            finished[index] = true;
+            errors[index] = error;
+            // 无内容但成功结束的一方同样视为胜出
+            if (error == null && winner < 0) {
+                winner = index;
+                claimed = true;
+            }
+            notifyAll();
+        }
+        if (claimed) {
+            if (index == HEDGE) {
+                metrics.hedgeWon();
+            }
+            controls[1 - index].abort();
+        }
+    }
+
+    private void abortAll() {
+        for (ExchangeControl control : controls) {
+            control.abort();
+        }
+    }
+
+    /**
+     * 输掉比赛的一方用于跳出 SSE 解析循环，不会暴露给调用方。
+     */
+    private static final class LostRaceException extends RuntimeException {
+        LostRaceException() {
+            super("对冲请求已由另一方胜出", null, false, false);
+        }
+    }
+}
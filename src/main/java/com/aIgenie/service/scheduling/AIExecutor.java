@@ -0,0 +1,421 @@
+package com.aIgenie.service.scheduling;
+
+import com.aIgenie.service.CallPriority;
+import com.aIgenie.service.metrics.AIMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * AI 调用专用的执行器。
+ * <ul>
+ *   <li>每个任务运行在独立的虚拟线程上，阻塞的 SSE 读取不占用公共 ForkJoinPool；</li>
+ *   <li>同时进行的调用数不超过 {@code maxConcurrent}，其中 {@code interactiveReserved} 个名额只留给
+ *       {@link CallPriority#INTERACTIVE}，后台调用再多也不会占满所有名额；</li>
+ *   <li>排队按"虚拟截止时间"（入队时间 + 优先级序号 × {@code aging}）排序：高优先级先出队，
+ *       低优先级等待超过 {@code aging} 后排到新到的高一级调用之前，不会被饿死；</li>
+ *   <li>排队中的调用可以通过 {@link Ticket#cancel()} 或 {@link #cancelQueued(CallPriority)} 撤出，
+ *       开启 {@code cancelBulkOnInteractive} 时，交互调用需要排队会直接撤掉排队中的批量调用；</li>
+ *   <li>排队耗时按优先级记录在 {@link AIMetrics} 中；</li>
+ *   <li>{@link #close()} 撤出所有排队中的调用，等待进行中的调用至多 {@code shutdownTimeout} 后中断剩余线程。</li>
+ * </ul>
+ * 不经过 {@link #execute} 的调用（同步调用、由回调驱动的响应式调用）通过 {@link #acquire(CallPriority)} 占用名额。
+ */
+public class AIExecutor implements Executor, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AIExecutor.class);
+
+    private final int maxConcurrent;
+    private final int interactiveReserved;
+    private final long agingNanos;
+    private final boolean cancelBulkOnInteractive;
+    private final Duration shutdownTimeout;
+    private final AIMetrics metrics;
+    private final ExecutorService threads =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-call-", 0).factory());
+    private final Executor forkExecutor = this::fork;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** 以下字段受 lock 保护。 */
+    private final NavigableSet<Waiter> queue = new TreeSet<>(
+            Comparator.comparingLong((Waiter w) -> w.deadline).thenComparingLong(w -> w.sequence));
+    private int active;
+    private int activeNonInteractive;
+    private boolean closed;
+
+    /**
+     * @param interactiveReserved 只留给交互调用的名额数，至多 {@code maxConcurrent - 1}
+     * @param aging               低一级优先级的调用排队多久后与新到的高一级调用同等对待
+     */
+    public AIExecutor(int maxConcurrent,
+                      int interactiveReserved,
+                      Duration aging,
+                      boolean cancelBulkOnInteractive,
+                      Duration shutdownTimeout,
+                      AIMetrics metrics) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("maxConcurrent 必须为正数: " + maxConcurrent);
+        }
+        if (interactiveReserved >= maxConcurrent) {
+            logger.warn("interactive-reserved={} 不小于并发上限 {}，后台调用将无法执行，调整为 {}",
+                    interactiveReserved, maxConcurrent, maxConcurrent - 1);
+            interactiveReserved = maxConcurrent - 1;
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.interactiveReserved = Math.max(0, interactiveReserved);
+        this.agingNanos = aging.toNanos();
+        this.cancelBulkOnInteractive = cancelBulkOnInteractive;
+        this.shutdownTimeout = shutdownTimeout;
+        this.metrics = metrics;
+        logger.info("AI 执行器初始化，并发上限: {}，交互保留: {}，老化: {}", maxConcurrent, this.interactiveReserved, aging);
+    }
+
+    /**
+     * 不限并发、不区分优先级的执行器，用于手动构造服务时。
+     */
+    public static AIExecutor unbounded(AIMetrics metrics) {
+        return new AIExecutor(Integer.MAX_VALUE, 0, Duration.ZERO, false, Duration.ZERO, metrics);
+    }
+
+    /**
+     * 以交互优先级执行。
+     */
+    @Override
+    public void execute(Runnable task) {
+        execute(CallPriority.INTERACTIVE, task, dropped -> {
+        });
+    }
+
+    /**
+     * 排队执行一次 AI 调用，获得名额后在虚拟线程上运行。
+     * 调用在排队中被撤出（取消或执行器关闭）时不会运行，改为调用 {@code onDropped}。
+     * 执行器已关闭时抛出 {@link RejectedExecutionException}。
+     */
+    public Ticket execute(CallPriority priority, Runnable task, Consumer<CancellationException> onDropped) {
+        Waiter waiter = new Waiter(priority, onDropped);
+        waiter.onGrant = () -> threads.execute(() -> {
+            Slot slot = new Slot(priority);
+            try {
+                task.run();
+            } finally {
+                slot.close();
+            }
+        });
+        enqueue(waiter);
+        return new Ticket(waiter);
+    }
+
+    /**
+     * 以交互优先级占用名额。
+     */
+    public Slot acquire() throws InterruptedException {
+        return acquire(CallPriority.INTERACTIVE);
+    }
+
+    /**
+     * 在当前线程上占用一个名额，名额不足时阻塞等待。调用结束后必须关闭返回的 {@link Slot}。
+     * 排队中被撤出时抛出 {@link CancellationException}。
+     */
+    public Slot acquire(CallPriority priority) throws InterruptedException {
+        Waiter waiter = new Waiter(priority, dropped -> {
+        });
+        Condition granted = lock.newCondition();
+        waiter.onGrant = granted::signal;
+        waiter.onDrop = granted::signal;
+        enqueue(waiter);
+        lock.lock();
+        try {
+            while (!waiter.granted && !waiter.dropped) {
+                granted.await();
+            }
+        } catch (InterruptedException e) {
+            if (!waiter.granted) {
+                queue.remove(waiter);
+                throw e;
+            }
+            // 中断与获得名额同时发生：保留名额，恢复中断标记交给调用方处理
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+        if (waiter.dropped) {
+            throw new CancellationException("AI 调用在排队时被撤出");
+        }
+        return new Slot(priority);
+    }
+
+    /**
+     * 撤出所有排队中的指定优先级调用，返回撤出的数量。已在执行的调用不受影响。
+     */
+    public int cancelQueued(CallPriority priority) {
+        List<Waiter> dropped = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Waiter> it = queue.iterator();
+            while (it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter.priority == priority) {
+                    it.remove();
+                    waiter.drop();
+                    dropped.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyDropped(dropped, "被更高优先级的调用撤出");
+        if (!dropped.isEmpty()) {
+            logger.info("撤出 {} 个排队中的 {} 调用", dropped.size(), priority);
+        }
+        return dropped.size();
+    }
+
+    /**
+     * 属于某次调用的附属任务（例如对冲请求的各路读取）使用的执行器：同样运行在受管的虚拟线程上，
+     * 但不占用名额，避免与持有名额的调用方互相等待。
+     */
+    public Executor forkExecutor() {
+        return forkExecutor;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * 正在排队等待名额的调用数。
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 正在执行的调用数。
+     */
+    public int getActive() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        List<Waiter> dropped;
+        lock.lock();
+        try {
+            closed = true;
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+            dropped.forEach(Waiter::drop);
+        } finally {
+            lock.unlock();
+        }
+        notifyDropped(dropped, "执行器已关闭");
+
+        threads.shutdown();
+        try {
+            if (!threads.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.info("关闭时仍有 {} 个 AI 调用未结束，强制中止", getActive());
+                threads.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fork(Runnable task) {
+        threads.execute(task);
+    }
+
+    private void enqueue(Waiter waiter) {
+        List<Waiter> dropped = List.of();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("AI 执行器已关闭");
+            }
+            queue.add(waiter);
+            dispatch();
+            if (!waiter.granted && waiter.priority == CallPriority.INTERACTIVE && cancelBulkOnInteractive) {
+                dropped = new ArrayList<>();
+                Iterator<Waiter> it = queue.iterator();
+                while (it.hasNext()) {
+                    Waiter queued = it.next();
+                    if (queued.priority == CallPriority.BULK) {
+                        it.remove();
+                        queued.drop();
+                        dropped.add(queued);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        notifyDropped(dropped, "交互调用到达，批量调用被撤出");
+    }
+
+    /**
+     * 按截止时间顺序为可以运行的调用分配名额。后台调用受保留名额限制而不能运行时，
+     * 排在它后面的交互调用仍然可以先运行。必须持有 lock。
+     */
+    private void dispatch() {
+        Iterator<Waiter> it = queue.iterator();
+        while (it.hasNext() && active < maxConcurrent) {
+            Waiter waiter = it.next();
+            boolean interactive = waiter.priority == CallPriority.INTERACTIVE;
+            if (!interactive && activeNonInteractive >= maxConcurrent - interactiveReserved) {
+                continue;
+            }
+            it.remove();
+            active++;
+            if (!interactive) {
+                activeNonInteractive++;
+            }
+            waiter.granted = true;
+            metrics.recordQueueWait(waiter.priority, System.nanoTime() - waiter.enqueuedAt);
+            try {
+                waiter.onGrant.run();
+            } catch (RejectedExecutionException e) {
+                // 关闭过程中线程池已拒绝任务：归还名额，按撤出处理
+                active--;
+                if (!interactive) {
+                    activeNonInteractive--;
+                }
+                waiter.granted = false;
+                waiter.drop();
+                notifyDropped(List.of(waiter), "执行器已关闭");
+            }
+        }
+    }
+
+    private void release(CallPriority priority) {
+        lock.lock();
+        try {
+            active--;
+            if (priority != CallPriority.INTERACTIVE) {
+                activeNonInteractive--;
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void notifyDropped(List<Waiter> dropped, String reason) {
+        for (Waiter waiter : dropped) {
+            try {
+                waiter.onDropped.accept(new CancellationException(reason));
+            } catch (RuntimeException e) {
+                logger.warn("通知被撤出的调用时出错", e);
+            }
+        }
+    }
+
+    /**
+     * 一个排队中的调用。以下可变字段受外部 lock 保护。
+     */
+    private final class Waiter {
+        final CallPriority priority;
+        final long enqueuedAt = System.nanoTime();
+        final long deadline;
+        final long sequence = AIExecutor.this.sequence.getAndIncrement();
+        final Consumer<CancellationException> onDropped;
+        /** 获得名额时执行（持有 lock）。 */
+        Runnable onGrant;
+        /** 被撤出时执行（持有 lock），用于唤醒阻塞等待的线程。 */
+        Runnable onDrop;
+        boolean granted;
+        boolean dropped;
+
+        Waiter(CallPriority priority, Consumer<CancellationException> onDropped) {
+            this.priority = priority;
+            this.deadline = enqueuedAt + priority.ordinal() * agingNanos;
+            this.onDropped = onDropped;
+        }
+
+        /**
+         * 标记为已撤出并唤醒阻塞在 {@link #acquire(CallPriority)} 中的线程。
+         */
+        void drop() {
+            dropped = true;
+            if (onDrop != null) {
+                onDrop.run();
+            }
+        }
+    }
+
+    /**
+     * {@link #execute(CallPriority, Runnable, Consumer)} 返回的排队凭证。
+     */
+    public final class Ticket {
+        private final Waiter waiter;
+
+        private Ticket(Waiter waiter) {
+            this.waiter = waiter;
+        }
+
+        /**
+         * 把调用撤出队列。调用已开始执行或已被撤出时返回 false。
+         */
+        public boolean cancel() {
+            lock.lock();
+            try {
+                if (waiter.granted || waiter.dropped) {
+                    return false;
+                }
+                queue.remove(waiter);
+                waiter.dropped = true;
+            } finally {
+                lock.unlock();
+            }
+            notifyDropped(List.of(waiter), "调用已取消");
+            return true;
+        }
+    }
+
+    /**
+     * 一个已占用的名额，关闭时归还；重复关闭无副作用。
+     */
+    public final class Slot implements AutoCloseable {
+        private final CallPriority priority;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Slot(CallPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(priority);
+            }
+        }
+    }
+}
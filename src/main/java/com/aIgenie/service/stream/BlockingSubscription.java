@@ -0,0 +1,181 @@
+package com.aIgenie.service.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 由单个生产线程驱动的订阅。
+ * 生产线程调用 {@link #emit(Object)} 时若订阅方没有剩余需求则阻塞等待，
+ * 因而慢消费者会直接让上游停止读取 socket，而不是在内存中无限堆积。
+ * 生产动作在第一次有效的 {@link #request(long)} 时才启动（冷发布）。
+ * 所有 onNext / onComplete / onError 信号都在生产线程上串行发出。
+ */
+public final class BlockingSubscription<T> implements Flow.Subscription {
+    private static final Logger logger = LoggerFactory.getLogger(BlockingSubscription.class);
+
+    private final Flow.Subscriber<? super T> subscriber;
+    private final Consumer<BlockingSubscription<T>> producer;
+    private final Runnable onCancel;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition demandAvailable = lock.newCondition();
+    /** 以下字段受 lock 保护。 */
+    private long demand;
+    private boolean started;
+    private boolean cancelled;
+    private boolean terminated;
+    private boolean invalidRequest;
+
+    /**
+     * @param producer 生产动作，接收本订阅用于发出信号；在首次请求时于调用 {@code request} 的线程上执行，
+     *                 通常应自行切换到工作线程
+     * @param onCancel 订阅方取消时执行，用于中止上游
+     */
+    public BlockingSubscription(Flow.Subscriber<? super T> subscriber,
+                                Consumer<BlockingSubscription<T>> producer,
+                                Runnable onCancel) {
+        this.subscriber = subscriber;
+        this.producer = producer;
+        this.onCancel = onCancel;
+    }
+
+    @Override
+    public void request(long n) {
+        boolean invalid = n <= 0;
+        boolean start;
+        lock.lock();
+        try {
+            if (cancelled || terminated) {
+                return;
+            }
+            if (invalid) {
+                // 规范 §3.9：非正数请求以 IllegalArgumentException 终止
+                invalidRequest = true;
+                cancelled = true;
+            } else {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            }
+            start = !started;
+            started = true;
+            demandAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        if (invalid) {
+            onCancel.run();
+            if (start) {
+                // 生产者尚未启动，由当前线程发出错误信号
+                fail(null);
+            }
+            return;
+        }
+        if (start) {
+            producer.accept(this);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        lock.lock();
+        try {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            demandAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        onCancel.run();
+    }
+
+    public boolean isCancelled() {
+        lock.lock();
+        try {
+            return cancelled;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 发出一个元素，没有需求时阻塞等待。
+     *
+     * @return 订阅已取消（或生产线程被中断）时返回 false，生产者应停止
+     */
+    public boolean emit(T item) {
+        boolean interrupted = false;
+        lock.lock();
+        try {
+            while (demand == 0 && !cancelled) {
+                demandAvailable.await();
+            }
+            if (cancelled) {
+                return false;
+            }
+            if (demand != Long.MAX_VALUE) {
+                demand--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            interrupted = true;
+        } finally {
+            lock.unlock();
+        }
+        if (interrupted) {
+            cancel();
+            return false;
+        }
+
+        try {
+            subscriber.onNext(item);
+            return true;
+        } catch (Throwable t) {
+            // 规范 §2.13：订阅方抛出异常视为取消
+            logger.warn("订阅方处理元素时出错，取消订阅", t);
+            cancel();
+            return false;
+        }
+    }
+
+    public void complete() {
+        signalTerminal(null);
+    }
+
+    /**
+     * 以错误结束。订阅方已取消时信号被丢弃。
+     */
+    public void fail(Throwable error) {
+        signalTerminal(error);
+    }
+
+    /**
+     * 发出终止信号，至多一次。订阅方已取消时丢弃；若此前收到了非法请求，改为发出 IllegalArgumentException。
+     */
+    private void signalTerminal(Throwable error) {
+        boolean invalid;
+        lock.lock();
+        try {
+            if (terminated || (cancelled && !invalidRequest)) {
+                return;
+            }
+            terminated = true;
+            invalid = invalidRequest;
+        } finally {
+            lock.unlock();
+        }
+        if (invalid) {
+            subscriber.onError(new IllegalArgumentException("request(n) 的 n 必须为正数"));
+        } else if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.aIgenie.service.stream;
+
+import com.aIgenie.service.ChatUsage;
+
+/**
+ * 单条流式 chunk 中与调用方相关的部分：delta 文本、结束原因与 token 用量，均可能为 null。
+ */
+public final class ChatDelta {
+
+    private final String content;
+    private final String finishReason;
+    private final ChatUsage usage;
+
+    public ChatDelta(String content, String finishReason, ChatUsage usage) {
+        this.content = content;
+        this.finishReason = finishReason;
+        this.usage = usage;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    public ChatUsage getUsage() {
+        return usage;
+    }
+
+    public boolean isEmpty() {
+        return content == null && finishReason == null && usage == null;
+    }
+}
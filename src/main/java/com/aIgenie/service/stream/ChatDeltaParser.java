@@ -0,0 +1,132 @@
+package com.aIgenie.service.stream;
+
+import com.aIgenie.service.ChatUsage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * 从 OpenAI 兼容的流式 chunk 中提取 {@code choices[0].delta.content}、{@code choices[0].finish_reason}
+ * 与顶层的 {@code usage}。命中前缀缓存的提示词 token 数取自 {@code usage.prompt_tokens_details.cached_tokens}
+ * （OpenAI）或 {@code usage.prompt_cache_hit_tokens}（DeepSeek）。
+ * 使用流式 {@link JsonParser} 逐 token 扫描，无关字段直接跳过，不构建 JsonNode 树。
+ */
+public final class ChatDeltaParser {
+
+    private final JsonFactory jsonFactory;
+
+    public ChatDeltaParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * @return 解析结果；字段不存在或为 JSON null 时对应的值为 {@code null}
+     */
+    public ChatDelta parse(byte[] data, int offset, int length) throws IOException {
+        String content = null;
+        String finishReason = null;
+        ChatUsage usage = null;
+        try (JsonParser parser = jsonFactory.createParser(data, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new ChatDelta(null, null, null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    if (parser.nextToken() == JsonToken.START_OBJECT) {
+                        String[] choice = readChoice(parser);
+                        content = choice[0];
+                        finishReason = choice[1];
+                        // 只关心第一个 choice，跳过数组剩余部分
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new ChatDelta(content, finishReason, usage);
+    }
+
+    /**
+     * @return {content, finishReason}
+     */
+    private static String[] readChoice(JsonParser parser) throws IOException {
+        String[] result = new String[2];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("delta".equals(field) && value == JsonToken.START_OBJECT) {
+                result[0] = readDelta(parser);
+            } else if ("finish_reason".equals(field)) {
+                result[1] = value == JsonToken.VALUE_STRING ? parser.getText() : null;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private static String readDelta(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                content = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+
+    private static ChatUsage readUsage(JsonParser parser) throws IOException {
+        int prompt = 0;
+        int completion = 0;
+        int total = 0;
+        int cached = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("prompt_tokens_details".equals(field) && value == JsonToken.START_OBJECT) {
+                cached = Math.max(cached, readCachedTokens(parser));
+                continue;
+            }
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "prompt_tokens" -> prompt = parser.getIntValue();
+                case "completion_tokens" -> completion = parser.getIntValue();
+                case "total_tokens" -> total = parser.getIntValue();
+                case "prompt_cache_hit_tokens" -> cached = Math.max(cached, parser.getIntValue());
+                default -> {
+                }
+            }
+        }
+        return new ChatUsage(prompt, completion, total, cached);
+    }
+
+    private static int readCachedTokens(JsonParser parser) throws IOException {
+        int cached = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("cached_tokens".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                cached = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return cached;
+    }
+}
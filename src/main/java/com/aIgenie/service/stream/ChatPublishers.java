@@ -0,0 +1,136 @@
+package com.aIgenie.service.stream;
+
+import com.aIgenie.service.ChatCall;
+import com.aIgenie.service.ChatChunk;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * {@link ChatChunk} 发布者的常用构造方法。
+ */
+public final class ChatPublishers {
+
+    /** 结束原因缺省值：上游没有给出时按正常结束处理。 */
+    public static final String FINISH_STOP = "stop";
+
+    private ChatPublishers() {
+    }
+
+    /**
+     * 把一次不支持增量输出的调用适配为发布者：首次请求时发起调用，完成后发出一个携带全文的结束片段。
+     * 取消订阅会取消该调用。
+     */
+    public static Flow.Publisher<ChatChunk> fromCall(Supplier<ChatCall> starter) {
+        return subscriber -> {
+            String requestId = ChatChunk.newRequestId();
+            AtomicReference<ChatCall> call = new AtomicReference<>();
+            subscriber.onSubscribe(new BlockingSubscription<ChatChunk>(subscriber, self -> {
+                ChatCall started = starter.get();
+                call.set(started);
+                if (self.isCancelled()) {
+                    started.cancel();
+                    return;
+                }
+                started.result().whenComplete((reply, error) -> {
+                    if (error != null) {
+                        self.fail(unwrap(error));
+                    } else if (self.emit(new ChatChunk(requestId, 0, reply, FINISH_STOP, null))) {
+                        self.complete();
+                    }
+                });
+            }, () -> {
+                ChatCall started = call.get();
+                if (started != null) {
+                    started.cancel();
+                }
+            }));
+        };
+    }
+
+    /**
+     * 在工作线程上按需回放一段已知的完整回复，每段至多 {@code chunkChars} 个字符（不拆分代理对）。
+     * 全部发出且未被取消时，在结束片段之前执行 {@code beforeFinish}。
+     */
+    public static Flow.Publisher<ChatChunk> replay(String reply, int chunkChars, Runnable beforeFinish) {
+        return subscriber -> {
+            String requestId = ChatChunk.newRequestId();
+            subscriber.onSubscribe(new BlockingSubscription<ChatChunk>(subscriber,
+                    self -> Thread.startVirtualThread(() -> {
+                        long sequence = 0;
+                        int i = 0;
+                        while (i < reply.length()) {
+                            int end = Math.min(reply.length(), i + chunkChars);
+                            if (end < reply.length() && Character.isHighSurrogate(reply.charAt(end - 1))) {
+                                end++;
+                            }
+                            if (!self.emit(new ChatChunk(requestId, sequence++, reply.substring(i, end), null, null))) {
+                                return;
+                            }
+                            i = end;
+                        }
+                        if (self.isCancelled()) {
+                            return;
+                        }
+                        try {
+                            beforeFinish.run();
+                        } catch (Throwable t) {
+                            self.fail(t);
+                            return;
+                        }
+                        if (self.emit(new ChatChunk(requestId, sequence, "", FINISH_STOP, null))) {
+                            self.complete();
+                        }
+                    }),
+                    () -> {
+                    }));
+        };
+    }
+
+    /**
+     * 旁路观察发布者的每个片段与结束信号，需求与取消原样透传。
+     *
+     * @param onItem     每个片段
+     * @param onComplete 正常结束
+     * @param onError    异常结束
+     */
+    public static Flow.Publisher<ChatChunk> tap(Flow.Publisher<ChatChunk> source,
+                                                Consumer<ChatChunk> onItem,
+                                                Runnable onComplete,
+                                                Consumer<Throwable> onError) {
+        return subscriber -> source.subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ChatChunk item) {
+                onItem.accept(item);
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                onError.accept(throwable);
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                onComplete.run();
+                subscriber.onComplete();
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
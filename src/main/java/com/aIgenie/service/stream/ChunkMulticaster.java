@@ -0,0 +1,234 @@
+package com.aIgenie.service.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把一个上游发布者分发给多个订阅方，后加入的订阅方会先收到已经到达的元素。
+ * 已到达的元素保存在日志中（一次回复的长度受 max_tokens 限制，日志大小有上界），
+ * 每个订阅方维护自己的读取位置与需求：慢订阅方只是落后于日志，不会阻塞其他订阅方；
+ * 只有当某个订阅方已追上日志末尾且仍有需求时，才向上游请求下一个元素。
+ * 何时取消上游由使用方通过 {@link #cancelUpstream()} 决定（例如最后一个订阅方取消时）。
+ */
+public final class ChunkMulticaster<T> implements Flow.Subscriber<T> {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkMulticaster.class);
+
+    /** 以下字段受 this 锁保护。 */
+    private final List<T> log = new ArrayList<>();
+    private Flow.Subscription upstream;
+    private boolean upstreamRequested;
+    private boolean done;
+    private Throwable error;
+    private boolean upstreamCancelled;
+
+    private final List<Downstream> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * 连接上游。上游是冷发布者时，在有订阅方产生需求之前不会开始生产。
+     */
+    public void connect(Flow.Publisher<T> source) {
+        source.subscribe(this);
+    }
+
+    /**
+     * 新增一个订阅方。
+     *
+     * @param onCancel 该订阅方取消时执行
+     */
+    public void subscribe(Flow.Subscriber<? super T> subscriber, Runnable onCancel) {
+        Downstream downstream = new Downstream(subscriber, onCancel);
+        subscribers.add(downstream);
+        subscriber.onSubscribe(downstream);
+        drain(downstream);
+    }
+
+    /**
+     * 取消上游订阅。
+     */
+    public void cancelUpstream() {
+        Flow.Subscription toCancel;
+        synchronized (this) {
+            upstreamCancelled = true;
+            toCancel = upstream;
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        boolean cancel;
+        synchronized (this) {
+            cancel = upstream != null || upstreamCancelled;
+            if (upstream == null) {
+                upstream = subscription;
+            }
+        }
+        if (cancel) {
+            subscription.cancel();
+            return;
+        }
+        requestUpstreamIfNeeded();
+    }
+
+    @Override
+    public void onNext(T item) {
+        synchronized (this) {
+            log.add(item);
+            upstreamRequested = false;
+        }
+        drainAll();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            done = true;
+            error = throwable;
+        }
+        drainAll();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            done = true;
+        }
+        drainAll();
+    }
+
+    private void drainAll() {
+        for (Downstream downstream : subscribers) {
+            drain(downstream);
+        }
+    }
+
+    /**
+     * 向订阅方发送其可以接收的元素。通过 wip 计数保证同一订阅方的信号串行发出，
+     * 其他线程在发送期间到来的请求由当前发送线程代为处理。
+     */
+    private void drain(Downstream d) {
+        if (d.wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                T item;
+                boolean terminal;
+                Throwable failure;
+                synchronized (this) {
+                    if (d.cancelled || d.terminated) {
+                        break;
+                    }
+                    if (d.invalidRequest) {
+                        terminal = true;
+                        failure = new IllegalArgumentException("request(n) 的 n 必须为正数");
+                        item = null;
+                    } else if (d.cursor < log.size() && d.demand > 0) {
+                        item = log.get(d.cursor++);
+                        if (d.demand != Long.MAX_VALUE) {
+                            d.demand--;
+                        }
+                        terminal = false;
+                        failure = null;
+                    } else if (d.cursor == log.size() && done) {
+                        terminal = true;
+                        failure = error;
+                        item = null;
+                    } else {
+                        break;
+                    }
+                    if (terminal) {
+                        d.terminated = true;
+                    }
+                }
+                if (terminal) {
+                    subscribers.remove(d);
+                    if (failure != null) {
+                        d.subscriber.onError(failure);
+                    } else {
+                        d.subscriber.onComplete();
+                    }
+                    break;
+                }
+                try {
+                    d.subscriber.onNext(item);
+                } catch (Throwable t) {
+                    logger.warn("订阅方处理元素时出错，取消订阅", t);
+                    d.cancel();
+                    break;
+                }
+            }
+            missed = d.wip.addAndGet(-missed);
+        } while (missed != 0);
+        requestUpstreamIfNeeded();
+    }
+
+    private void requestUpstreamIfNeeded() {
+        Flow.Subscription toRequest = null;
+        synchronized (this) {
+            if (upstream == null || upstreamRequested || done || upstreamCancelled) {
+                return;
+            }
+            for (Downstream d : subscribers) {
+                if (!d.cancelled && !d.terminated && d.cursor == log.size() && d.demand > 0) {
+                    upstreamRequested = true;
+                    toRequest = upstream;
+                    break;
+                }
+            }
+        }
+        if (toRequest != null) {
+            toRequest.request(1);
+        }
+    }
+
+    private final class Downstream implements Flow.Subscription {
+        final Flow.Subscriber<? super T> subscriber;
+        final Runnable onCancel;
+        final AtomicInteger wip = new AtomicInteger();
+        /** 以下字段受外部 ChunkMulticaster.this 锁保护。 */
+        int cursor;
+        long demand;
+        boolean cancelled;
+        boolean terminated;
+        boolean invalidRequest;
+
+        Downstream(Flow.Subscriber<? super T> subscriber, Runnable onCancel) {
+            this.subscriber = subscriber;
+            this.onCancel = onCancel;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (ChunkMulticaster.this) {
+                if (n <= 0) {
+                    invalidRequest = true;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain(this);
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (ChunkMulticaster.this) {
+                if (cancelled || terminated) {
+                    return;
+                }
+                cancelled = true;
+            }
+            subscribers.remove(this);
+            onCancel.run();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.aIgenie.service.stream;
+
+/**
+ * 续写拼接。流式回复中断后以已收到的部分回复作为 assistant 前缀重新请求，
+ * 模型续写的开头有时会重复前缀的末尾几个字。续写的前 {@code window} 个字符先缓冲，
+ * 与已输出内容的末尾比对，去掉重叠部分后再放行，之后的内容原样透传。
+ * 重叠的权重（ASCII 字符计 1，其他字符如汉字计 2）不足 {@link #MIN_OVERLAP} 时不做裁剪，避免误删恰好相同的正常文本。
+ * 非线程安全，只在单次流式调用的读取线程上使用。
+ */
+public final class ResumeStitcher {
+
+    /** 重叠权重至少为此值才认为是重复输出。 */
+    static final int MIN_OVERLAP = 8;
+
+    private final String emitted;
+    private final int window;
+    private final StringBuilder buffer = new StringBuilder();
+    private boolean decided;
+
+    /**
+     * @param emitted 中断前已经输出的内容
+     * @param window  比对窗口，即续写开头最多缓冲的字符数
+     */
+    public ResumeStitcher(String emitted, int window) {
+        this.emitted = emitted;
+        this.window = window;
+    }
+
+    /**
+     * 接收一段续写内容。
+     *
+     * @return 现在可以输出的文本，仍在缓冲时为空串
+     */
+    public String accept(String content) {
+        if (decided) {
+            return content;
+        }
+        buffer.append(content);
+        if (buffer.length() < window) {
+            return "";
+        }
+        return decide();
+    }
+
+    /**
+     * 续写结束时调用，返回仍在缓冲中的文本（已去掉重叠）。
+     */
+    public String flush() {
+        return decided ? "" : decide();
+    }
+
+    private String decide() {
+        decided = true;
+        String head = buffer.toString();
+        int max = Math.min(head.length(), emitted.length());
+        for (int k = max; k > 0; k--) {
+            if (emitted.regionMatches(emitted.length() - k, head, 0, k)) {
+                return weight(head, k) >= MIN_OVERLAP ? head.substring(k) : head;
+            }
+        }
+        return head;
+    }
+
+    private static int weight(String text, int length) {
+        int weight = 0;
+        for (int i = 0; i < length; i++) {
+            weight += text.charAt(i) < 0x80 ? 1 : 2;
+        }
+        return weight;
+    }
+}
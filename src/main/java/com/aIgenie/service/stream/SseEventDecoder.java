@@ -0,0 +1,184 @@
+package com.aIgenie.service.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 字节级 Server-Sent Events 解码器。
+ * 直接在读缓冲区上按字节切分行，不经过 Reader / String：
+ * <ul>
+ *   <li>多行 {@code data:} 按规范以 {@code \n} 拼接，空行时整体派发；</li>
+ *   <li>支持 {@code event:}、{@code id:} 字段与 {@code :} 注释行；</li>
+ *   <li>兼容 {@code \n}、{@code \r\n}、{@code \r} 三种行结束符。</li>
+ * </ul>
+ * 派发给 {@link EventHandler} 的 data 是内部复用的字节数组切片，只在回调期间有效。
+ * 实例非线程安全，每个流使用一个。
+ */
+public final class SseEventDecoder {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    /** SSE 事件回调。 */
+    @FunctionalInterface
+    public interface EventHandler {
+        /**
+         * @param event  事件类型，未指定时为 {@code message}
+         * @param id     最近一次的 {@code id:} 字段，可能为 {@code null}
+         * @param data   data 字段内容（UTF-8 字节）
+         */
+        void onEvent(String event, String id, byte[] data, int offset, int length) throws IOException;
+    }
+
+    private byte[] buffer;
+    private byte[] data = new byte[1024];
+    private int dataLength;
+    private boolean hasData;
+    private String eventType;
+    private String lastEventId;
+
+    public SseEventDecoder() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public SseEventDecoder(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * 判断 data 是否为 OpenAI 风格的结束标记 {@code [DONE]}。
+     */
+    public static boolean isDone(byte[] data, int offset, int length) {
+        return length == DONE.length && Arrays.equals(data, offset, offset + length, DONE, 0, DONE.length);
+    }
+
+    /**
+     * 读取整个输入流直到 EOF，依次派发事件。
+     */
+    public void decode(InputStream in, EventHandler handler) throws IOException {
+        int start = 0;
+        int end = 0;
+        boolean skipLf = false;
+
+        while (true) {
+            if (end == buffer.length) {
+                if (start > 0) {
+                    // 把未完成的半行挪到缓冲区头部，继续读取
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                } else {
+                    // 单行超过缓冲区大小，扩容
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+
+            int n = in.read(buffer, end, buffer.length - end);
+            if (n < 0) {
+                break;
+            }
+            int scan = end;
+            end += n;
+
+            for (int i = scan; i < end; i++) {
+                byte b = buffer[i];
+                if (skipLf) {
+                    skipLf = false;
+                    if (b == '\n') {
+                        start = i + 1;
+                        continue;
+                    }
+                }
+                if (b == '\n' || b == '\r') {
+                    processLine(buffer, start, i - start, handler);
+                    start = i + 1;
+                    skipLf = b == '\r';
+                }
+            }
+            if (start == end) {
+                start = 0;
+                end = 0;
+            }
+        }
+
+        if (end > start) {
+            processLine(buffer, start, end - start, handler);
+        }
+        // 流结束时派发尚未以空行收尾的事件，兼容不规范的服务端
+        dispatch(handler);
+    }
+
+    private void processLine(byte[] buf, int offset, int length, EventHandler handler) throws IOException {
+        if (length == 0) {
+            dispatch(handler);
+            return;
+        }
+        if (buf[offset] == ':') {
+            return;
+        }
+
+        int colon = -1;
+        for (int i = offset; i < offset + length; i++) {
+            if (buf[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+
+        int nameEnd = colon < 0 ? offset + length : colon;
+        int valueStart = colon < 0 ? offset + length : colon + 1;
+        if (valueStart < offset + length && buf[valueStart] == ' ') {
+            valueStart++;
+        }
+        int valueLength = offset + length - valueStart;
+
+        if (fieldIs(buf, offset, nameEnd, "data")) {
+            appendData(buf, valueStart, valueLength);
+        } else if (fieldIs(buf, offset, nameEnd, "event")) {
+            eventType = new String(buf, valueStart, valueLength, StandardCharsets.UTF_8);
+        } else if (fieldIs(buf, offset, nameEnd, "id")) {
+            lastEventId = new String(buf, valueStart, valueLength, StandardCharsets.UTF_8);
+        }
+        // retry 以及未知字段按规范忽略
+    }
+
+    private static boolean fieldIs(byte[] buf, int from, int to, String name) {
+        if (to - from != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (buf[from + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendData(byte[] buf, int offset, int length) {
+        int required = dataLength + length + (hasData ? 1 : 0);
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+        if (hasData) {
+            data[dataLength++] = '\n';
+        }
+        System.arraycopy(buf, offset, data, dataLength, length);
+        dataLength += length;
+        hasData = true;
+    }
+
+    private void dispatch(EventHandler handler) throws IOException {
+        if (!hasData) {
+            eventType = null;
+            return;
+        }
+        String event = eventType == null ? "message" : eventType;
+        int length = dataLength;
+        eventType = null;
+        dataLength = 0;
+        hasData = false;
+        handler.onEvent(event, lastEventId, data, 0, length);
+    }
+}
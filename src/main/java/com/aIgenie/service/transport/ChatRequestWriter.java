@@ -0,0 +1,70 @@
+package com.aIgenie.service.transport;
+
+import com.aIgenie.service.context.ConversationMessage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 把 chat/completions 请求体直接写到连接的输出流上。
+ * 请求参数由 {@link JsonGenerator} 生成，{@code messages} 数组中的每条消息则写出
+ * {@link ConversationMessage} 预先编码好的字节，因此每轮的编码开销只与新消息相关。
+ * 系统提示词与历史消息每轮写出的字节完全相同，上游的提示词前缀缓存因此可以命中；
+ * 流式请求附带 {@code stream_options.include_usage}，上游在最后一个 chunk 中返回用量。
+ */
+public final class ChatRequestWriter {
+
+    private final JsonFactory jsonFactory;
+    private final double temperature;
+    private final int maxTokens;
+
+    public ChatRequestWriter(JsonFactory jsonFactory, double temperature, int maxTokens) {
+        this.jsonFactory = jsonFactory;
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * 生成请求体写出器。{@code messages} 应为调用方持有的快照，写出器可能因重试被多次调用。
+     */
+    public TransportRequest.BodyWriter body(String model, boolean stream, List<ConversationMessage> messages) {
+        return out -> write(out, model, stream, messages);
+    }
+
+    public void write(OutputStream out, String model, boolean stream, List<ConversationMessage> messages)
+            throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        generator.writeStartObject();
+        generator.writeStringField("model", model);
+        generator.writeNumberField("temperature", temperature);
+        generator.writeNumberField("max_tokens", maxTokens);
+        generator.writeBooleanField("stream", stream);
+        if (stream) {
+            generator.writeObjectFieldStart("stream_options");
+            generator.writeBooleanField("include_usage", true);
+            generator.writeEndObject();
+        }
+        generator.writeArrayFieldStart("messages");
+
+        // 消息片段绕过 generator 直接写入底层流：先 flush 已生成的内容，再逐条写出缓存字节。
+        // generator 只看到一个空数组，随后的 writeEndArray 不会插入多余的逗号。
+        generator.flush();
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            messages.get(i).writeTo(out);
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+        out.flush();
+    }
+}
@@ -0,0 +1,71 @@
+package com.aIgenie.service.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * 上游 HTTP 传输层抽象。
+ * {@link com.aIgenie.service.impl.CustomAIServiceImpl} 只负责组装请求与解析响应，
+ * 连接管理、超时以及线程模型由具体实现决定，便于在 RestTemplate 与 JDK HttpClient 之间切换对比。
+ */
+public interface ChatTransport extends Closeable {
+
+    /**
+     * 发送请求，并在响应体仍处于打开状态时交给 {@code handler} 处理。
+     * 非 2xx 响应统一抛出 {@link ChatTransportException}，不会进入 handler。
+     *
+     * @return handler 的返回值
+     */
+    <T> T execute(TransportRequest request, ResponseHandler<T> handler) throws IOException;
+
+    /**
+     * 可中止的 {@link #execute(TransportRequest, ResponseHandler)}。
+     * 默认实现只能在响应到达后通过关闭响应体中止；能够取消等待中请求的传输层应覆盖此方法。
+     * 被中止的交换统一抛出 {@link java.io.InterruptedIOException}。
+     */
+    default <T> T execute(TransportRequest request, ExchangeControl control, ResponseHandler<T> handler)
+            throws IOException {
+        control.checkNotAborted();
+        try {
+            return execute(request, response -> {
+                control.attach(response.body());
+                try {
+                    return handler.handle(response);
+                } finally {
+                    control.detach();
+                }
+            });
+        } catch (IOException e) {
+            if (control.isAborted()) {
+                throw control.abortedException();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 传输层名称，仅用于日志。
+     */
+    String name();
+
+    /**
+     * 空闲连接在连接池中保留的大致时长，用作连接预热的默认有效期。
+     * 默认值对应 JDK {@code HttpURLConnection} 在服务器未返回 Keep-Alive 头时的 5 秒。
+     */
+    default Duration idleKeepAlive() {
+        return Duration.ofSeconds(5);
+    }
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 响应处理回调。响应体在回调返回后由传输层负责关闭。
+     */
+    @FunctionalInterface
+    interface ResponseHandler<T> {
+        T handle(TransportResponse response) throws IOException;
+    }
+}
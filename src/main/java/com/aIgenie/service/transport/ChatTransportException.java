@@ -0,0 +1,49 @@
+package com.aIgenie.service.transport;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 上游返回非 2xx 状态码时抛出，保留状态码、响应头与（截断后的）响应体，供上层决定重试或降级。
+ */
+public class ChatTransportException extends IOException {
+
+    private final int statusCode;
+    private final Map<String, List<String>> headers;
+    private final String responseBody;
+
+    public ChatTransportException(int statusCode, Map<String, List<String>> headers, String responseBody) {
+        super("上游返回错误状态 " + statusCode + (responseBody == null || responseBody.isEmpty() ? "" : ": " + responseBody));
+        this.statusCode = statusCode;
+        Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            headers.forEach((k, v) -> {
+                if (k != null) {
+                    copy.put(k, v);
+                }
+            });
+        }
+        this.headers = Collections.unmodifiableMap(copy);
+        this.responseBody = responseBody;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+}
@@ -0,0 +1,119 @@
+package com.aIgenie.service.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单次 HTTP 交换的中止句柄。
+ * 传输层在交换的不同阶段把可关闭的资源（等待响应头时的请求、读取中的响应体）登记到这里，
+ * 其他线程调用 {@link #abort()} 即可立即关闭连接，阻塞中的读取随之以 {@link InterruptedIOException} 返回。
+ * 一次调用可能发起多次交换（故障转移、对冲），通过 {@link #child()} 派生的子句柄会随父句柄一起中止。
+ */
+public final class ExchangeControl {
+    private static final Logger logger = LoggerFactory.getLogger(ExchangeControl.class);
+
+    private volatile boolean aborted;
+    /** 当前登记的资源与子句柄，受 this 锁保护。 */
+    private Closeable resource;
+    private List<ExchangeControl> children;
+
+    /**
+     * 派生一个子句柄，父句柄中止时子句柄一并中止；父句柄已中止时返回的子句柄同样处于中止状态。
+     */
+    public ExchangeControl child() {
+        ExchangeControl child = new ExchangeControl();
+        synchronized (this) {
+            if (!aborted) {
+                if (children == null) {
+                    children = new ArrayList<>();
+                }
+                children.add(child);
+                return child;
+            }
+        }
+        child.abort();
+        return child;
+    }
+
+    /**
+     * 登记中止时要执行的动作，与当前阶段的资源互不影响；已中止时立即执行。
+     */
+    public void onAbort(Runnable action) {
+        try {
+            child().attach(action::run);
+        } catch (InterruptedIOException e) {
+            // 已中止：attach 已经执行了 action
+        }
+    }
+
+    /**
+     * 登记当前阶段的资源；若已被中止，资源会被立即关闭并抛出异常。
+     */
+    public void attach(Closeable closeable) throws InterruptedIOException {
+        synchronized (this) {
+            if (!aborted) {
+                resource = closeable;
+                return;
+            }
+        }
+        closeQuietly(closeable);
+        throw abortedException();
+    }
+
+    public synchronized void detach() {
+        resource = null;
+    }
+
+    /**
+     * 中止交换。可以从任意线程调用，重复调用无副作用。
+     */
+    public void abort() {
+        Closeable toClose;
+        List<ExchangeControl> toAbort;
+        synchronized (this) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            toClose = resource;
+            resource = null;
+            toAbort = children;
+            children = null;
+        }
+        closeQuietly(toClose);
+        if (toAbort != null) {
+            toAbort.forEach(ExchangeControl::abort);
+        }
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void checkNotAborted() throws InterruptedIOException {
+        if (aborted) {
+            throw abortedException();
+        }
+    }
+
+    public InterruptedIOException abortedException() {
+        return new InterruptedIOException("请求已中止");
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            logger.debug("中止请求时关闭连接出错: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.aIgenie.service.transport;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调用级超时：首 token 超时与总耗时超时。
+ * 连接超时与流式读取的空闲超时由传输层负责，这里补上传输层感知不到的两个阶段：
+ * 响应头已经到达但迟迟没有内容（首 token），以及整次调用（含故障转移、对冲与续写）的总时长。
+ * 超时通过中止对应的 {@link ExchangeControl} 生效，阻塞中的读取立即返回；
+ * 调用方据 {@link Deadline#isExpired()} / {@link FirstTokenWatch#isExpired()} 把中止改判为超时。
+ * 时长为 0 表示不限制。
+ */
+public class ExchangeTimeouts implements AutoCloseable {
+
+    private final Duration firstToken;
+    private final Duration total;
+    private final ScheduledExecutorService timer;
+
+    public ExchangeTimeouts(Duration firstToken, Duration total) {
+        this.firstToken = firstToken;
+        this.total = total;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aigenie-exchange-timeout");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 不限制任何阶段的超时，用于手动构造服务时。
+     */
+    public static ExchangeTimeouts none() {
+        return new ExchangeTimeouts(Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * 开始计算一次调用的总耗时，到期时中止 {@code call}。
+     */
+    public Deadline start(ExchangeControl call) {
+        return new Deadline(call);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private ScheduledFuture<?> schedule(Duration delay, Runnable action) {
+        if (delay.isZero() || delay.isNegative()) {
+            return null;
+        }
+        return timer.schedule(action, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 一次调用的总耗时期限。
+     */
+    public final class Deadline implements AutoCloseable {
+        private final ScheduledFuture<?> task;
+        private volatile boolean expired;
+
+        private Deadline(ExchangeControl call) {
+            this.task = schedule(total, () -> {
+                expired = true;
+                call.abort();
+            });
+        }
+
+        /**
+         * 开始等待一次尝试的首个 token，到期时只中止这一次尝试（{@code attempt}），调用方可以换端点重试。
+         */
+        public FirstTokenWatch watchFirstToken(ExchangeControl attempt) {
+            return new FirstTokenWatch(attempt);
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public HttpTimeoutException timeoutException() {
+            return new HttpTimeoutException("调用总耗时超过 " + total.toMillis() + "ms，已中止");
+        }
+
+        @Override
+        public void close() {
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 一次尝试的首 token 期限，收到首个内容后解除。
+     */
+    public final class FirstTokenWatch implements AutoCloseable {
+        private final ScheduledFuture<?> task;
+        private volatile boolean expired;
+
+        private FirstTokenWatch(ExchangeControl attempt) {
+            this.task = schedule(firstToken, () -> {
+                expired = true;
+                attempt.abort();
+            });
+        }
+
+        public void onToken() {
+            if (task != null && !task.isDone()) {
+                task.cancel(false);
+            }
+        }
+
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public HttpTimeoutException timeoutException() {
+            return new HttpTimeoutException("超过 " + firstToken.toMillis() + "ms 仍未收到首个 token，已中止");
+        }
+
+        @Override
+        public void close() {
+            onToken();
+        }
+    }
+}
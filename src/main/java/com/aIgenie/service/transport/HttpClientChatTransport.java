@@ -0,0 +1,285 @@
+package com.aIgenie.service.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 JDK {@link HttpClient} 的传输实现。
+ * <ul>
+ *   <li>优先协商 HTTP/2，同一主机的多轮对话复用同一条连接（多路复用），省去每轮的 TLS 握手；</li>
+ *   <li>连接超时、首字节（响应头）超时、流式读取的空闲超时均可配置；</li>
+ *   <li>HttpClient 内部任务运行在虚拟线程上，阻塞读取 SSE 不会占用平台线程。</li>
+ * </ul>
+ */
+public class HttpClientChatTransport implements ChatTransport {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientChatTransport.class);
+
+    /** 错误响应体只保留前若干字节用于日志与异常信息。 */
+    private static final int MAX_ERROR_BODY_BYTES = 4096;
+
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+    private final Duration firstByteTimeout;
+    private final Duration idleTimeout;
+
+    public HttpClientChatTransport(Duration connectTimeout, Duration firstByteTimeout, Duration idleTimeout) {
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "aigenie-http-idle-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        this.firstByteTimeout = firstByteTimeout;
+        this.idleTimeout = idleTimeout;
+        HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor);
+        if (isLimited(connectTimeout)) {
+            clientBuilder.connectTimeout(connectTimeout);
+        }
+        this.httpClient = clientBuilder.build();
+
+        logger.info("初始化 HttpClient 传输: connect={}, first-byte={}, idle={}",
+                connectTimeout, firstByteTimeout, idleTimeout);
+    }
+
+    @Override
+    public <T> T execute(TransportRequest request, ResponseHandler<T> handler) throws IOException {
+        return execute(request, new ExchangeControl(), handler);
+    }
+
+    @Override
+    public <T> T execute(TransportRequest request, ExchangeControl control, ResponseHandler<T> handler)
+            throws IOException {
+        control.checkNotAborted();
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.noBody();
+        if (request.getBody() != null) {
+            // HttpClient 没有可直接写入的请求输出流，请求体先写入缓冲区，再以零拷贝方式交给 BodyPublisher
+            BodyBuffer buffer = new BodyBuffer();
+            request.getBody().writeTo(buffer);
+            publisher = HttpRequest.BodyPublishers.ofByteArray(buffer.array(), 0, buffer.size());
+        }
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.getUrl()))
+                .method(request.getMethod(), publisher);
+        if (isLimited(firstByteTimeout)) {
+            builder.timeout(firstByteTimeout);
+        }
+        request.getHeaders().forEach(builder::header);
+
+        // 使用 sendAsync 以便在等待响应头期间也能通过取消 future 中止请求
+        CompletableFuture<HttpResponse<InputStream>> pending =
+                httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        control.attach(() -> pending.cancel(true));
+        HttpResponse<InputStream> response;
+        try {
+            response = pending.get();
+        } catch (CancellationException e) {
+            throw control.abortedException();
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("请求被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException(e.getCause());
+        }
+
+        try (InputStream body = new IdleTimeoutInputStream(response.body())) {
+            control.attach(body);
+            int status = response.statusCode();
+            if (status < 200 || status >= 300) {
+                throw new ChatTransportException(status, response.headers().map(), readErrorBody(body));
+            }
+            return handler.handle(new HttpClientTransportResponse(response, body));
+        } catch (IOException e) {
+            if (control.isAborted()) {
+                throw control.abortedException();
+            }
+            throw e;
+        } finally {
+            control.detach();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "http-client";
+    }
+
+    /**
+     * 时长为 0 或负数表示不限制；HttpClient 的构建器不接受这样的值，此时不设置对应超时
+     */
+    private static boolean isLimited(Duration timeout) {
+        return timeout != null && !timeout.isZero() && !timeout.isNegative();
+    }
+
+    /**
+     * JDK HttpClient 的空闲连接默认保留 30 秒（{@code jdk.httpclient.keepalive.timeout}）。
+     */
+    @Override
+    public Duration idleKeepAlive() {
+        return Duration.ofSeconds(Long.getLong("jdk.httpclient.keepalive.timeout", 30));
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static String readErrorBody(InputStream body) {
+        try {
+            byte[] bytes = body.readNBytes(MAX_ERROR_BODY_BYTES);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 暴露内部数组的缓冲区，避免 {@link ByteArrayOutputStream#toByteArray()} 的额外拷贝。
+     */
+    private static final class BodyBuffer extends ByteArrayOutputStream {
+        BodyBuffer() {
+            super(4096);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private static final class HttpClientTransportResponse implements TransportResponse {
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+
+        HttpClientTransportResponse(HttpResponse<InputStream> response, InputStream body) {
+            this.response = response;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String header(String name) {
+            return response.headers().firstValue(name).orElse(null);
+        }
+
+        @Override
+        public InputStream body() {
+            return body;
+        }
+    }
+
+    /**
+     * 空闲超时包装：单次 read 阻塞超过 {@link #idleTimeout} 仍没有读到任何字节时关闭底层流，
+     * HttpClient 会随之取消该请求，阻塞中的 read 立即返回。
+     * 只统计阻塞在 read 中的时间：调用方因下游背压暂停读取不算空闲。
+     * 空闲超时为 0 时不启动检查。
+     */
+    private final class IdleTimeoutInputStream extends FilterInputStream {
+        private final ScheduledFuture<?> check;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile boolean reading;
+        private volatile boolean timedOut;
+
+        IdleTimeoutInputStream(InputStream in) {
+            super(in);
+            if (isLimited(idleTimeout)) {
+                long period = Math.max(250, idleTimeout.toMillis() / 4);
+                this.check = watchdog.scheduleAtFixedRate(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+            } else {
+                this.check = null;
+            }
+        }
+
+        private void checkIdle() {
+            if (reading && System.nanoTime() - lastActivity > idleTimeout.toNanos()) {
+                timedOut = true;
+                check.cancel(false);
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.debug("关闭空闲连接时出错: {}", e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return guard(() -> super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return guard(() -> super.read(b, off, len));
+        }
+
+        private int guard(IOSupplier read) throws IOException {
+            int result;
+            lastActivity = System.nanoTime();
+            reading = true;
+            try {
+                result = read.get();
+            } catch (IOException e) {
+                if (timedOut) {
+                    throw idleTimeoutException();
+                }
+                throw e;
+            } finally {
+                reading = false;
+                lastActivity = System.nanoTime();
+            }
+            // 被看门狗关闭后底层流可能直接返回 EOF，需要与正常结束区分开
+            if (result < 0 && timedOut) {
+                throw idleTimeoutException();
+            }
+            return result;
+        }
+
+        private HttpTimeoutException idleTimeoutException() {
+            return new HttpTimeoutException("流式响应空闲超过 " + idleTimeout.toMillis() + "ms，连接已关闭");
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (check != null) {
+                check.cancel(false);
+            }
+            super.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOSupplier {
+        int get() throws IOException;
+    }
+}
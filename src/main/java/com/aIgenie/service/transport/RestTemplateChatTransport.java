@@ -0,0 +1,79 @@
+package com.aIgenie.service.transport;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于 {@link RestTemplate} 的传输实现，保持原有的请求方式，作为 JDK HttpClient 传输的对照组。
+ */
+public class RestTemplateChatTransport implements ChatTransport {
+
+    private final RestTemplate restTemplate;
+
+    public RestTemplateChatTransport(RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    @Override
+    public <T> T execute(TransportRequest request, ResponseHandler<T> handler) throws IOException {
+        try {
+            return restTemplate.execute(request.getUrl(), HttpMethod.valueOf(request.getMethod()),
+                    req -> {
+                        request.getHeaders().forEach(req.getHeaders()::set);
+                        if (request.getBody() != null) {
+                            request.getBody().writeTo(req.getBody());
+                        }
+                    },
+                    response -> handler.handle(new ClientHttpTransportResponse(response)));
+        } catch (RestClientResponseException e) {
+            throw new ChatTransportException(e.getStatusCode().value(), e.getResponseHeaders(),
+                    e.getResponseBodyAsString());
+        } catch (ResourceAccessException e) {
+            // RestTemplate 会把 IOException 包装成 ResourceAccessException，这里还原以便上层统一处理
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "rest-template";
+    }
+
+    private static final class ClientHttpTransportResponse implements TransportResponse {
+        private final ClientHttpResponse response;
+
+        ClientHttpTransportResponse(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int statusCode() {
+            try {
+                return response.getStatusCode().value();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public String header(String name) {
+            HttpHeaders headers = response.getHeaders();
+            return headers.getFirst(name);
+        }
+
+        @Override
+        public InputStream body() throws IOException {
+            return response.getBody();
+        }
+    }
+}
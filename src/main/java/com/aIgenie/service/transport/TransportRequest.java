@@ -0,0 +1,71 @@
+package com.aIgenie.service.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一次上游请求的描述：方法、目标地址、请求头以及按需写出的请求体。
+ */
+public final class TransportRequest {
+
+    private final String method;
+    private final String url;
+    private final Map<String, String> headers;
+    private final BodyWriter body;
+
+    private TransportRequest(String method, String url, Map<String, String> headers, BodyWriter body) {
+        this.method = method;
+        this.url = url;
+        this.headers = Collections.unmodifiableMap(headers);
+        this.body = body;
+    }
+
+    /**
+     * 构造 JSON POST 请求，附带 Bearer 鉴权头。
+     */
+    public static TransportRequest jsonPost(String url, String apiKey, BodyWriter body) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Content-Type", "application/json");
+        headers.put("Authorization", "Bearer " + apiKey);
+        return new TransportRequest("POST", url, headers, body);
+    }
+
+    /**
+     * 构造无请求体的 GET 请求（例如健康探测），附带 Bearer 鉴权头。
+     */
+    public static TransportRequest get(String url, String apiKey) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer " + apiKey);
+        return new TransportRequest("GET", url, headers, null);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return 请求体写出器，GET 请求为 {@code null}
+     */
+    public BodyWriter getBody() {
+        return body;
+    }
+
+    /**
+     * 请求体写出器。同一请求可能因重试被多次调用，实现需保证可重复写出。
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
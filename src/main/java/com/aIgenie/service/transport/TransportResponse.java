@@ -0,0 +1,19 @@
+package com.aIgenie.service.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 传输层返回给调用方的响应视图，仅在 {@link ChatTransport.ResponseHandler} 回调期间有效。
+ */
+public interface TransportResponse {
+
+    int statusCode();
+
+    /**
+     * 获取响应头的第一个值，不区分大小写；不存在时返回 {@code null}。
+     */
+    String header(String name);
+
+    InputStream body() throws IOException;
+}
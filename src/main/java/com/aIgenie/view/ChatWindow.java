@@ -6,11 +6,13 @@ import com.aIgenie.util.DockableWindowBehavior;
 import com.aIgenie.view.components.ChatPanel;
 import com.aIgenie.view.components.MessageInputPanel;
 import com.aIgenie.view.components.TitlePanel;
+import com.aIgenie.view.markdown.MarkdownTheme;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
 
 /**
  * 聊天窗口主类
@@ -49,6 +51,10 @@ public class ChatWindow extends JFrame {
         inputPanel = new MessageInputPanel();
 
         inputPanel.setOnSendListener(controller::sendMessage);
+        inputPanel.setOnCancelListener(controller::cancelCurrentRequest);
+        inputPanel.setOnComposingListener(controller::userComposing);
+        chatPanel.setPendingActions(this::editPendingMessage, controller::dropPendingMessage);
+        titlePanel.setOnThemeChanged(this::applyTheme);
     }
 
     private void layoutComponents() {
@@ -135,11 +141,54 @@ public class ChatWindow extends JFrame {
     }
 
     /**
-     * 启用/禁用消息输入。AI 响应期间应禁用以防止并发请求。
+     * 丢弃流式消息（取消且策略为回滚时）
      */
-    public void setInputEnabled(boolean enabled) {
+    public void discardStreamingMessage(ChatMessage message) {
+        try {
+            chatPanel.discardStreamingMessage(message);
+        } catch (Exception e) {
+            logger.error("丢弃流式消息时出错", e);
+        }
+    }
+
+    /**
+     * 应用主题（"浅色" / "深色"），目前作用于回复内容的 Markdown 配色
+     */
+    public void applyTheme(String theme) {
+        try {
+            chatPanel.setTheme(MarkdownTheme.from(theme));
+        } catch (Exception e) {
+            logger.error("应用主题时出错", e);
+        }
+    }
+
+    /**
+     * 显示排队中（尚未发出）的消息
+     */
+    public void displayPendingMessages(List<ChatMessage> pending) {
+        try {
+            chatPanel.setPendingMessages(pending);
+        } catch (Exception e) {
+            logger.error("显示排队消息时出错", e);
+        }
+    }
+
+    /**
+     * 原地编辑一条排队中的消息，保持其排队位置；清空内容等同于撤回
+     */
+    private void editPendingMessage(ChatMessage message) {
+        String edited = JOptionPane.showInputDialog(this, "编辑排队中的消息", message.getContent());
+        if (edited != null) {
+            controller.editPendingMessage(message, edited);
+        }
+    }
+
+    /**
+     * 切换"响应进行中"状态。输入栏保持可用，进行中发送的消息会排队。
+     */
+    public void setBusy(boolean busy) {
         if (inputPanel != null) {
-            inputPanel.setInputEnabled(enabled);
+            inputPanel.setBusy(busy);
         }
     }
 }
@@ -1,11 +1,14 @@
 package com.aIgenie.view.components;
 
 import com.aIgenie.model.ChatMessage;
+import com.aIgenie.view.markdown.MarkdownTheme;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 聊天内容显示面板
@@ -46,6 +49,32 @@ public class ChatPanel extends JPanel {
         }
     }
 
+    /**
+     * 显示排队中的消息
+     */
+    public void setPendingMessages(List<ChatMessage> pending) {
+        try {
+            messageRenderer.setPendingMessages(pending);
+        } catch (Exception e) {
+            logger.error("显示排队消息出错", e);
+        }
+    }
+
+    public void setPendingActions(Consumer<ChatMessage> onEdit, Consumer<ChatMessage> onDrop) {
+        messageRenderer.setPendingActions(onEdit, onDrop);
+    }
+
+    /**
+     * 切换回复内容的 Markdown 配色
+     */
+    public void setTheme(MarkdownTheme theme) {
+        try {
+            messageRenderer.setTheme(theme);
+        } catch (Exception e) {
+            logger.error("切换主题出错", e);
+        }
+    }
+
     /**
      * 显示正在输入提示
      */
@@ -118,4 +147,18 @@ public class ChatPanel extends JPanel {
             logger.error("完成流式消息时出错", e);
         }
     }
+
+    /**
+     * 丢弃流式消息，不加入消息列表
+     */
+    public void discardStreamingMessage(ChatMessage message) {
+        try {
+            if (this.streamingMessage == message) {
+                messageRenderer.discardStreamingMessage();
+                this.streamingMessage = null;
+            }
+        } catch (Exception e) {
+            logger.error("丢弃流式消息时出错", e);
+        }
+    }
 }
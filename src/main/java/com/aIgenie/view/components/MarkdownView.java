@@ -0,0 +1,266 @@
+package com.aIgenie.view.components;
+
+import com.aIgenie.model.ChatMessage;
+import com.aIgenie.view.markdown.MarkdownBlock;
+import com.aIgenie.view.markdown.MarkdownRenderService;
+import com.aIgenie.view.markdown.MarkdownStyles;
+import com.aIgenie.view.markdown.RenderedBlock;
+import com.aIgenie.view.markdown.RenderedMarkdown;
+
+import javax.swing.*;
+import javax.swing.text.DefaultStyledDocument;
+import java.awt.*;
+import java.awt.event.MouseListener;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 Markdown 显示一条回复：每个块一个文本组件，自上而下排列。
+ * 解析与生成样式文档在 {@link MarkdownRenderService} 的后台线程进行，本组件只在 EDT 上换上结果；
+ * 与上次相同的块保留原组件，流式回复每次只替换尾部变化的块。
+ * 首次显示时若已有缓存的渲染结果（例如行组件移出视口后重建）立即使用，否则先显示纯文本。
+ */
+final class MarkdownView extends JPanel {
+
+    /** 块之间的间距。 */
+    private static final int BLOCK_GAP = 6;
+    /** 代码块的内边距。 */
+    private static final int CODE_PADDING = 8;
+
+    private final ChatMessage message;
+    private final Color background;
+    private boolean complete;
+    /** 已显示的块，与子组件一一对应；显示纯文本时为空。 */
+    private final List<RenderedBlock> shown = new ArrayList<>();
+    private final List<MouseListener> mouseListeners = new ArrayList<>();
+    private Runnable onResize;
+    /** 最近一次请求渲染时的消息版本。 */
+    private long requestedVersion = -1;
+    private boolean requestedComplete;
+
+    MarkdownView(ChatMessage message, boolean complete, Color background) {
+        super(new StackLayout(BLOCK_GAP));
+        this.message = message;
+        this.complete = complete;
+        this.background = background;
+        setOpaque(false);
+
+        RenderedMarkdown latest = MarkdownRenderService.shared().latest(message);
+        if (latest != null) {
+            show(latest);
+        } else {
+            add(createPlainText(message.getContent()));
+        }
+        if (latest == null || latest.version() != message.getVersion() || (complete && !latest.complete())) {
+            request();
+        }
+    }
+
+    /**
+     * 消息内容变化后调用：请求后台按新内容渲染，结果到达后替换变化的块
+     */
+    void refresh() {
+        if (message.getVersion() != requestedVersion || complete != requestedComplete) {
+            request();
+        }
+    }
+
+    /**
+     * 流式回复结束：最后一个块定稿
+     */
+    void setComplete(boolean complete) {
+        this.complete = complete;
+        refresh();
+    }
+
+    /**
+     * 渲染结果改变了组件高度时的回调
+     */
+    void setOnResize(Runnable onResize) {
+        this.onResize = onResize;
+    }
+
+    void addContentMouseListener(MouseListener listener) {
+        mouseListeners.add(listener);
+        for (Component child : getComponents()) {
+            child.addMouseListener(listener);
+        }
+    }
+
+    private void request() {
+        requestedVersion = message.getVersion();
+        requestedComplete = complete;
+        MarkdownRenderService.shared().render(message, complete, this::apply);
+    }
+
+    private void apply(RenderedMarkdown result) {
+        if (show(result) && onResize != null) {
+            onResize.run();
+        }
+    }
+
+    /**
+     * 换上渲染结果：相同位置上文档未变的块保留原组件
+     *
+     * @return 是否有块发生变化
+     */
+    private boolean show(RenderedMarkdown result) {
+        List<RenderedBlock> blocks = result.blocks();
+        boolean plain = shown.isEmpty() && getComponentCount() > 0;
+        if (plain) {
+            removeAll();
+        }
+        int unchanged = 0;
+        while (unchanged < shown.size() && unchanged < blocks.size()
+                && shown.get(unchanged).document() == blocks.get(unchanged).document()
+                && shown.get(unchanged).block().getKind() == blocks.get(unchanged).block().getKind()) {
+            unchanged++;
+        }
+        if (!plain && unchanged == shown.size() && unchanged == blocks.size()) {
+            return false;
+        }
+        for (int i = shown.size() - 1; i >= unchanged; i--) {
+            Component child = getComponent(i);
+            remove(i);
+            detach(child);
+        }
+        shown.subList(unchanged, shown.size()).clear();
+        for (int i = unchanged; i < blocks.size(); i++) {
+            RenderedBlock block = blocks.get(i);
+            add(createBlockComponent(block));
+            shown.add(block);
+        }
+        revalidate();
+        repaint();
+        return true;
+    }
+
+    private Component createBlockComponent(RenderedBlock block) {
+        Component component;
+        if (block.block().getKind() == MarkdownBlock.Kind.RULE) {
+            JSeparator separator = new JSeparator();
+            separator.setForeground(MarkdownStyles.shared().getTheme().getRuleColor());
+            component = separator;
+        } else {
+            JTextPane pane = new JTextPane(block.document());
+            pane.setEditable(false);
+            pane.setBorder(null);
+            if (block.block().getKind() == MarkdownBlock.Kind.CODE) {
+                pane.setOpaque(true);
+                pane.setBackground(MarkdownStyles.shared().getTheme().getCodeBackground());
+                pane.setBorder(BorderFactory.createEmptyBorder(CODE_PADDING, CODE_PADDING, CODE_PADDING, CODE_PADDING));
+            } else {
+                pane.setOpaque(false);
+            }
+            component = pane;
+        }
+        for (MouseListener listener : mouseListeners) {
+            component.addMouseListener(listener);
+        }
+        return component;
+    }
+
+    private Component createPlainText(String text) {
+        JTextArea area = new JTextArea(text);
+        area.setFont(MessageRow.CONTENT_FONT);
+        area.setEditable(false);
+        area.setLineWrap(true);
+        area.setWrapStyleWord(true);
+        area.setBackground(background);
+        area.setBorder(null);
+        for (MouseListener listener : mouseListeners) {
+            area.addMouseListener(listener);
+        }
+        return area;
+    }
+
+    /**
+     * 已结束块的文档被缓存并可能被其他组件共用；组件不再显示时断开与文档的监听关系，
+     * 否则文档会一直引用已经丢弃的组件
+     */
+    private static void detach(Component child) {
+        if (child instanceof JTextPane pane) {
+            pane.setStyledDocument(new DefaultStyledDocument());
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        // 重新加入界面时接回 removeNotify 中断开的文档
+        for (int i = 0; i < shown.size(); i++) {
+            if (getComponent(i) instanceof JTextPane pane && pane.getDocument() != shown.get(i).document()) {
+                pane.setDocument(shown.get(i).document());
+            }
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        for (Component child : getComponents()) {
+            detach(child);
+        }
+        super.removeNotify();
+    }
+
+    /**
+     * 自上而下排列子组件，宽度撑满，高度为各组件在该宽度下的首选高度
+     */
+    private static final class StackLayout implements LayoutManager {
+        private final int gap;
+
+        StackLayout(int gap) {
+            this.gap = gap;
+        }
+
+        @Override
+        public void addLayoutComponent(String name, Component comp) {
+        }
+
+        @Override
+        public void removeLayoutComponent(Component comp) {
+        }
+
+        @Override
+        public Dimension preferredLayoutSize(Container parent) {
+            Insets insets = parent.getInsets();
+            int width = parent.getWidth() - insets.left - insets.right;
+            int height = 0;
+            int preferredWidth = 0;
+            Component[] children = parent.getComponents();
+            for (int i = 0; i < children.length; i++) {
+                Dimension size = preferredSize(children[i], width);
+                height += size.height + (i > 0 ? gap : 0);
+                preferredWidth = Math.max(preferredWidth, size.width);
+            }
+            return new Dimension(preferredWidth + insets.left + insets.right, height + insets.top + insets.bottom);
+        }
+
+        @Override
+        public Dimension minimumLayoutSize(Container parent) {
+            return preferredLayoutSize(parent);
+        }
+
+        @Override
+        public void layoutContainer(Container parent) {
+            Insets insets = parent.getInsets();
+            int width = parent.getWidth() - insets.left - insets.right;
+            int y = insets.top;
+            for (Component child : parent.getComponents()) {
+                int height = preferredSize(child, width).height;
+                child.setBounds(insets.left, y, width, height);
+                y += height + gap;
+            }
+        }
+
+        /**
+         * 按给定宽度换行后的首选大小：文本组件需要先设置宽度，首选高度才按该宽度计算
+         */
+        private static Dimension preferredSize(Component child, int width) {
+            if (width > 0 && child.getWidth() != width) {
+                child.setSize(width, Short.MAX_VALUE);
+            }
+            return child.getPreferredSize();
+        }
+    }
+}
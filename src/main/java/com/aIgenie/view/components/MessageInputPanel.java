@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.util.function.Consumer;
@@ -15,9 +17,18 @@ import java.util.function.Consumer;
 public class MessageInputPanel extends JPanel {
     private static final Logger logger = LoggerFactory.getLogger(MessageInputPanel.class);
 
+    /** "正在输入"信号的最小间隔：首次获得焦点或按键立即发出，此后间隔内的重复触发合并为一次。 */
+    private static final long COMPOSING_DEBOUNCE_NANOS = 3_000_000_000L;
+
     private JTextField messageField;
     private JButton sendButton;
     private Consumer<String> onSendListener;
+    private Runnable onCancelListener;
+    private Runnable onComposingListener;
+    private long lastComposingSignal;
+    private boolean composingSignalled;
+    /** AI 响应进行中时为 true，此时发送按钮变为"停止"，回车发送的消息进入排队。 */
+    private boolean busy;
     
     public MessageInputPanel() {
         setLayout(new BorderLayout(5, 0));
@@ -39,25 +50,53 @@ public class MessageInputPanel extends JPanel {
     }
     
     private void setupEventListeners() {
-        // 发送按钮点击事件
-        sendButton.addActionListener(e -> sendMessage());
+        // 发送按钮点击事件：响应进行中时作为停止按钮
+        sendButton.addActionListener(e -> {
+            if (busy) {
+                cancelMessage();
+            } else {
+                sendMessage();
+            }
+        });
         
-        // 输入框回车事件
+        // 输入框回车事件：响应进行中也可以发送，消息由控制器排队
         messageField.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
                 if (e.getKeyCode() == KeyEvent.VK_ENTER) {
                     sendMessage();
+                } else {
+                    signalComposing();
                 }
             }
         });
+
+        // 获得焦点通常意味着即将输入，提前发出信号以便预热连接
+        messageField.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusGained(FocusEvent e) {
+                signalComposing();
+            }
+        });
     }
-    
-    private void sendMessage() {
-        if (!sendButton.isEnabled()) {
-            // 上一条 AI 响应仍在进行中，禁止再发新消息
+
+    /**
+     * 发出"正在输入"信号（去抖），供控制器提前预热到 AI 服务的连接。只在 EDT 上调用。
+     */
+    private void signalComposing() {
+        if (onComposingListener == null) {
             return;
         }
+        long now = System.nanoTime();
+        if (composingSignalled && now - lastComposingSignal < COMPOSING_DEBOUNCE_NANOS) {
+            return;
+        }
+        composingSignalled = true;
+        lastComposingSignal = now;
+        onComposingListener.run();
+    }
+    
+    private void sendMessage() {
         if (onSendListener == null) {
             logger.warn("没有设置消息发送监听器");
             return;
@@ -72,17 +111,36 @@ public class MessageInputPanel extends JPanel {
         messageField.setText("");
     }
 
+    private void cancelMessage() {
+        if (onCancelListener == null) {
+            return;
+        }
+        logger.debug("用户请求停止当前回复");
+        // 防止重复点击，输入状态由控制器在取消完成后恢复
+        sendButton.setEnabled(false);
+        onCancelListener.run();
+    }
+
     /**
-     * 启用或禁用消息输入。
-     * AI 响应进行中应禁用，避免出现并发请求导致流式回复交错、对话历史错乱。
+     * 切换"响应进行中"状态。输入框始终可用，进行中输入的消息由控制器排队、按顺序自动发出；
+     * 设置了取消监听器时，发送按钮在此期间变为"停止"。
      */
-    public void setInputEnabled(boolean enabled) {
-        messageField.setEnabled(enabled);
-        sendButton.setEnabled(enabled);
-        sendButton.setText(enabled ? "发送" : "等待中...");
+    public void setBusy(boolean busy) {
+        this.busy = busy;
+        boolean cancellable = onCancelListener != null;
+        sendButton.setEnabled(!busy || cancellable);
+        sendButton.setText(!busy ? "发送" : cancellable ? "停止" : "等待中...");
     }
     
     public void setOnSendListener(Consumer<String> listener) {
         this.onSendListener = listener;
     }
+
+    public void setOnCancelListener(Runnable listener) {
+        this.onCancelListener = listener;
+    }
+
+    public void setOnComposingListener(Runnable listener) {
+        this.onComposingListener = listener;
+    }
 } 
\ No newline at end of file
@@ -1,255 +1,630 @@
 package com.aIgenie.view.components;
 
 import com.aIgenie.model.ChatMessage;
+import com.aIgenie.view.markdown.MarkdownStyles;
+import com.aIgenie.view.markdown.MarkdownTheme;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
-import java.awt.event.ComponentAdapter;
-import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * 消息渲染组件
+ * 消息渲染组件（虚拟化列表）
+ * 逻辑上的行依次为：已完成的消息、流式消息、输入提示、排队消息。
+ * 只为视口及其上下各一屏范围内的行创建 {@link MessageRow}，移出范围的行组件随即释放，
+ * 内存与布局开销只与可见行数有关，与对话长度无关。
+ * 每行的高度按当前宽度测量后缓存；尚未测量的行按字符宽度估算，进入视口时再精确测量。
+ * 测量导致上方的行高度变化时，以视口顶部的行为锚点调整滚动位置，内容不会跳动。
+ * AI 回复按 Markdown 在后台渲染，结果到达后只重新测量对应的行。
+ * 排队中（尚未发出）的消息显示在流式回复之后，右键菜单可以编辑或撤回。
+ * 所有修改都在 EDT 上进行，从其他线程调用时转到 EDT。
  */
-public class MessageRenderer extends JPanel {
+public class MessageRenderer extends JPanel implements Scrollable {
     private static final Logger logger = LoggerFactory.getLogger(MessageRenderer.class);
 
-    private final List<ChatMessage> messages = new ArrayList<>();
-    private ChatMessage typingIndicator = null;
-    private ChatMessage streamingMessage;
-    private JPanel streamingMessagePanel;
+    /** 同一宽度下的布局结果稳定前，一次布局最多重新定位的次数。 */
+    private static final int MAX_LAYOUT_PASSES = 3;
+
+    /** 所有逻辑行，顺序同类注释。 */
+    private final List<Entry> entries = new ArrayList<>();
+    private int messageCount;
+    private Entry streamingEntry;
+    private Entry typingEntry;
+    private final List<Entry> pendingEntries = new ArrayList<>();
+    private Consumer<ChatMessage> onEditPending;
+    private Consumer<ChatMessage> onDropPending;
+
+    /** 当前已创建组件的行。 */
+    private final List<Entry> materialized = new ArrayList<>();
+    /** 各行顶部位置，tops[entries.size()] 为总高度；每次布局重新计算。 */
+    private int[] tops = new int[1];
+    /** 高度缓存对应的宽度，宽度变化时全部失效。 */
+    private int measuredWidth = -1;
+    private int totalHeight;
+
+    /** 滚动锚点：视口顶部所在的行及视口顶部相对该行顶部的偏移。 */
+    private Entry anchor;
+    private int anchorOffset;
+    /** 上次布局后视口顶部的位置，与当前不同说明视口被用户滚动过。 */
+    private int laidOutViewY;
+    private boolean stickToBottom;
+    private boolean layingOut;
+
+    /** 估算行高用的字体度量，首次估算时获取。 */
+    private FontMetrics contentMetrics;
+    private FontMetrics senderMetrics;
+
+    private final ChangeListener viewportListener = e -> layoutRows();
+    private JViewport viewport;
 
     public MessageRenderer() {
-        setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+        setLayout(null);
         setBackground(new Color(240, 240, 240));
+    }
 
-        addComponentListener(new ComponentAdapter() {
-            @Override
-            public void componentResized(ComponentEvent e) {
-                int width = getWidth();
-                if (width > 0) {
-                    for (Component comp : getComponents()) {
-                        if (comp instanceof JPanel) {
-                            comp.setMaximumSize(new Dimension(width - 10, comp.getPreferredSize().height));
-                        }
-                    }
-                }
-                revalidate();
-                repaint();
+    /**
+     * 添加消息
+     */
+    public void addMessage(ChatMessage message) {
+        onEdt(() -> {
+            entries.add(messageCount++, new Entry(message, false));
+            rowsChanged(false);
+        });
+    }
+
+    /**
+     * 替换排队中的消息列表
+     */
+    public void setPendingMessages(List<ChatMessage> pending) {
+        List<ChatMessage> snapshot = List.copyOf(pending);
+        onEdt(() -> {
+            for (Entry entry : pendingEntries) {
+                removeEntry(entry);
             }
+            pendingEntries.clear();
+            for (ChatMessage message : snapshot) {
+                Entry entry = new Entry(message, true);
+                pendingEntries.add(entry);
+                entries.add(entry);
+            }
+            rowsChanged(false);
         });
     }
-    
+
     /**
-     * 添加消息
+     * 设置排队消息右键菜单的"编辑"与"撤回"动作
      */
-    public void addMessage(ChatMessage message) {
-        messages.add(message);
-        refreshDisplay();
+    public void setPendingActions(Consumer<ChatMessage> onEdit, Consumer<ChatMessage> onDrop) {
+        this.onEditPending = onEdit;
+        this.onDropPending = onDrop;
     }
-    
+
     /**
      * 设置输入提示
      */
     public void setTypingIndicator(ChatMessage indicator) {
-        this.typingIndicator = indicator;
-        refreshDisplay();
+        onEdt(() -> {
+            if (typingEntry != null) {
+                removeEntry(typingEntry);
+            }
+            typingEntry = new Entry(indicator, false);
+            entries.add(messageCount + (streamingEntry != null ? 1 : 0), typingEntry);
+            rowsChanged(false);
+        });
     }
-    
+
     /**
      * 清除输入提示
      */
     public void clearTypingIndicator() {
-        this.typingIndicator = null;
-        refreshDisplay();
+        onEdt(() -> {
+            if (typingEntry != null) {
+                removeEntry(typingEntry);
+                typingEntry = null;
+                rowsChanged(false);
+            }
+        });
     }
-    
+
     /**
      * 滚动到底部 (公开方法)
+     * 在下一次布局中执行，此时新增行的高度已经测量，滚动位置不会停在过时的底部。
      */
     public void scrollToBottom() {
-        JScrollPane scrollPane = findScrollPane();
-        if (scrollPane != null) {
-            SwingUtilities.invokeLater(() -> {
-                JScrollBar verticalBar = scrollPane.getVerticalScrollBar();
-                verticalBar.setValue(verticalBar.getMaximum());
-            });
-        } else {
-            logger.debug("找不到父滚动面板");
-        }
+        onEdt(() -> {
+            stickToBottom = true;
+            revalidate();
+        });
     }
 
-    private JScrollPane findScrollPane() {
-        Container parent = getParent();
-        while (parent != null && !(parent instanceof JScrollPane)) {
-            parent = parent.getParent();
-        }
-        return parent instanceof JScrollPane ? (JScrollPane) parent : null;
-    }
-    
     /**
      * 设置流式消息
      */
     public void setStreamingMessage(ChatMessage message, boolean autoScroll) {
-        this.streamingMessage = message;
-        refreshDisplay(autoScroll);
+        onEdt(() -> {
+            if (streamingEntry != null) {
+                removeEntry(streamingEntry);
+            }
+            streamingEntry = new Entry(message, false);
+            entries.add(messageCount, streamingEntry);
+            rowsChanged(autoScroll);
+        });
     }
 
     public void setStreamingMessage(ChatMessage message) {
         setStreamingMessage(message, false);
     }
-    
+
     /**
-     * 更新流式消息内容
+     * 更新流式消息内容：只把上次同步之后新增的文本追加到该行文本组件的 Document，不重设全文，
+     * 随后只重新测量这一行，其余行的位置整体平移、组件不重新布局。
+     * 行组件不在视口附近时不做任何文本操作，进入视口时按最新内容创建
      */
     public void updateStreamingMessage(ChatMessage message, boolean autoScroll) {
-        // 只需更新面板内容，不需要完全重绘
-        if (streamingMessagePanel != null) {
-            // 保存当前滚动位置
-            int currentScrollPosition = autoScroll ? -1 : getCurrentScrollPosition();
-            
-            // 找到内容文本区域并更新
-            for (Component comp : streamingMessagePanel.getComponents()) {
-                if (comp instanceof JTextArea) {
-                    JTextArea textArea = (JTextArea)comp;
-                    textArea.setText(message.getContent());
-                    break;
-                }
-            }
-            
-            // 处理滚动
-            if (autoScroll) {
-                scrollToBottom();
-            } else if (currentScrollPosition >= 0) {
-                restoreScrollPosition(currentScrollPosition);
+        onEdt(() -> {
+            if (streamingEntry == null || streamingEntry.message != message) {
+                setStreamingMessage(message, autoScroll);
+                return;
             }
-        } else {
-            // 如果面板不存在，刷新显示
-            refreshDisplay(autoScroll);
-        }
+            streamingEntry.contentChanged();
+            rowsChanged(autoScroll);
+        });
     }
 
     public void updateStreamingMessage(ChatMessage message) {
         updateStreamingMessage(message, false);
     }
-    
+
     /**
-     * 完成流式消息
+     * 完成流式消息：流式消息这一行原地转为普通消息
      */
     public void finalizeStreamingMessage(ChatMessage message) {
-        // 将流式消息添加到正常消息列表
-        if (!messages.contains(message)) {
-            messages.add(message);
+        onEdt(() -> {
+            if (streamingEntry != null && streamingEntry.message == message) {
+                // 流式行已经位于已完成消息之后，只需把它计入消息列表
+                streamingEntry.contentChanged();
+                if (streamingEntry.row != null) {
+                    streamingEntry.row.setStreaming(false);
+                }
+                streamingEntry = null;
+                messageCount++;
+            } else {
+                entries.add(messageCount++, new Entry(message, false));
+            }
+            rowsChanged(false);
+        });
+    }
+
+    /**
+     * 丢弃流式消息（取消回复时）
+     */
+    public void discardStreamingMessage() {
+        onEdt(() -> {
+            if (streamingEntry != null) {
+                removeEntry(streamingEntry);
+                streamingEntry = null;
+                rowsChanged(false);
+            }
+        });
+    }
+
+    /**
+     * 切换回复内容的 Markdown 配色。已缓存的样式文档引用的是具名样式，切换后无需重新解析；
+     * 只重建视口附近的行组件，使代码块背景等组件属性按新主题创建
+     */
+    public void setTheme(MarkdownTheme theme) {
+        onEdt(() -> {
+            if (MarkdownStyles.shared().getTheme() == theme) {
+                return;
+            }
+            MarkdownStyles.shared().apply(theme);
+            for (Entry entry : materialized) {
+                remove(entry.row);
+                entry.row = null;
+            }
+            materialized.clear();
+            rowsChanged(false);
+        });
+    }
+
+    /**
+     * 行内容在后台渲染完成后高度可能变化，重新测量这一行；原本停在底部时保持在底部
+     */
+    private void rowResized(Entry entry) {
+        if (!entry.attached || entry.row == null) {
+            return;
         }
-        streamingMessage = null;
-        streamingMessagePanel = null;
-        refreshDisplay();
+        entry.height = -1;
+        boolean atBottom = viewport != null && laidOutViewY + viewport.getHeight() >= totalHeight;
+        rowsChanged(atBottom);
     }
-    
+
+    private void removeEntry(Entry entry) {
+        entries.remove(entry);
+        entry.attached = false;
+        if (entry.row != null) {
+            remove(entry.row);
+            entry.row = null;
+            materialized.remove(entry);
+        }
+    }
+
     /**
-     * 刷新显示
+     * 行增删或内容变化后，在下一次布局中重新计算位置
      */
-    private void refreshDisplay(boolean autoScroll) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                int currentScrollPosition = getCurrentScrollPosition();
+    private void rowsChanged(boolean autoScroll) {
+        if (autoScroll) {
+            stickToBottom = true;
+        }
+        revalidate();
+        repaint();
+    }
 
-                removeAll();
+    @Override
+    public void doLayout() {
+        layoutRows();
+    }
 
-                for (ChatMessage message : messages) {
-                    add(createMessageComponent(message));
+    /**
+     * 按当前宽度与视口位置摆放行：计算各行位置，为视口附近的行创建组件并测量高度，释放其余行的组件。
+     */
+    private void layoutRows() {
+        if (layingOut) {
+            return;
+        }
+        int width = getWidth();
+        if (width <= 0) {
+            return;
+        }
+        layingOut = true;
+        try {
+            if (width != measuredWidth) {
+                measuredWidth = width;
+                for (Entry entry : entries) {
+                    entry.height = -1;
                 }
+            }
 
-                if (streamingMessage != null) {
-                    streamingMessagePanel = createMessageComponent(streamingMessage);
-                    add(streamingMessagePanel);
+            Rectangle view = viewport != null ? viewport.getViewRect() : getVisibleRect();
+            computeTops(width);
+            if (view.y != laidOutViewY) {
+                updateAnchor(view.y);
+            }
+            int viewY = targetViewY(view);
+            for (int pass = 0; pass < MAX_LAYOUT_PASSES; pass++) {
+                materialize(viewY, view.height, width);
+                computeTops(width);
+                int settled = targetViewY(view);
+                if (settled == viewY) {
+                    break;
                 }
+                viewY = settled;
+            }
 
-                if (typingIndicator != null) {
-                    add(createMessageComponent(typingIndicator));
+            for (Entry entry : materialized) {
+                entry.row.setBounds(0, tops[entry.index], width, entry.height);
+                if (!entry.row.isValid()) {
+                    entry.row.validate();
                 }
+            }
 
-                add(Box.createVerticalGlue());
-
+            int total = tops[entries.size()];
+            if (total != totalHeight) {
+                totalHeight = total;
+                // 首选高度变化，由视口重新设置本组件大小后再次布局
                 revalidate();
-                repaint();
-
-                if (autoScroll) {
-                    scrollToBottom();
-                } else {
-                    restoreScrollPosition(currentScrollPosition);
+            }
+            if (viewport != null) {
+                if (viewY != view.y) {
+                    viewport.setViewPosition(new Point(view.x, viewY));
+                }
+                if (stickToBottom && getHeight() >= totalHeight) {
+                    stickToBottom = false;
                 }
+            }
+            updateAnchor(viewY);
+            laidOutViewY = viewY;
+            repaint();
+        } catch (Exception e) {
+            logger.error("布局消息列表时出错", e);
+        } finally {
+            layingOut = false;
+        }
+    }
+
+    /**
+     * 布局后视口顶部应在的位置：贴底时为底部，否则保持锚点行在视口中的相对位置
+     */
+    private int targetViewY(Rectangle view) {
+        int total = tops[entries.size()];
+        int maxY = Math.max(0, total - view.height);
+        if (stickToBottom) {
+            return maxY;
+        }
+        if (anchor == null || !anchor.attached) {
+            return Math.min(view.y, maxY);
+        }
+        return Math.max(0, Math.min(tops[anchor.index] + anchorOffset, maxY));
+    }
+
+    /**
+     * 为 [viewY - 一屏, viewY + 两屏) 范围内的行创建组件并测量高度，释放范围外的行组件
+     */
+    private void materialize(int viewY, int viewHeight, int width) {
+        int from = Math.max(0, viewY - viewHeight);
+        int to = viewY + 2 * viewHeight;
+        List<Entry> inRange = new ArrayList<>();
+        // 测量值与估算值之差的累计，后续行按此下移；其余行的位置由随后的 computeTops 统一更新
+        int shift = 0;
+        for (int i = indexAt(from); i < entries.size() && tops[i] + shift < to; i++) {
+            Entry entry = entries.get(i);
+            if (entry.row == null) {
+                entry.row = entry.pending
+                        ? createPendingRow(entry.message)
+                        : new MessageRow(entry.message, entry == streamingEntry);
+                entry.row.setOnResize(() -> rowResized(entry));
+                add(entry.row);
+            } else {
+                entry.row.syncContent();
+            }
+            if (entry.height < 0) {
+                int estimated = heightOf(entry, width);
+                entry.height = entry.row.heightFor(width);
+                shift += entry.height - estimated;
+            }
+            inRange.add(entry);
+        }
+        for (Entry entry : materialized) {
+            if (!inRange.contains(entry) && entry.row != null) {
+                remove(entry.row);
+                entry.row = null;
+            }
+        }
+        materialized.clear();
+        materialized.addAll(inRange);
+    }
+
+    private void computeTops(int width) {
+        if (tops.length != entries.size() + 1) {
+            tops = new int[entries.size() + 1];
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            entry.index = i;
+            tops[i + 1] = tops[i] + heightOf(entry, width);
+        }
+    }
+
+    /**
+     * 包含纵坐标 y 的行，y 超出总高度时为最后一行之后
+     */
+    private int indexAt(int y) {
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (tops[mid + 1] <= y) {
+                low = mid + 1;
+            } else if (tops[mid] > y) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low;
+    }
 
-                logger.debug("消息显示刷新完成，共 {} 条{}{}",
-                        messages.size(),
-                        streamingMessage != null ? " + 1条流式消息" : "",
-                        typingIndicator != null ? " + 1条输入提示" : "");
+    private void updateAnchor(int viewY) {
+        int index = indexAt(viewY);
+        if (index < entries.size()) {
+            anchor = entries.get(index);
+            anchorOffset = viewY - tops[index];
+        } else {
+            anchor = null;
+        }
+    }
+
+    private int heightOf(Entry entry, int width) {
+        return entry.height >= 0 ? entry.height : estimateHeight(entry, width);
+    }
+
+    /**
+     * 不创建组件，按字符宽度估算换行后的高度。结果按宽度缓存在行上
+     */
+    private int estimateHeight(Entry entry, int width) {
+        if (entry.estimateWidth == width) {
+            return entry.estimatedHeight;
+        }
+        if (contentMetrics == null) {
+            contentMetrics = getFontMetrics(MessageRow.CONTENT_FONT);
+            senderMetrics = getFontMetrics(MessageRow.SENDER_FONT);
+        }
+        Insets insets = MessageRow.borderInsets(entry.message, this);
+        int contentWidth = Math.max(1, width - insets.left - insets.right);
+        int paragraphs = entry.paragraphs(contentMetrics);
+        long lines = paragraphs + entry.textWidth / contentWidth;
+        entry.estimatedHeight = (int) Math.min(Integer.MAX_VALUE / 4,
+                insets.top + insets.bottom + senderMetrics.getHeight() + lines * contentMetrics.getHeight());
+        entry.estimateWidth = width;
+        return entry.estimatedHeight;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        if (getParent() instanceof JViewport parent) {
+            viewport = parent;
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+            viewport = null;
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(Math.max(0, measuredWidth), totalHeight);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return 16;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    /**
+     * 内容不足一屏时撑满视口，背景色覆盖整个区域
+     */
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport parent && parent.getHeight() > totalHeight;
+    }
+
+    private static void onEdt(Runnable action) {
+        Runnable guarded = () -> {
+            try {
+                action.run();
             } catch (Exception e) {
                 logger.error("刷新消息显示时出错", e);
             }
+        };
+        if (SwingUtilities.isEventDispatchThread()) {
+            guarded.run();
+        } else {
+            SwingUtilities.invokeLater(guarded);
+        }
+    }
+
+    /**
+     * 排队中的消息：灰色显示，标题注明"排队中"，右键可编辑或撤回
+     */
+    private MessageRow createPendingRow(ChatMessage message) {
+        MessageRow row = new MessageRow(message);
+        row.showAsPending();
+
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem edit = new JMenuItem("编辑");
+        edit.addActionListener(e -> {
+            if (onEditPending != null) {
+                onEditPending.accept(message);
+            }
         });
+        JMenuItem drop = new JMenuItem("撤回");
+        drop.addActionListener(e -> {
+            if (onDropPending != null) {
+                onDropPending.accept(message);
+            }
+        });
+        menu.add(edit);
+        menu.add(drop);
+
+        MouseAdapter popupTrigger = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                showPopup(e);
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                showPopup(e);
+            }
+
+            private void showPopup(MouseEvent e) {
+                if (e.isPopupTrigger()) {
+                    menu.show(e.getComponent(), e.getX(), e.getY());
+                }
+            }
+        };
+        row.addRowMouseListener(popupTrigger);
+        return row;
+    }
+
+    /**
+     * 一个逻辑行。{@code row} 只在行处于视口附近时存在。
+     */
+    private static final class Entry {
+        final ChatMessage message;
+        final boolean pending;
+        MessageRow row;
+        /** 按 {@link #measuredWidth} 测量的高度，-1 表示尚未测量。 */
+        int height = -1;
+        /** 在 {@link #entries} 中的位置，每次布局更新。 */
+        int index;
+        /** 按 {@link #estimateWidth} 估算的高度。 */
+        int estimatedHeight;
+        int estimateWidth = -1;
+        boolean attached = true;
+
+        /** 估算用的文本宽度（各字符宽度之和）与段落数，按内容版本增量累计。 */
+        long textWidth;
+        private int paragraphs = 1;
+        private long extentVersion;
+
+        Entry(ChatMessage message, boolean pending) {
+            this.message = message;
+            this.pending = pending;
+        }
+
+        /**
+         * 内容变化，行组件同步新内容并重新测量高度
+         */
+        void contentChanged() {
+            if (row != null) {
+                row.syncContent();
+            }
+            height = -1;
+            estimateWidth = -1;
+        }
+
+        /**
+         * 段落数；流式消息每次只统计新追加的字符
+         */
+        int paragraphs(FontMetrics metrics) {
+            String added = message.getContentSince(extentVersion);
+            if (added == null) {
+                // 内容被整体替换，从头统计
+                textWidth = 0;
+                paragraphs = 1;
+                added = message.getContent();
+            }
+            int wideWidth = metrics.charWidth('中');
+            for (int i = 0; i < added.length(); i++) {
+                char c = added.charAt(i);
+                if (c == '\n') {
+                    paragraphs++;
+                } else {
+                    textWidth += c < 0x80 ? metrics.charWidth(c) : wideWidth;
+                }
+            }
+            extentVersion = message.getVersion();
+            return paragraphs;
+        }
     }
-    
-    // 为了兼容，保留原有方法
-    private void refreshDisplay() {
-        refreshDisplay(false);
-    }
-    
-    private JPanel createMessageComponent(ChatMessage message) {
-        JPanel panel = new JPanel();
-        panel.setLayout(new BorderLayout());
-        
-        boolean isUserMessage = "我".equals(message.getSender());
-        
-        // 创建不同的背景颜色
-        Color bgColor = isUserMessage ? new Color(220, 248, 198) : new Color(255, 255, 255);
-        panel.setBackground(bgColor);
-        
-        // 创建边框
-        panel.setBorder(BorderFactory.createCompoundBorder(
-            BorderFactory.createEmptyBorder(5, isUserMessage ? 50 : 10, 5, isUserMessage ? 10 : 50),
-            BorderFactory.createCompoundBorder(
-                BorderFactory.createLineBorder(isUserMessage ? new Color(170, 218, 148) : new Color(230, 230, 230), 1),
-                BorderFactory.createEmptyBorder(8, 10, 8, 10)
-            )
-        ));
-        
-        // 创建标题（发送者）
-        JLabel senderLabel = new JLabel(message.getSender());
-        senderLabel.setFont(new Font("Dialog", Font.BOLD, 12));
-        senderLabel.setForeground(isUserMessage ? new Color(0, 100, 0) : new Color(0, 0, 180));
-        
-        // 创建内容
-        JTextArea contentText = new JTextArea(message.getContent());
-        contentText.setFont(new Font("Dialog", Font.PLAIN, 14));
-        contentText.setEditable(false);
-        contentText.setLineWrap(true);
-        contentText.setWrapStyleWord(true);
-        contentText.setBackground(bgColor);
-        contentText.setBorder(null);
-        
-        // 添加组件
-        panel.add(senderLabel, BorderLayout.NORTH);
-        panel.add(contentText, BorderLayout.CENTER);
-        
-        // 设置最大宽度，确保在窗口调整大小时文本能正确换行
-        panel.setMaximumSize(new Dimension(Integer.MAX_VALUE, panel.getPreferredSize().height));
-        
-        return panel;
-    }
-
-    private int getCurrentScrollPosition() {
-        JScrollPane scrollPane = findScrollPane();
-        return scrollPane == null ? 0 : scrollPane.getVerticalScrollBar().getValue();
-    }
-
-    private void restoreScrollPosition(int position) {
-        JScrollPane scrollPane = findScrollPane();
-        if (scrollPane != null) {
-            SwingUtilities.invokeLater(() -> scrollPane.getVerticalScrollBar().setValue(position));
-        }
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,174 @@
+package com.aIgenie.view.components;
+
+import com.aIgenie.model.ChatMessage;
+
+import javax.swing.*;
+import javax.swing.border.Border;
+import java.awt.*;
+import java.awt.event.MouseListener;
+
+/**
+ * 一条消息对应的行组件：发送者标题 + 内容。
+ * 用户消息的内容是纯文本；AI 回复按 Markdown 显示（{@link MarkdownView}），解析在后台进行。
+ * 字体、颜色与边框是所有行共享的常量，创建一行只分配组件本身。
+ */
+final class MessageRow extends JPanel {
+
+    static final Font SENDER_FONT = new Font("Dialog", Font.BOLD, 12);
+    static final Font CONTENT_FONT = new Font("Dialog", Font.PLAIN, 14);
+
+    private static final Color USER_BACKGROUND = new Color(220, 248, 198);
+    private static final Color AI_BACKGROUND = new Color(255, 255, 255);
+    private static final Color USER_SENDER_COLOR = new Color(0, 100, 0);
+    private static final Color AI_SENDER_COLOR = new Color(0, 0, 180);
+
+    private static final Border USER_BORDER = createBorder(true);
+    private static final Border AI_BORDER = createBorder(false);
+
+    private final ChatMessage message;
+    private final JLabel senderLabel;
+    /** 用户消息的纯文本内容，AI 回复时为 null。 */
+    private final JTextArea contentText;
+    /** AI 回复的 Markdown 内容，用户消息时为 null。 */
+    private final MarkdownView markdownView;
+    /** 文本组件已经显示到的消息版本。 */
+    private long renderedVersion;
+
+    MessageRow(ChatMessage message) {
+        this(message, false);
+    }
+
+    /**
+     * @param streaming 消息仍在流式接收中，Markdown 的最后一个块尚未结束
+     */
+    MessageRow(ChatMessage message, boolean streaming) {
+        super(new BorderLayout());
+        this.message = message;
+
+        boolean isUserMessage = isUserMessage(message);
+        Color bgColor = isUserMessage ? USER_BACKGROUND : AI_BACKGROUND;
+        setBackground(bgColor);
+        setBorder(isUserMessage ? USER_BORDER : AI_BORDER);
+
+        senderLabel = new JLabel(message.getSender());
+        senderLabel.setFont(SENDER_FONT);
+        senderLabel.setForeground(isUserMessage ? USER_SENDER_COLOR : AI_SENDER_COLOR);
+
+        add(senderLabel, BorderLayout.NORTH);
+        if (isUserMessage) {
+            renderedVersion = message.getVersion();
+            contentText = new JTextArea(message.getContent());
+            contentText.setFont(CONTENT_FONT);
+            contentText.setEditable(false);
+            contentText.setLineWrap(true);
+            contentText.setWrapStyleWord(true);
+            contentText.setBackground(bgColor);
+            contentText.setBorder(null);
+            markdownView = null;
+            add(contentText, BorderLayout.CENTER);
+        } else {
+            contentText = null;
+            markdownView = new MarkdownView(message, !streaming, bgColor);
+            add(markdownView, BorderLayout.CENTER);
+        }
+    }
+
+    ChatMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * 同步消息的最新内容：只把上次同步之后追加的文本插入 Document 尾部；内容被整体替换时才重设全文。
+     * AI 回复交给后台重新渲染尾部，结果到达后通过 {@link #setOnResize} 的回调通知
+     */
+    void syncContent() {
+        if (markdownView != null) {
+            markdownView.refresh();
+            return;
+        }
+        long version = message.getVersion();
+        if (version == renderedVersion) {
+            return;
+        }
+        String added = message.getContentSince(renderedVersion);
+        if (added == null) {
+            contentText.setText(message.getContent());
+        } else {
+            contentText.append(added);
+        }
+        renderedVersion = version;
+    }
+
+    /**
+     * 流式接收结束后调用，Markdown 的最后一个块随之定稿
+     */
+    void setStreaming(boolean streaming) {
+        if (markdownView != null) {
+            markdownView.setComplete(!streaming);
+        }
+    }
+
+    /**
+     * 内容在后台渲染完成、高度可能变化时的回调
+     */
+    void setOnResize(Runnable onResize) {
+        if (markdownView != null) {
+            markdownView.setOnResize(onResize);
+        }
+    }
+
+    /**
+     * 排队中的样式：灰色显示，标题注明"排队中"
+     */
+    void showAsPending() {
+        senderLabel.setText(message.getSender() + "（排队中）");
+        senderLabel.setForeground(Color.GRAY);
+        if (contentText != null) {
+            contentText.setForeground(Color.GRAY);
+        }
+    }
+
+    /**
+     * 给整行（包括标题与内容）添加鼠标监听，用于右键菜单
+     */
+    void addRowMouseListener(MouseListener listener) {
+        addMouseListener(listener);
+        senderLabel.addMouseListener(listener);
+        if (contentText != null) {
+            contentText.addMouseListener(listener);
+        } else {
+            markdownView.addContentMouseListener(listener);
+        }
+    }
+
+    /**
+     * 测量这一行在给定宽度下换行后的高度
+     */
+    int heightFor(int width) {
+        // 先按目标宽度布局，文本区域的首选高度才会按这个宽度换行计算
+        setSize(width, Short.MAX_VALUE);
+        doLayout();
+        return getPreferredSize().height;
+    }
+
+    /**
+     * 消息行边框占用的空间，用于在不创建组件时估算高度
+     */
+    static Insets borderInsets(ChatMessage message, Component context) {
+        return (isUserMessage(message) ? USER_BORDER : AI_BORDER).getBorderInsets(context);
+    }
+
+    private static boolean isUserMessage(ChatMessage message) {
+        return "我".equals(message.getSender());
+    }
+
+    private static Border createBorder(boolean isUserMessage) {
+        return BorderFactory.createCompoundBorder(
+                BorderFactory.createEmptyBorder(5, isUserMessage ? 50 : 10, 5, isUserMessage ? 10 : 50),
+                BorderFactory.createCompoundBorder(
+                        BorderFactory.createLineBorder(isUserMessage ? new Color(170, 218, 148) : new Color(230, 230, 230), 1),
+                        BorderFactory.createEmptyBorder(8, 10, 8, 10)
+                )
+        );
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.event.MouseMotionAdapter;
 import java.awt.event.WindowEvent;
 import com.aIgenie.view.dialogs.SettingsDialog;
 import com.aIgenie.util.DockableWindowBehavior;
+import java.util.function.Consumer;
 
 /**
  * 自定义标题栏组件
@@ -28,6 +29,7 @@ public class TitlePanel extends JPanel {
     private boolean isAlwaysOnTop = false;
     private Color backgroundColor = new Color(25, 118, 210); // 蓝色背景
     private Color textColor = Color.WHITE;
+    private Consumer<String> onThemeChanged;
     
     public TitlePanel(String title) {
         setPreferredSize(new Dimension(getWidth(), 30));
@@ -149,6 +151,13 @@ public class TitlePanel extends JPanel {
         }
     }
     
+    /**
+     * 设置中切换主题后的回调，主题无需重启即可生效
+     */
+    public void setOnThemeChanged(Consumer<String> onThemeChanged) {
+        this.onThemeChanged = onThemeChanged;
+    }
+
     public void setDraggableFrame(JFrame frame) {
         this.parentFrame = frame;
         
@@ -191,6 +200,10 @@ public class TitlePanel extends JPanel {
             // 这里不要把 apiKey 打到日志里，避免泄露
             logger.info("设置已更改: 主题={}, API URL={}, 模型={}", theme, apiUrl, model);
 
+            if (onThemeChanged != null) {
+                onThemeChanged.accept(theme);
+            }
+
             // 启用或禁用窗口停靠
             if (parentFrame != null) {
                 try {
@@ -0,0 +1,49 @@
+package com.aIgenie.view.markdown;
+
+import javax.swing.text.StyledDocument;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 已结束块的样式文档缓存，以块内容（类型、语言 / 级别、正文）为键，按最近使用淘汰。
+ * 同一段代码或段落在不同消息、行组件重建、宽度变化与主题切换之间共用一份文档。
+ */
+final class BlockCache {
+
+    private final int capacity;
+    private final Map<MarkdownBlock, StyledDocument> documents;
+    private long hits;
+    private long misses;
+
+    BlockCache(int capacity) {
+        this.capacity = capacity;
+        this.documents = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MarkdownBlock, StyledDocument> eldest) {
+                return size() > BlockCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 缓存中的文档，不存在时为 null
+     */
+    synchronized StyledDocument get(MarkdownBlock block) {
+        StyledDocument document = documents.get(block);
+        if (document != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return document;
+    }
+
+    synchronized void put(MarkdownBlock block, StyledDocument document) {
+        documents.put(block, document);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlockCache{size=" + documents.size() + ", hits=" + hits + ", misses=" + misses + "}";
+    }
+}
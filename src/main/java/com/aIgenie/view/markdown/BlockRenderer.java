@@ -0,0 +1,268 @@
+package com.aIgenie.view.markdown;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把一个 {@link MarkdownBlock} 转换为样式文档。
+ * 在后台线程调用：新建的文档在交给 EDT 之前不会被其他线程访问。
+ * 文档里的属性都以 {@link MarkdownStyles} 中的具名样式为 resolve parent，不含具体颜色。
+ */
+final class BlockRenderer {
+
+    private static final Pattern LIST_MARKER = Pattern.compile("^(\\s*)([-*+]|\\d{1,9}[.)])\\s+(.*)$");
+    /** 每一级列表缩进的像素。 */
+    private static final float LIST_INDENT = 16f;
+    private static final float QUOTE_INDENT = 10f;
+
+    private final MarkdownStyles styles;
+
+    BlockRenderer(MarkdownStyles styles) {
+        this.styles = styles;
+    }
+
+    /**
+     * 渲染一个块。分隔线没有文本内容，返回 null，由显示方画线
+     */
+    StyledDocument render(MarkdownBlock block) {
+        if (block.getKind() == MarkdownBlock.Kind.RULE) {
+            return null;
+        }
+        DefaultStyledDocument doc = new DefaultStyledDocument(styles.context());
+        try {
+            switch (block.getKind()) {
+                case CODE -> renderCode(doc, block);
+                case HEADING -> appendInline(doc, block.getText(), headingStyle(block.getInfo()));
+                case LIST -> renderList(doc, block.getText());
+                case QUOTE -> {
+                    appendInline(doc, block.getText(), MarkdownStyles.QUOTE);
+                    SimpleAttributeSet indent = new SimpleAttributeSet();
+                    StyleConstants.setLeftIndent(indent, QUOTE_INDENT);
+                    doc.setParagraphAttributes(0, doc.getLength(), indent, false);
+                }
+                case TABLE -> renderTable(doc, block.getText());
+                default -> appendInline(doc, block.getText(), MarkdownStyles.BODY);
+            }
+        } catch (BadLocationException e) {
+            // 始终在文档末尾插入，不会越界
+            throw new IllegalStateException(e);
+        }
+        return doc;
+    }
+
+    private void renderCode(DefaultStyledDocument doc, MarkdownBlock block) {
+        String code = block.getText();
+        CodeHighlighter.highlight(code, block.getInfo(), (start, end, style) -> {
+            try {
+                insert(doc, code.substring(start, end), attributes(style));
+            } catch (BadLocationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * 列表按行渲染：项目符号统一为"•"，有序列表保留原编号，按前导空格缩进嵌套层级
+     */
+    private void renderList(DefaultStyledDocument doc, String text) throws BadLocationException {
+        String[] lines = text.split("\n", -1);
+        int level = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int start = doc.getLength();
+            Matcher m = LIST_MARKER.matcher(line);
+            boolean item = m.matches();
+            String content;
+            if (item) {
+                level = m.group(1).replace("\t", "    ").length() / 2;
+                String marker = m.group(2);
+                doc.insertString(start, Character.isDigit(marker.charAt(0)) ? marker + " " : "• ",
+                        attributes(MarkdownStyles.BODY));
+                content = m.group(3);
+            } else {
+                // 列表项的续行，与所属项对齐
+                content = line.strip();
+            }
+            appendInline(doc, content, MarkdownStyles.BODY);
+            if (i < lines.length - 1) {
+                doc.insertString(doc.getLength(), "\n", attributes(MarkdownStyles.BODY));
+            }
+            SimpleAttributeSet indent = new SimpleAttributeSet();
+            StyleConstants.setLeftIndent(indent, LIST_INDENT * level + (item ? 0 : LIST_INDENT));
+            doc.setParagraphAttributes(start, Math.max(1, doc.getLength() - start), indent, false);
+        }
+    }
+
+    /**
+     * 表格按列宽对齐为等宽文本，表头加粗，表头下方画一条横线
+     */
+    private void renderTable(DefaultStyledDocument doc, String text) throws BadLocationException {
+        String[] lines = text.split("\n");
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < lines.length; i++) {
+            if (i != 1) {
+                rows.add(cells(lines[i]));
+            }
+        }
+        int columns = 0;
+        for (String[] row : rows) {
+            columns = Math.max(columns, row.length);
+        }
+        int[] widths = new int[columns];
+        for (String[] row : rows) {
+            for (int c = 0; c < row.length; c++) {
+                widths[c] = Math.max(widths[c], displayWidth(row[c]));
+            }
+        }
+
+        SimpleAttributeSet header = attributes(MarkdownStyles.TABLE);
+        StyleConstants.setBold(header, true);
+        AttributeSet body = attributes(MarkdownStyles.TABLE);
+        for (int r = 0; r < rows.size(); r++) {
+            StringBuilder sb = new StringBuilder();
+            String[] row = rows.get(r);
+            for (int c = 0; c < columns; c++) {
+                String cell = c < row.length ? row[c] : "";
+                if (c > 0) {
+                    sb.append(" │ ");
+                }
+                sb.append(cell).append(" ".repeat(widths[c] - displayWidth(cell)));
+            }
+            if (r > 0) {
+                doc.insertString(doc.getLength(), "\n", body);
+            }
+            doc.insertString(doc.getLength(), sb.toString().stripTrailing(), r == 0 ? header : body);
+            if (r == 0) {
+                StringBuilder rule = new StringBuilder("\n");
+                for (int c = 0; c < columns; c++) {
+                    if (c > 0) {
+                        rule.append("─┼─");
+                    }
+                    rule.append("─".repeat(widths[c]));
+                }
+                doc.insertString(doc.getLength(), rule.toString(), body);
+            }
+        }
+    }
+
+    private static String[] cells(String line) {
+        String trimmed = line.strip();
+        if (trimmed.startsWith("|")) {
+            trimmed = trimmed.substring(1);
+        }
+        if (trimmed.endsWith("|")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        String[] cells = trimmed.split("(?<!\\\\)\\|", -1);
+        for (int i = 0; i < cells.length; i++) {
+            // 表格里不展开行内格式，只去掉标记
+            cells[i] = cells[i].strip().replace("\\|", "|").replace("**", "").replace("`", "");
+        }
+        return cells;
+    }
+
+    /**
+     * 等宽字体下的显示宽度：全角字符占两格
+     */
+    private static int displayWidth(String s) {
+        int width = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            width += c >= 0x1100 && (c <= 0x115F || (c >= 0x2E80 && c <= 0xA4CF) || (c >= 0xAC00 && c <= 0xD7A3)
+                    || (c >= 0xF900 && c <= 0xFAFF) || (c >= 0xFE30 && c <= 0xFE4F) || (c >= 0xFF00 && c <= 0xFF60)
+                    || (c >= 0xFFE0 && c <= 0xFFE6)) ? 2 : 1;
+        }
+        return width;
+    }
+
+    /**
+     * 插入带行内格式的文本：`代码`、**粗体**、*斜体* / _斜体_ 与 [链接](地址)（只显示链接文字）
+     */
+    private void appendInline(DefaultStyledDocument doc, String text, String base) throws BadLocationException {
+        StringBuilder plain = new StringBuilder();
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            int close;
+            if (c == '\\' && i + 1 < n && "\\`*_[]()#|".indexOf(text.charAt(i + 1)) >= 0) {
+                plain.append(text.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+            if (c == '`' && (close = text.indexOf('`', i + 1)) > i) {
+                flush(doc, plain, base);
+                insert(doc, text.substring(i + 1, close), attributes(MarkdownStyles.INLINE_CODE));
+                i = close + 1;
+                continue;
+            }
+            if ((text.startsWith("**", i) || text.startsWith("__", i))
+                    && (close = text.indexOf(text.substring(i, i + 2), i + 2)) > i + 2) {
+                flush(doc, plain, base);
+                SimpleAttributeSet bold = attributes(base);
+                StyleConstants.setBold(bold, true);
+                insert(doc, text.substring(i + 2, close), bold);
+                i = close + 2;
+                continue;
+            }
+            if ((c == '*' || (c == '_' && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)))))
+                    && i + 1 < n && !Character.isWhitespace(text.charAt(i + 1))
+                    && (close = text.indexOf(c, i + 1)) > i + 1
+                    && !Character.isWhitespace(text.charAt(close - 1))) {
+                flush(doc, plain, base);
+                SimpleAttributeSet italic = attributes(base);
+                StyleConstants.setItalic(italic, true);
+                insert(doc, text.substring(i + 1, close), italic);
+                i = close + 1;
+                continue;
+            }
+            if (c == '[') {
+                int middle = text.indexOf("](", i + 1);
+                int end = middle > i ? text.indexOf(')', middle + 2) : -1;
+                if (end > 0 && text.substring(i, end).indexOf('\n') < 0) {
+                    flush(doc, plain, base);
+                    insert(doc, text.substring(i + 1, middle), attributes(MarkdownStyles.LINK));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            plain.append(c);
+            i++;
+        }
+        flush(doc, plain, base);
+    }
+
+    private void flush(DefaultStyledDocument doc, StringBuilder plain, String style) throws BadLocationException {
+        if (plain.length() > 0) {
+            insert(doc, plain.toString(), attributes(style));
+            plain.setLength(0);
+        }
+    }
+
+    private static void insert(DefaultStyledDocument doc, String text, AttributeSet attributes)
+            throws BadLocationException {
+        doc.insertString(doc.getLength(), text, attributes);
+    }
+
+    private SimpleAttributeSet attributes(String style) {
+        SimpleAttributeSet attributes = new SimpleAttributeSet();
+        attributes.setResolveParent(styles.style(style));
+        return attributes;
+    }
+
+    private static String headingStyle(String level) {
+        return switch (level) {
+            case "1" -> MarkdownStyles.HEADING_1;
+            case "2" -> MarkdownStyles.HEADING_2;
+            default -> MarkdownStyles.HEADING_3;
+        };
+    }
+}
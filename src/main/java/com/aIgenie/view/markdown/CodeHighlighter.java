@@ -0,0 +1,165 @@
+package com.aIgenie.view.markdown;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 代码块的轻量语法高亮：按语言识别注释、字符串、数字与关键字。
+ * 不做完整的词法分析，只求常见语言在聊天回复中的可读性；未知语言只高亮字符串、注释与数字。
+ */
+final class CodeHighlighter {
+
+    interface SpanSink {
+        /**
+         * 依次收到覆盖全部代码的区间 [start, end) 及其样式名
+         */
+        void span(int start, int end, String style);
+    }
+
+    /** 一类语言的注释写法与关键字。 */
+    private record Syntax(String lineComment, boolean blockComments, boolean backtickStrings,
+                          boolean ignoreCase, Set<String> keywords) {
+    }
+
+    private static final Syntax C_LIKE = new Syntax("//", true, false, false, Set.of(
+            "abstract", "auto", "bool", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "defer", "do", "double", "else", "enum", "extends", "extern", "false", "final",
+            "finally", "float", "fn", "for", "func", "go", "goto", "if", "impl", "implements", "import", "in",
+            "inline", "instanceof", "int", "interface", "internal", "let", "long", "match", "mod", "mut",
+            "namespace", "new", "nil", "null", "nullptr", "object", "open", "override", "package", "private",
+            "protected", "pub", "public", "record", "return", "sealed", "self", "short", "static", "struct",
+            "super", "switch", "synchronized", "template", "this", "throw", "throws", "trait", "true", "try",
+            "type", "typedef", "typename", "unsigned", "use", "using", "val", "var", "virtual", "void",
+            "volatile", "when", "where", "while", "yield"));
+
+    private static final Syntax SCRIPT = new Syntax("//", true, true, false, Set.of(
+            "as", "async", "await", "break", "case", "catch", "class", "const", "continue", "default", "delete",
+            "do", "else", "enum", "export", "extends", "false", "finally", "for", "from", "function", "if",
+            "implements", "import", "in", "instanceof", "interface", "let", "new", "null", "of", "private",
+            "protected", "public", "readonly", "return", "static", "super", "switch", "this", "throw", "true",
+            "try", "type", "typeof", "undefined", "var", "void", "while", "yield"));
+
+    private static final Syntax PYTHON = new Syntax("#", false, false, false, Set.of(
+            "False", "None", "True", "and", "as", "assert", "async", "await", "break", "class", "continue", "def",
+            "del", "elif", "else", "except", "finally", "for", "from", "global", "if", "import", "in", "is",
+            "lambda", "match", "nonlocal", "not", "or", "pass", "raise", "return", "self", "try", "while", "with",
+            "yield"));
+
+    private static final Syntax SHELL = new Syntax("#", false, false, false, Set.of(
+            "case", "do", "done", "echo", "elif", "else", "esac", "exit", "export", "fi", "for", "function",
+            "if", "in", "local", "return", "set", "then", "unset", "until", "while"));
+
+    private static final Syntax SQL = new Syntax("--", true, false, true, Set.of(
+            "add", "alter", "and", "as", "asc", "between", "by", "case", "create", "delete", "desc", "distinct",
+            "drop", "else", "end", "exists", "from", "group", "having", "in", "index", "inner", "insert", "into",
+            "is", "join", "key", "left", "like", "limit", "not", "null", "on", "or", "order", "outer", "primary",
+            "right", "select", "set", "table", "then", "union", "update", "values", "when", "where", "with"));
+
+    /** 只有注释与字符串的语法，用于配置文件等没有关键字的语言。 */
+    private static final Syntax HASH_COMMENTS = new Syntax("#", false, false, false, Set.of());
+    private static final Syntax PLAIN = new Syntax(null, false, false, false, Set.of());
+
+    private static final Map<String, Syntax> LANGUAGES = Map.ofEntries(
+            Map.entry("java", C_LIKE), Map.entry("kotlin", C_LIKE), Map.entry("kt", C_LIKE),
+            Map.entry("scala", C_LIKE), Map.entry("groovy", C_LIKE), Map.entry("c", C_LIKE),
+            Map.entry("h", C_LIKE), Map.entry("cpp", C_LIKE), Map.entry("c++", C_LIKE), Map.entry("cc", C_LIKE),
+            Map.entry("csharp", C_LIKE), Map.entry("cs", C_LIKE), Map.entry("c#", C_LIKE), Map.entry("go", C_LIKE),
+            Map.entry("golang", C_LIKE), Map.entry("rust", C_LIKE), Map.entry("rs", C_LIKE),
+            Map.entry("swift", C_LIKE), Map.entry("dart", C_LIKE), Map.entry("php", C_LIKE),
+            Map.entry("javascript", SCRIPT), Map.entry("js", SCRIPT), Map.entry("jsx", SCRIPT),
+            Map.entry("typescript", SCRIPT), Map.entry("ts", SCRIPT), Map.entry("tsx", SCRIPT),
+            Map.entry("python", PYTHON), Map.entry("py", PYTHON),
+            Map.entry("bash", SHELL), Map.entry("sh", SHELL), Map.entry("shell", SHELL), Map.entry("zsh", SHELL),
+            Map.entry("sql", SQL), Map.entry("mysql", SQL), Map.entry("postgresql", SQL),
+            Map.entry("yaml", HASH_COMMENTS), Map.entry("yml", HASH_COMMENTS), Map.entry("toml", HASH_COMMENTS),
+            Map.entry("properties", HASH_COMMENTS), Map.entry("ini", HASH_COMMENTS),
+            Map.entry("dockerfile", HASH_COMMENTS), Map.entry("makefile", HASH_COMMENTS),
+            Map.entry("ruby", HASH_COMMENTS), Map.entry("rb", HASH_COMMENTS), Map.entry("r", HASH_COMMENTS));
+
+    private CodeHighlighter() {
+    }
+
+    static void highlight(String code, String language, SpanSink sink) {
+        Syntax syntax = LANGUAGES.getOrDefault(language == null ? "" : language.toLowerCase(Locale.ROOT), PLAIN);
+        int n = code.length();
+        int plainStart = 0;
+        int i = 0;
+        while (i < n) {
+            char c = code.charAt(i);
+            int end = -1;
+            String style = null;
+            if (syntax.lineComment() != null && code.startsWith(syntax.lineComment(), i)) {
+                end = lineEnd(code, i);
+                style = MarkdownStyles.CODE_COMMENT;
+            } else if (syntax.blockComments() && code.startsWith("/*", i)) {
+                int close = code.indexOf("*/", i + 2);
+                end = close < 0 ? n : close + 2;
+                style = MarkdownStyles.CODE_COMMENT;
+            } else if (c == '"' || c == '\'' || (c == '`' && syntax.backtickStrings())) {
+                end = stringEnd(code, i, c);
+                style = MarkdownStyles.CODE_STRING;
+            } else if (Character.isDigit(c) && (i == 0 || !isIdentifierPart(code.charAt(i - 1)))) {
+                end = i + 1;
+                while (end < n && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '.'
+                        || code.charAt(end) == '_')) {
+                    end++;
+                }
+                style = MarkdownStyles.CODE_NUMBER;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                end = i + 1;
+                while (end < n && isIdentifierPart(code.charAt(end))) {
+                    end++;
+                }
+                String word = code.substring(i, end);
+                if (syntax.keywords().contains(syntax.ignoreCase() ? word.toLowerCase(Locale.ROOT) : word)) {
+                    style = MarkdownStyles.CODE_KEYWORD;
+                }
+            }
+            if (style == null) {
+                i = end > i ? end : i + 1;
+                continue;
+            }
+            if (plainStart < i) {
+                sink.span(plainStart, i, MarkdownStyles.CODE);
+            }
+            sink.span(i, end, style);
+            i = end;
+            plainStart = end;
+        }
+        if (plainStart < n) {
+            sink.span(plainStart, n, MarkdownStyles.CODE);
+        }
+    }
+
+    private static int lineEnd(String code, int from) {
+        int newline = code.indexOf('\n', from);
+        return newline < 0 ? code.length() : newline;
+    }
+
+    /**
+     * 字符串结束位置（含结尾引号）；反引号字符串可以跨行，其余字符串最多到行尾
+     */
+    private static int stringEnd(String code, int from, char quote) {
+        int i = from + 1;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                return i + 1;
+            }
+            if (c == '\n' && quote != '`') {
+                return i;
+            }
+            i++;
+        }
+        return code.length();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isJavaIdentifierPart(c);
+    }
+}
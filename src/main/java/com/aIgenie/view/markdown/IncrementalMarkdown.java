@@ -0,0 +1,78 @@
+package com.aIgenie.view.markdown;
+
+import com.aIgenie.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一条消息的增量解析状态。
+ * 已结束的块保留下来不再解析，只保留尾部未结束块的源文本；
+ * 每次更新只取消息在上次版本之后追加的文本，接在未结束块后面重新解析这一小段。
+ * 只在渲染线程上使用。
+ */
+final class IncrementalMarkdown {
+
+    /** 一次解析的结果：前 {@code closedCount} 个块已结束，之后是尚未定稿的块（通常一个，最多两个）。 */
+    record Parse(long version, List<MarkdownBlock> blocks, int closedCount) {
+    }
+
+    private final List<MarkdownBlock> closed = new ArrayList<>();
+    /** 未结束块的源文本，从块边界开始。 */
+    private final StringBuilder tail = new StringBuilder();
+    /** 已读取到的消息版本，-1 表示尚未读取。 */
+    private long version = -1;
+
+    /**
+     * 读取消息的新内容并重新解析尾部。
+     *
+     * @param complete 消息已经结束，最后一个块也视为结束
+     */
+    Parse update(ChatMessage message, boolean complete) {
+        String added;
+        synchronized (message) {
+            added = message.getContentSince(version);
+            if (added == null) {
+                // 首次读取或内容被整体替换，从头解析
+                closed.clear();
+                tail.setLength(0);
+                added = message.getContent();
+            }
+            version = message.getVersion();
+        }
+        tail.append(added);
+
+        List<MarkdownBlock> blocks = MarkdownParser.parse(tail);
+        int closing = complete ? blocks.size() : blocks.size() - 1;
+        if (closing > 0 && !complete && startsOnUnterminatedLine(blocks.get(blocks.size() - 1))) {
+            // 最后一行还没有换行符，它是否开始新块要等整行到达后才能确定
+            // （例如 "#" 之后可能是 "#include"，"```" 之后可能还有反引号），前一个块暂不定稿
+            closing--;
+        }
+        int consumed = 0;
+        for (int i = 0; i < closing; i++) {
+            MarkdownBlock block = blocks.get(i);
+            closed.add(block);
+            consumed += block.getSpan();
+        }
+        tail.delete(0, consumed);
+
+        List<MarkdownBlock> all = new ArrayList<>(closed.size() + 1);
+        all.addAll(closed);
+        if (!complete) {
+            all.addAll(blocks.subList(closing, blocks.size()));
+        }
+        return new Parse(version, all, closed.size());
+    }
+
+    /**
+     * 尾部文本的最后一行没有换行符，且块从这一行开始
+     */
+    private boolean startsOnUnterminatedLine(MarkdownBlock last) {
+        int length = tail.length();
+        if (length == 0 || tail.charAt(length - 1) == '\n') {
+            return false;
+        }
+        return length - last.getSpan() == tail.lastIndexOf("\n") + 1;
+    }
+}
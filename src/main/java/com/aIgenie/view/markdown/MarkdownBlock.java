@@ -0,0 +1,69 @@
+package com.aIgenie.view.markdown;
+
+import java.util.Objects;
+
+/**
+ * Markdown 的一个块：段落、标题、代码块、列表、引用、表格或分隔线。
+ * 块的内容决定了它的渲染结果，内容相同的块可以共用同一份样式文档（见 {@link BlockCache}）。
+ */
+public final class MarkdownBlock {
+
+    public enum Kind {
+        PARAGRAPH, HEADING, CODE, LIST, QUOTE, TABLE, RULE
+    }
+
+    private final Kind kind;
+    /** 块的正文：代码块为围栏之间的代码，标题与引用已去掉标记，其余为原始行。 */
+    private final String text;
+    /** 代码块的语言或标题级别，其余块为空串。 */
+    private final String info;
+    /** 块在源文本中占用的字符数，包括其后的空行。 */
+    private final int span;
+
+    MarkdownBlock(Kind kind, String text, String info, int span) {
+        this.kind = kind;
+        this.text = text;
+        this.info = info;
+        this.span = span;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getInfo() {
+        return info;
+    }
+
+    int getSpan() {
+        return span;
+    }
+
+    /**
+     * 内容相同（类型、语言 / 级别、正文都相同）即相等，与在源文本中的位置无关
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MarkdownBlock other)) {
+            return false;
+        }
+        return kind == other.kind && info.equals(other.info) && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, info, text);
+    }
+
+    @Override
+    public String toString() {
+        return kind + (info.isEmpty() ? "" : "(" + info + ")") + ": " + text;
+    }
+}
@@ -0,0 +1,237 @@
+package com.aIgenie.view.markdown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 把 Markdown 文本切分为块。只识别聊天回复里常见的结构：
+ * 围栏代码块、ATX 标题、列表、引用、GFM 表格、分隔线与段落；行内格式在渲染时处理。
+ * 除最后一个块外，每个块之后都已出现下一个块的开头；只要这个开头是以换行符结束的完整行，
+ * 后续追加的文本就不会再改变前面的块，{@link IncrementalMarkdown} 据此只重新解析尾部未结束的块。
+ */
+final class MarkdownParser {
+
+    private static final Pattern HEADING = Pattern.compile("^ {0,3}(#{1,6})(\\s+|$)");
+    private static final Pattern LIST_ITEM = Pattern.compile("^\\s*([-*+]|\\d{1,9}[.)])\\s+.*");
+    private static final Pattern TABLE_SEPARATOR =
+            Pattern.compile("^\\s*\\|?\\s*:?-+:?\\s*(\\|\\s*:?-+:?\\s*)*\\|?\\s*$");
+
+    private MarkdownParser() {
+    }
+
+    /**
+     * 解析从块边界开始的文本。
+     *
+     * @return 依次排列的块，各块 {@link MarkdownBlock#getSpan() span} 之和等于文本长度
+     */
+    static List<MarkdownBlock> parse(CharSequence text) {
+        List<String> lines = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines.add(stripCarriageReturn(text.subSequence(lineStart, i).toString()));
+                starts.add(lineStart);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < text.length()) {
+            lines.add(stripCarriageReturn(text.subSequence(lineStart, text.length()).toString()));
+            starts.add(lineStart);
+        }
+
+        List<MarkdownBlock> blocks = new ArrayList<>();
+        // 上一个块的类型、正文与起点，遇到下一个块的开头时才能确定它的 span
+        MarkdownBlock.Kind kind = null;
+        String body = null;
+        String info = null;
+        int blockStart = 0;
+
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                i++;
+                continue;
+            }
+            if (kind != null) {
+                blocks.add(new MarkdownBlock(kind, body, info, starts.get(i) - blockStart));
+                blockStart = starts.get(i);
+            }
+            info = "";
+            int end;
+            String fence = fence(line);
+            if (fence != null) {
+                int indent = indentOf(line);
+                info = line.trim().substring(fence.length()).trim().split("\\s+", 2)[0].toLowerCase(Locale.ROOT);
+                end = i + 1;
+                while (end < lines.size() && !closesFence(lines.get(end), fence)) {
+                    end++;
+                }
+                kind = MarkdownBlock.Kind.CODE;
+                body = join(lines, i + 1, end, indent, false);
+                if (end < lines.size()) {
+                    end++;
+                }
+            } else if (HEADING.matcher(line).find()) {
+                String trimmed = line.trim();
+                int level = 0;
+                while (level < trimmed.length() && trimmed.charAt(level) == '#') {
+                    level++;
+                }
+                kind = MarkdownBlock.Kind.HEADING;
+                info = String.valueOf(level);
+                body = trimmed.substring(level).replaceAll("\\s+#+\\s*$", "").trim();
+                end = i + 1;
+            } else if (isRule(line)) {
+                kind = MarkdownBlock.Kind.RULE;
+                body = "";
+                end = i + 1;
+            } else if (i + 1 < lines.size() && line.indexOf('|') >= 0
+                    && TABLE_SEPARATOR.matcher(lines.get(i + 1)).matches()) {
+                end = i + 2;
+                while (end < lines.size() && !lines.get(end).isBlank() && lines.get(end).indexOf('|') >= 0) {
+                    end++;
+                }
+                kind = MarkdownBlock.Kind.TABLE;
+                body = join(lines, i, end, 0, false);
+            } else if (isQuote(line)) {
+                end = i + 1;
+                while (end < lines.size() && isQuote(lines.get(end))) {
+                    end++;
+                }
+                kind = MarkdownBlock.Kind.QUOTE;
+                body = join(lines, i, end, 0, true);
+            } else if (LIST_ITEM.matcher(line).matches()) {
+                end = i + 1;
+                while (end < lines.size() && !lines.get(end).isBlank() && !startsOtherBlock(lines.get(end), true)) {
+                    end++;
+                }
+                kind = MarkdownBlock.Kind.LIST;
+                body = join(lines, i, end, 0, false);
+            } else {
+                end = i + 1;
+                while (end < lines.size() && !lines.get(end).isBlank() && !startsOtherBlock(lines.get(end), false)) {
+                    end++;
+                }
+                kind = MarkdownBlock.Kind.PARAGRAPH;
+                body = join(lines, i, end, 0, false);
+            }
+            i = end;
+        }
+        if (kind != null) {
+            blocks.add(new MarkdownBlock(kind, body, info, text.length() - blockStart));
+        }
+        return blocks;
+    }
+
+    /**
+     * 该行是否开始一个新块，用于结束段落与列表。列表内的新列表项不算新块
+     */
+    private static boolean startsOtherBlock(String line, boolean inList) {
+        return fence(line) != null
+                || HEADING.matcher(line).find()
+                || isQuote(line)
+                || isRule(line)
+                || (!inList && LIST_ITEM.matcher(line).matches());
+    }
+
+    /**
+     * 围栏代码块的起始标记（三个以上的 ` 或 ~），不是围栏时为 null。
+     * 列表中的代码块通常带缩进，因此不限制缩进量
+     */
+    private static String fence(String line) {
+        String trimmed = line.stripLeading();
+        if (trimmed.length() < 3) {
+            return null;
+        }
+        char c = trimmed.charAt(0);
+        if (c != '`' && c != '~') {
+            return null;
+        }
+        int n = 0;
+        while (n < trimmed.length() && trimmed.charAt(n) == c) {
+            n++;
+        }
+        if (n < 3 || (c == '`' && trimmed.indexOf('`', n) >= 0)) {
+            return null;
+        }
+        return trimmed.substring(0, n);
+    }
+
+    private static boolean closesFence(String line, String fence) {
+        String trimmed = line.strip();
+        if (trimmed.length() < fence.length()) {
+            return false;
+        }
+        char c = fence.charAt(0);
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (trimmed.charAt(i) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRule(String line) {
+        String trimmed = line.strip();
+        if (trimmed.length() < 3) {
+            return false;
+        }
+        char c = trimmed.charAt(0);
+        if (c != '-' && c != '*' && c != '_') {
+            return false;
+        }
+        int count = 0;
+        for (int i = 0; i < trimmed.length(); i++) {
+            char ch = trimmed.charAt(i);
+            if (ch == c) {
+                count++;
+            } else if (ch != ' ' && ch != '\t') {
+                return false;
+            }
+        }
+        return count >= 3;
+    }
+
+    private static boolean isQuote(String line) {
+        return indentOf(line) <= 3 && line.stripLeading().startsWith(">");
+    }
+
+    private static int indentOf(String line) {
+        int n = 0;
+        while (n < line.length() && line.charAt(n) == ' ') {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * 拼接 [from, to) 行；去掉每行至多 {@code indent} 个前导空格，{@code quote} 时去掉引用标记
+     */
+    private static String join(List<String> lines, int from, int to, int indent, boolean quote) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            String line = lines.get(i);
+            if (quote) {
+                line = line.stripLeading().substring(1);
+                if (line.startsWith(" ")) {
+                    line = line.substring(1);
+                }
+            } else if (indent > 0) {
+                line = line.substring(Math.min(indent, indentOf(line)));
+            }
+            if (i > from) {
+                sb.append('\n');
+            }
+            sb.append(line);
+        }
+        return sb.toString();
+    }
+
+    private static String stripCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+}
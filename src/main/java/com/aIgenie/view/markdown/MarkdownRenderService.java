@@ -0,0 +1,158 @@
+package com.aIgenie.view.markdown;
+
+import com.aIgenie.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.text.StyledDocument;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 在后台线程解析 Markdown 并生成样式文档，结果交回 EDT。
+ * 每条消息保留增量解析状态，流式回复每次只重新解析尾部未结束的块；
+ * 已结束的块按内容缓存文档（{@link BlockCache}），与上一次结果相同的块直接沿用。
+ * 同一条消息的请求会合并：渲染进行中又有新内容时，只在本次完成后再渲染一次最新内容，
+ * 后台的工作量取决于渲染速度，与请求次数无关。
+ */
+public final class MarkdownRenderService {
+    private static final Logger logger = LoggerFactory.getLogger(MarkdownRenderService.class);
+
+    /** 缓存的已结束块数量上限。 */
+    private static final int CACHE_CAPACITY = 2048;
+
+    private static final MarkdownRenderService SHARED = new MarkdownRenderService(MarkdownStyles.shared());
+
+    private final BlockRenderer renderer;
+    private final BlockCache cache = new BlockCache(CACHE_CAPACITY);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "aigenie-markdown");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 各消息的渲染状态，消息不再被引用时随之回收。受 this 锁保护。
+     * 值不能强引用消息：回调只在渲染进行中持有，完成后即清除。
+     */
+    private final Map<ChatMessage, State> states = new WeakHashMap<>();
+
+    private MarkdownRenderService(MarkdownStyles styles) {
+        this.renderer = new BlockRenderer(styles);
+    }
+
+    public static MarkdownRenderService shared() {
+        return SHARED;
+    }
+
+    /**
+     * 消息最近一次的渲染结果，尚未渲染过时为 null。用于行组件重建时立即显示，不必等待后台
+     */
+    public synchronized RenderedMarkdown latest(ChatMessage message) {
+        State state = states.get(message);
+        return state != null ? state.latest : null;
+    }
+
+    /**
+     * 请求按消息的最新内容渲染，完成后在 EDT 上回调 {@code onRendered}。
+     * 同一条消息只有最后一次请求的回调会收到结果。
+     *
+     * @param complete 消息已经结束，最后一个块也定稿并进入缓存
+     */
+    public void render(ChatMessage message, boolean complete, Consumer<RenderedMarkdown> onRendered) {
+        State state;
+        synchronized (this) {
+            state = states.computeIfAbsent(message, m -> new State());
+            state.complete |= complete;
+            state.callback = onRendered;
+            if (state.scheduled) {
+                state.dirty = true;
+                return;
+            }
+            state.scheduled = true;
+        }
+        worker.execute(() -> run(message, state));
+    }
+
+    private void run(ChatMessage message, State state) {
+        while (true) {
+            boolean complete;
+            Consumer<RenderedMarkdown> callback;
+            RenderedMarkdown previous;
+            synchronized (this) {
+                complete = state.complete;
+                callback = state.callback;
+                previous = state.latest;
+                state.dirty = false;
+            }
+            try {
+                RenderedMarkdown result = build(state.parser.update(message, complete), complete, previous);
+                synchronized (this) {
+                    state.latest = result;
+                }
+                if (callback != null) {
+                    SwingUtilities.invokeLater(() -> callback.accept(result));
+                }
+            } catch (Exception e) {
+                logger.error("渲染 Markdown 时出错", e);
+            }
+            synchronized (this) {
+                if (!state.dirty) {
+                    state.scheduled = false;
+                    // 回调通常引用显示该消息的组件，组件又引用消息本身；交付后不再持有，
+                    // 否则 WeakHashMap 的值会让键一直可达，消息与行组件都无法回收
+                    state.callback = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private RenderedMarkdown build(IncrementalMarkdown.Parse parse, boolean complete, RenderedMarkdown previous) {
+        List<MarkdownBlock> blocks = parse.blocks();
+        List<RenderedBlock> rendered = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            MarkdownBlock block = blocks.get(i);
+            RenderedBlock last = previous != null && i < previous.blocks().size() ? previous.blocks().get(i) : null;
+            boolean closed = i < parse.closedCount();
+            if (last != null && last.block().equals(block)) {
+                // 内容与上次相同（已结束的块通常就是同一个实例），沿用上次的文档；
+                // 刚刚结束的尾部块在这里进入缓存
+                if (closed && last.block() != block && last.document() != null) {
+                    cache.put(block, last.document());
+                }
+                rendered.add(last);
+                continue;
+            }
+            // 未结束的块内容还会变化，不查也不进缓存
+            StyledDocument document = closed ? cache.get(block) : null;
+            if (document == null && block.getKind() != MarkdownBlock.Kind.RULE) {
+                document = renderer.render(block);
+                if (closed) {
+                    cache.put(block, document);
+                }
+            }
+            rendered.add(new RenderedBlock(block, document));
+        }
+        if (logger.isTraceEnabled()) {
+            logger.trace("Markdown 渲染完成: 版本={}, 块数={}, {}", parse.version(), blocks.size(), cache);
+        }
+        return new RenderedMarkdown(parse.version(), complete, List.copyOf(rendered));
+    }
+
+    private static final class State {
+        /** 只在渲染线程上使用。 */
+        final IncrementalMarkdown parser = new IncrementalMarkdown();
+        RenderedMarkdown latest;
+        Consumer<RenderedMarkdown> callback;
+        boolean complete;
+        boolean scheduled;
+        boolean dirty;
+    }
+}
@@ -0,0 +1,109 @@
+package com.aIgenie.view.markdown;
+
+import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
+
+/**
+ * 渲染 Markdown 用到的具名样式，所有块的文档共用同一个 {@link StyleContext}。
+ * 文档中的文字只引用这些样式（作为属性的 resolve parent），不复制颜色与字体；
+ * 切换主题时只修改样式本身，已缓存的文档无需重建即按新配色显示。
+ */
+public final class MarkdownStyles {
+
+    static final String BODY = "md-body";
+    static final String HEADING_1 = "md-heading-1";
+    static final String HEADING_2 = "md-heading-2";
+    static final String HEADING_3 = "md-heading-3";
+    static final String QUOTE = "md-quote";
+    static final String LINK = "md-link";
+    static final String INLINE_CODE = "md-inline-code";
+    static final String TABLE = "md-table";
+    static final String CODE = "md-code";
+    static final String CODE_KEYWORD = "md-code-keyword";
+    static final String CODE_STRING = "md-code-string";
+    static final String CODE_COMMENT = "md-code-comment";
+    static final String CODE_NUMBER = "md-code-number";
+
+    private static final String BODY_FONT = "Dialog";
+    private static final String CODE_FONT = "Monospaced";
+
+    private static final MarkdownStyles SHARED = new MarkdownStyles(MarkdownTheme.LIGHT);
+
+    private final StyleContext context = new StyleContext();
+    private volatile MarkdownTheme theme;
+
+    private MarkdownStyles(MarkdownTheme theme) {
+        Style body = context.addStyle(BODY, null);
+        StyleConstants.setFontFamily(body, BODY_FONT);
+        StyleConstants.setFontSize(body, 14);
+
+        heading(HEADING_1, body, 20);
+        heading(HEADING_2, body, 17);
+        heading(HEADING_3, body, 15);
+
+        Style quote = context.addStyle(QUOTE, body);
+        StyleConstants.setItalic(quote, true);
+        StyleConstants.setUnderline(context.addStyle(LINK, body), true);
+
+        Style inlineCode = context.addStyle(INLINE_CODE, body);
+        StyleConstants.setFontFamily(inlineCode, CODE_FONT);
+        StyleConstants.setFontSize(inlineCode, 13);
+
+        Style table = context.addStyle(TABLE, body);
+        StyleConstants.setFontFamily(table, CODE_FONT);
+        StyleConstants.setFontSize(table, 13);
+
+        Style code = context.addStyle(CODE, null);
+        StyleConstants.setFontFamily(code, CODE_FONT);
+        StyleConstants.setFontSize(code, 13);
+        StyleConstants.setBold(context.addStyle(CODE_KEYWORD, code), true);
+        context.addStyle(CODE_STRING, code);
+        StyleConstants.setItalic(context.addStyle(CODE_COMMENT, code), true);
+        context.addStyle(CODE_NUMBER, code);
+
+        apply(theme);
+    }
+
+    public static MarkdownStyles shared() {
+        return SHARED;
+    }
+
+    public MarkdownTheme getTheme() {
+        return theme;
+    }
+
+    /**
+     * 切换主题：修改具名样式的颜色，引用这些样式的文档随之更新。在 EDT 上调用
+     */
+    public void apply(MarkdownTheme theme) {
+        this.theme = theme;
+        StyleConstants.setForeground(style(BODY), theme.text);
+        for (String heading : new String[]{HEADING_1, HEADING_2, HEADING_3}) {
+            StyleConstants.setForeground(style(heading), theme.heading);
+        }
+        StyleConstants.setForeground(style(QUOTE), theme.quote);
+        StyleConstants.setForeground(style(LINK), theme.link);
+        StyleConstants.setForeground(style(INLINE_CODE), theme.inlineCodeForeground);
+        StyleConstants.setBackground(style(INLINE_CODE), theme.inlineCodeBackground);
+        StyleConstants.setForeground(style(CODE), theme.codeForeground);
+        StyleConstants.setForeground(style(CODE_KEYWORD), theme.keyword);
+        StyleConstants.setForeground(style(CODE_STRING), theme.string);
+        StyleConstants.setForeground(style(CODE_COMMENT), theme.comment);
+        StyleConstants.setForeground(style(CODE_NUMBER), theme.number);
+    }
+
+    StyleContext context() {
+        return context;
+    }
+
+    Style style(String name) {
+        return context.getStyle(name);
+    }
+
+    private void heading(String name, Style parent, int size) {
+        Style style = context.addStyle(name, parent);
+        StyleConstants.setBold(style, true);
+        StyleConstants.setFontSize(style, size);
+    }
+}
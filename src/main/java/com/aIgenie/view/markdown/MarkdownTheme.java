@@ -0,0 +1,79 @@
+package com.aIgenie.view.markdown;
+
+import java.awt.*;
+
+/**
+ * Markdown 渲染的配色，对应设置中的"浅色" / "深色"主题。
+ * 只影响回复中的格式化内容（代码块、行内代码、链接、引用等），不改变窗口其余部分。
+ */
+public enum MarkdownTheme {
+
+    LIGHT(new Color(33, 33, 33), new Color(20, 20, 20), new Color(25, 118, 210), new Color(110, 110, 110),
+            new Color(240, 240, 240), new Color(199, 37, 78),
+            new Color(246, 248, 250), new Color(36, 41, 46),
+            new Color(0, 92, 197), new Color(3, 47, 98), new Color(106, 115, 125), new Color(0, 92, 107),
+            new Color(210, 210, 210)),
+
+    DARK(new Color(33, 33, 33), new Color(20, 20, 20), new Color(25, 118, 210), new Color(110, 110, 110),
+            new Color(235, 235, 240), new Color(199, 37, 78),
+            new Color(40, 44, 52), new Color(171, 178, 191),
+            new Color(198, 120, 221), new Color(152, 195, 121), new Color(127, 132, 142), new Color(209, 154, 102),
+            new Color(90, 90, 90));
+
+    final Color text;
+    final Color heading;
+    final Color link;
+    final Color quote;
+    final Color inlineCodeBackground;
+    final Color inlineCodeForeground;
+    final Color codeBackground;
+    final Color codeForeground;
+    final Color keyword;
+    final Color string;
+    final Color comment;
+    final Color number;
+    final Color rule;
+
+    MarkdownTheme(Color text, Color heading, Color link, Color quote,
+                  Color inlineCodeBackground, Color inlineCodeForeground,
+                  Color codeBackground, Color codeForeground,
+                  Color keyword, Color string, Color comment, Color number, Color rule) {
+        this.text = text;
+        this.heading = heading;
+        this.link = link;
+        this.quote = quote;
+        this.inlineCodeBackground = inlineCodeBackground;
+        this.inlineCodeForeground = inlineCodeForeground;
+        this.codeBackground = codeBackground;
+        this.codeForeground = codeForeground;
+        this.keyword = keyword;
+        this.string = string;
+        this.comment = comment;
+        this.number = number;
+        this.rule = rule;
+    }
+
+    /**
+     * 代码块的背景色
+     */
+    public Color getCodeBackground() {
+        return codeBackground;
+    }
+
+    /**
+     * 分隔线与表格边线的颜色
+     */
+    public Color getRuleColor() {
+        return rule;
+    }
+
+    /**
+     * 按配置值解析主题："深色" / "dark" 为深色，其余为浅色
+     */
+    public static MarkdownTheme from(String value) {
+        if (value != null && ("深色".equals(value.trim()) || "dark".equalsIgnoreCase(value.trim()))) {
+            return DARK;
+        }
+        return LIGHT;
+    }
+}
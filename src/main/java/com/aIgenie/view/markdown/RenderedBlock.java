@@ -0,0 +1,10 @@
+package com.aIgenie.view.markdown;
+
+import javax.swing.text.StyledDocument;
+
+/**
+ * 渲染好的一个块。分隔线的 {@code document} 为 null。
+ * 已结束的块的文档可能被多条消息共用，显示方只能读取，不能修改。
+ */
+public record RenderedBlock(MarkdownBlock block, StyledDocument document) {
+}
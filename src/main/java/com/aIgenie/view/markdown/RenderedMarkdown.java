@@ -0,0 +1,13 @@
+package com.aIgenie.view.markdown;
+
+import java.util.List;
+
+/**
+ * 一条消息在某个版本的渲染结果。
+ *
+ * @param version  对应的消息版本（{@link com.aIgenie.model.ChatMessage#getVersion()}）
+ * @param complete 消息已经结束，所有块都已定稿
+ * @param blocks   依次排列的块；与上一次结果相比没有变化的块是同一个实例
+ */
+public record RenderedMarkdown(long version, boolean complete, List<RenderedBlock> blocks) {
+}
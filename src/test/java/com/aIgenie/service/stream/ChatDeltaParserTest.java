@@ -0,0 +1,92 @@
+package com.aIgenie.service.stream;
+
+import com.aIgenie.service.ChatUsage;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatDeltaParserTest {
+
+    private final ChatDeltaParser parser = new ChatDeltaParser(new JsonFactory());
+
+    @Test
+    void extractsContentOfFirstChoice() throws IOException {
+        ChatDelta delta = parse("{\"id\":\"c1\",\"object\":\"chat.completion.chunk\",\"choices\":["
+                + "{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"你好\\n\\\"世界\\\"\"},\"logprobs\":null},"
+                + "{\"index\":1,\"delta\":{\"content\":\"ignored\"},\"finish_reason\":\"length\"}]}");
+
+        assertEquals("你好\n\"世界\"", delta.getContent());
+        assertNull(delta.getFinishReason());
+        assertNull(delta.getUsage());
+    }
+
+    @Test
+    void nullContentAndNullFinishReasonAreAbsent() throws IOException {
+        ChatDelta delta = parse("{\"choices\":[{\"delta\":{\"content\":null,\"tool_calls\":[{\"id\":\"t\"}]},"
+                + "\"finish_reason\":null}]}");
+
+        assertNull(delta.getContent());
+        assertNull(delta.getFinishReason());
+        assertTrue(delta.isEmpty());
+    }
+
+    @Test
+    void extractsFinishReason() throws IOException {
+        ChatDelta delta = parse("{\"choices\":[{\"finish_reason\":\"stop\",\"delta\":{}}]}");
+
+        assertNull(delta.getContent());
+        assertEquals("stop", delta.getFinishReason());
+    }
+
+    @Test
+    void extractsUsageWithOpenAiCachedTokens() throws IOException {
+        ChatDelta delta = parse("{\"choices\":[],\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":30,"
+                + "\"total_tokens\":150,\"prompt_tokens_details\":{\"audio_tokens\":0,\"cached_tokens\":64},"
+                + "\"completion_tokens_details\":{\"reasoning_tokens\":0}}}");
+
+        assertUsage(delta.getUsage(), 120, 30, 150, 64);
+        assertNull(delta.getContent());
+    }
+
+    @Test
+    void extractsUsageWithDeepSeekCacheHitTokens() throws IOException {
+        ChatDelta delta = parse("{\"usage\":{\"prompt_tokens\":80,\"completion_tokens\":5,\"total_tokens\":85,"
+                + "\"prompt_cache_hit_tokens\":48,\"prompt_cache_miss_tokens\":32},"
+                + "\"choices\":[{\"delta\":{\"content\":\"!\"},\"finish_reason\":\"stop\"}]}");
+
+        assertUsage(delta.getUsage(), 80, 5, 85, 48);
+        assertEquals("!", delta.getContent());
+        assertEquals("stop", delta.getFinishReason());
+    }
+
+    @Test
+    void nullUsageAndNonObjectPayloadsYieldEmptyDelta() throws IOException {
+        assertNull(parse("{\"choices\":[{\"delta\":{\"content\":\"a\"}}],\"usage\":null}").getUsage());
+        assertTrue(parse("[1,2]").isEmpty());
+    }
+
+    @Test
+    void parsesOnlyTheGivenSlice() throws IOException {
+        byte[] bytes = "xx{\"choices\":[{\"delta\":{\"content\":\"hi\"}}]}yy".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("hi", parser.parse(bytes, 2, bytes.length - 4).getContent());
+    }
+
+    private ChatDelta parse(String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, 0, bytes.length);
+    }
+
+    private static void assertUsage(ChatUsage usage, int prompt, int completion, int total, int cached) {
+        assertEquals(prompt, usage.getPromptTokens());
+        assertEquals(completion, usage.getCompletionTokens());
+        assertEquals(total, usage.getTotalTokens());
+        assertEquals(cached, usage.getCachedPromptTokens());
+    }
+}
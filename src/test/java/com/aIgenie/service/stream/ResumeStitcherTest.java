@@ -0,0 +1,112 @@
+package com.aIgenie.service.stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResumeStitcherTest {
+
+    /** 与 CustomAIServiceImpl 续写时使用的窗口相同。 */
+    private static final int WINDOW = 64;
+
+    /** 让续写超过窗口、在 accept 中就完成比对的填充文本。 */
+    private static final String PADDING = " and then some more text to push the continuation past the window.";
+
+    /**
+     * 每行：说明、中断前已输出的内容、分段到达的续写、应当输出的续写
+     */
+    static Stream<Arguments> cases() {
+        return Stream.of(
+                Arguments.of("完全重叠的末尾被去掉",
+                        "The quick brown fox jumps over",
+                        List.of("fox jumps over the lazy dog", PADDING),
+                        " the lazy dog" + PADDING),
+                Arguments.of("重叠跨越多个分片",
+                        "The quick brown fox jumps over",
+                        List.of("fox ", "jum", "ps over", " the lazy dog", PADDING),
+                        " the lazy dog" + PADDING),
+                Arguments.of("没有重叠时原样输出",
+                        "Hello world.",
+                        List.of(" Next sentence follows here", PADDING),
+                        " Next sentence follows here" + PADDING),
+                Arguments.of("权重不足的巧合重叠保留",
+                        "this is the end of the",
+                        List.of("the next part", PADDING),
+                        "the next part" + PADDING),
+                Arguments.of("权重 7 保留",
+                        "value: 1234567",
+                        List.of("1234567 is the value", PADDING),
+                        "1234567 is the value" + PADDING),
+                Arguments.of("权重 8 去掉",
+                        "value: 12345678",
+                        List.of("12345678 is the value", PADDING),
+                        " is the value" + PADDING),
+                Arguments.of("汉字重叠按双倍权重去掉",
+                        "今天天气很好，我们去公园",
+                        List.of("我们去公园散步吧。", PADDING),
+                        "散步吧。" + PADDING),
+                Arguments.of("四个汉字权重为 8，去掉",
+                        "我们一起去公园",
+                        List.of("起去公园散步", PADDING),
+                        "散步" + PADDING),
+                Arguments.of("三个汉字权重为 6，保留",
+                        "我们一起去公园",
+                        List.of("去公园门口见面", PADDING),
+                        "去公园门口见面" + PADDING),
+                Arguments.of("短于窗口的续写在 flush 时去掉重叠",
+                        "The quick brown fox jumps over",
+                        List.of("jumps ", "over the lazy dog."),
+                        " the lazy dog."),
+                Arguments.of("短于窗口且没有重叠的续写在 flush 时原样输出",
+                        "第一段。",
+                        List.of("第二段", "开始了。"),
+                        "第二段开始了。"),
+                Arguments.of("续写只有重复内容",
+                        "The quick brown fox jumps over",
+                        List.of("fox jumps over"),
+                        ""));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void stitchesContinuation(String description, String emitted, List<String> chunks, String expected) {
+        ResumeStitcher stitcher = new ResumeStitcher(emitted, WINDOW);
+        StringBuilder output = new StringBuilder();
+        for (String chunk : chunks) {
+            output.append(stitcher.accept(chunk));
+        }
+        output.append(stitcher.flush());
+
+        assertEquals(expected, output.toString());
+    }
+
+    @Test
+    void buffersUntilWindowIsFullThenPassesThrough() {
+        ResumeStitcher stitcher = new ResumeStitcher("prefix ends with overlap text", WINDOW);
+        String head = "overlap text" + "x".repeat(WINDOW - "overlap text".length() - 1);
+
+        // 窗口差一个字符时仍在缓冲
+        assertEquals("", stitcher.accept(head));
+        // 凑满窗口时一次放行，去掉重叠
+        assertEquals(head.substring("overlap text".length()) + "y", stitcher.accept("y"));
+        // 比对只做一次，之后的内容即使与前缀重叠也原样透传
+        assertEquals("overlap text", stitcher.accept("overlap text"));
+        assertEquals("", stitcher.flush());
+    }
+
+    @Test
+    void overlapLongerThanWindowIsOnlyTrimmedWithinWindow() {
+        String emitted = "a".repeat(100);
+        ResumeStitcher stitcher = new ResumeStitcher(emitted, WINDOW);
+
+        // 只比对缓冲的前 64 个字符，超出部分已在放行之后到达
+        assertEquals("", stitcher.accept("a".repeat(WINDOW)));
+        assertEquals("a".repeat(36) + "b", stitcher.accept("a".repeat(36) + "b"));
+    }
+}
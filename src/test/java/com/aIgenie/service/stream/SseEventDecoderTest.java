@@ -0,0 +1,130 @@
+package com.aIgenie.service.stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseEventDecoderTest {
+
+    /** 派发的一个事件，data 已按 UTF-8 解码。 */
+    private record Event(String event, String id, String data) {
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"\n", "\r\n", "\r"})
+    void splitsLinesOnEveryLineEnding(String eol) throws IOException {
+        String stream = "data: one" + eol + eol + "data: two" + eol + eol;
+
+        assertEquals(List.of(new Event("message", null, "one"), new Event("message", null, "two")),
+                decode(stream, new SseEventDecoder(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void joinsMultiLineDataWithNewlines() throws IOException {
+        String stream = "data: first\ndata:second\ndata\ndata:  third\n\n";
+
+        assertEquals(List.of(new Event("message", null, "first\nsecond\n\n third")),
+                decode(stream, new SseEventDecoder(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void readsEventAndIdFieldsAndSkipsComments() throws IOException {
+        String stream = ": keep-alive\n"
+                + "event: delta\nid: 7\ndata: a\n\n"
+                + "data: b\n\n"
+                + "retry: 1000\nevent: ping\n\n"
+                + "id: 8\ndata: c\n\n";
+
+        // event 只作用于当前事件，id 一直保留到下一次出现；没有 data 的事件不派发
+        assertEquals(List.of(new Event("delta", "7", "a"), new Event("message", "7", "b"),
+                        new Event("message", "8", "c")),
+                decode(stream, new SseEventDecoder(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void dispatchesPendingEventAtEndOfStream() throws IOException {
+        assertEquals(List.of(new Event("message", null, "tail")),
+                decode("data: tail", new SseEventDecoder(), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void recognisesDoneMarker() throws IOException {
+        List<Boolean> done = new ArrayList<>();
+        new SseEventDecoder().decode(stream("data: {\"a\":1}\n\ndata: [DONE]\n\ndata: [DONE] \n\n"),
+                (event, id, data, offset, length) -> done.add(SseEventDecoder.isDone(data, offset, length)));
+
+        assertEquals(List.of(false, true, false), done);
+        byte[] padded = "xx[DONE]yy".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(SseEventDecoder.isDone(padded, 2, 6));
+        assertFalse(SseEventDecoder.isDone(padded, 1, 6));
+    }
+
+    /**
+     * 每次 read 只返回几个字节、缓冲区又小于一行时，行、CRLF 与多字节字符都会被切在两次读取之间
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 7})
+    void reassemblesLinesSplitAcrossReads(int bytesPerRead) throws IOException {
+        String longLine = "x".repeat(40);
+        String stream = "event: delta\r\nid: 42\r\ndata: 你好，世界\r\ndata: " + longLine + "\r\n\r\n"
+                + "data: second\r\r"
+                + "data: third\n\n";
+
+        assertEquals(List.of(new Event("delta", "42", "你好，世界\n" + longLine),
+                        new Event("message", "42", "second"), new Event("message", "42", "third")),
+                decode(stream, new SseEventDecoder(4), bytesPerRead));
+    }
+
+    private static List<Event> decode(String text, SseEventDecoder decoder, int bytesPerRead) throws IOException {
+        List<Event> events = new ArrayList<>();
+        decoder.decode(new TrickleInputStream(text.getBytes(StandardCharsets.UTF_8), bytesPerRead),
+                (event, id, data, offset, length) ->
+                        events.add(new Event(event, id, new String(data, offset, length, StandardCharsets.UTF_8))));
+        return events;
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 每次 read 至多返回 {@code bytesPerRead} 个字节，模拟网络分片。
+     */
+    private static final class TrickleInputStream extends InputStream {
+        private final byte[] bytes;
+        private final int bytesPerRead;
+        private int position;
+
+        TrickleInputStream(byte[] bytes, int bytesPerRead) {
+            this.bytes = bytes;
+            this.bytesPerRead = bytesPerRead;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= bytes.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, bytesPerRead), bytes.length - position);
+            System.arraycopy(bytes, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.aIgenie.view.markdown;
+
+import com.aIgenie.model.ChatMessage;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 流式追加得到的块必须与一次性解析全文的结果相同：
+ * 已经定稿的块不能再变，最后一行尚未换行时它可能开始的新块不能提前让前一个块定稿。
+ */
+class IncrementalMarkdownTest {
+
+    /** 最后一行未结束时含义未定的写法：标题与 #include、分隔线与粗斜体、引用、长短不同的围栏。 */
+    static Stream<String> inputs() {
+        return Stream.of(
+                "para\n#include <x>\nmore",
+                "para\n# 标题\n正文",
+                "- a\n- b\n#define N 1\n",
+                "para\n***bold*** text\nmore\n",
+                "para\n***\nafter rule",
+                "- item\n---not a rule\n",
+                "para\n> quote\n> more\nafter",
+                "para\n>not quite\n",
+                "text\n```java\nint x = 1;\n```\nafter",
+                "text\n````\n```\nstill code\n````\nafter\n",
+                "text\n``` inline ``` here\nmore",
+                "text\n~~~\ncode\n~~~~\nafter",
+                "| a | b |\n|---|---|\n| 1 | 2 |\npara",
+                "1. one\n2. two\n\n##\n##not heading\n");
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputs")
+    void streamingOneCharacterAtATimeMatchesFullParse(String text) {
+        assertStreamMatchesFullParse(text, IntStream.range(0, text.length()).map(i -> 1).toArray());
+    }
+
+    @ParameterizedTest
+    @MethodSource("inputs")
+    void streamingInRandomChunksMatchesFullParse(String text) {
+        for (long seed = 0; seed < 50; seed++) {
+            Random random = new Random(seed);
+            int[] sizes = IntStream.generate(() -> 1 + random.nextInt(6)).limit(text.length()).toArray();
+            assertStreamMatchesFullParse(text, sizes);
+        }
+    }
+
+    private static void assertStreamMatchesFullParse(String text, int[] chunkSizes) {
+        List<MarkdownBlock> expected = MarkdownParser.parse(text);
+        ChatMessage message = new ChatMessage("AIgenie", "");
+        IncrementalMarkdown parser = new IncrementalMarkdown();
+        int offset = 0;
+        for (int size : chunkSizes) {
+            if (offset >= text.length()) {
+                break;
+            }
+            int end = Math.min(text.length(), offset + size);
+            message.appendContent(text.substring(offset, end));
+            offset = end;
+
+            IncrementalMarkdown.Parse parse = parser.update(message, false);
+            // 定稿的块此后不再解析，必须已经是全文解析的结果
+            for (int i = 0; i < parse.closedCount(); i++) {
+                assertEquals(expected.get(i), parse.blocks().get(i),
+                        "第 " + i + " 个块在读到 " + offset + " 个字符时定稿有误: " + text);
+            }
+        }
+        assertEquals(expected, parser.update(message, true).blocks(), text);
+    }
+}